@@ -1,5 +1,10 @@
 package one.kuring.benchmark
 
+import one.kuring.EventExecutor
+import one.kuring.EventExecutorGroup
+import one.kuring.ExecutorMetrics
+import one.kuring.LatencyHistogram
+import one.kuring.Native
 import picocli.CommandLine
 import picocli.CommandLine.Command
 import java.nio.file.Paths
@@ -64,7 +69,7 @@ class Benchmark : Callable<Int> {
         description = ["Track I/O latencies"],
         paramLabel = "<bool>"
     )
-    var eventLoopWakeupPercentile: Boolean = true
+    var trackLatencies: Boolean = false
 
     @CommandLine.Option(
         names = ["-T", "--tsc-rate"],
@@ -92,6 +97,21 @@ class Benchmark : Callable<Int> {
 
 
         var maxIops: Long = -1
+        val executors = if (sync) {
+            null
+        } else {
+            val executorBuilder = EventExecutor.builder()
+            if (useFixedBuffer) {
+                executorBuilder.withBufRing(ioDepth, bufferSize)
+            }
+            if (trackLatencies) {
+                executorBuilder.withMetrics()
+            }
+            EventExecutorGroup.builder()
+                .size(threads)
+                .executorBuilder(executorBuilder)
+                .build()
+        }
         for (i in 0 until threads) {
             val worker = if (sync) {
                 BenchmarkWorkerFileChannel(
@@ -107,7 +127,8 @@ class Benchmark : Callable<Int> {
                     blockSize = bufferSize,
                     ioDepth = ioDepth,
                     fixedBuffers = useFixedBuffer,
-                    directIo = useDirectIo
+                    directIo = useDirectIo,
+                    eventExecutor = executors!!.get(i)
                 )
             }
 
@@ -153,6 +174,11 @@ class Benchmark : Callable<Int> {
             maxIops = max(maxIops, iops)
             print("BW=${bw}MiB/s, ")
             println("IOS/call=${rpc}/${ipc}")
+            if (trackLatencies && executors != null) {
+                for (i in 0 until threads) {
+                    printLatencies(i, executors.get(i).metrics())
+                }
+            }
             done = thisDone
             calls = thisCall
             reap = thisReap
@@ -160,6 +186,15 @@ class Benchmark : Callable<Int> {
 
     }
 
+    private fun printLatencies(worker: Int, metrics: ExecutorMetrics) {
+        for (ring in ExecutorMetrics.RingType.values()) {
+            val histogram: LatencyHistogram = metrics.latency(ring, Native.IORING_OP_READ) ?: continue
+            print("Worker $worker ${ring.name.lowercase()} ring reads=${histogram.totalCount}, ")
+            print(defaultPercentiles.joinToString(", ") { "p${it * 100}=${histogram.getValueAtPercentile(it * 100) / 1000}us" })
+            println(", enters/op=${"%.3f".format(metrics.enterCallsPerOp(ring))}")
+        }
+    }
+
     private fun convertToNsec(cycles: Double): Long {
         return (cycles.toLong() * 1_000_000_000L) / tscRate
     }
@@ -16,17 +16,14 @@ class BenchmarkWorkerIoUring(
     private val ioDepth: Int,
     private val fixedBuffers: Boolean,
     private val directIo: Boolean,
+    private val eventExecutor: EventExecutor,
 ) : BenchmarkWorker(path, bufferSize, blockSize) {
 
 
-    private val eventExecutor: EventExecutor
     private var buffers: Array<ByteBuffer>? = null
 
     init {
-        val builder = EventExecutor.builder()
-        if (fixedBuffers) {
-            builder.withBufRing(ioDepth, bufferSize)
-        } else {
+        if (!fixedBuffers) {
             buffers = Array(ioDepth) {
                 MemoryUtils.allocateAlignedByteBuffer(
                     bufferSize,
@@ -34,7 +31,6 @@ class BenchmarkWorkerIoUring(
                 )
             }
         }
-        eventExecutor = builder.build()
     }
 
     override fun run() = runBlocking {
@@ -21,8 +21,6 @@ tasks.withType<KotlinCompile> {
 
 dependencies {
     api("org.jetbrains.kotlinx:kotlinx-coroutines-core:${deps.kotlin_coroutines}")
-    implementation("cn.danielw:fast-object-pool:${deps.object_pool}")
-    implementation("com.conversantmedia:disruptor:${deps.object_pool_disruptor}")
     implementation("org.jctools:jctools-core:${deps.jctools}")
 //    implementation("com.tdunning:t-digest:3.3")
     implementation(project(":kuring-natives"))
@@ -7,7 +7,5 @@ object deps {
     const val shadow_plugin = "7.1.2"
     const val nexus_publish = "1.1.0"
     const val jctools = "4.0.1"
-    const val object_pool = "2.2.1"
-    const val object_pool_disruptor = "1.2.15"
     const val picocli = "4.6.3"
 }
\ No newline at end of file
@@ -2,6 +2,7 @@
 #include <sys/stat.h>
 #include <bits/statx.h>
 #include <poll.h>
+#include <errno.h>
 
 #include "file_io_constants.h"
 
@@ -58,6 +59,57 @@ static jint get_splice_f_nonblock(JNIEnv* env, jclass clazz) {
 static jint get_splice_f_more(JNIEnv* env, jclass clazz) {
     return SPLICE_F_MORE;
 }
+static jint get_ecanceled(JNIEnv* env, jclass clazz) {
+    return ECANCELED;
+}
+static jint get_eintr(JNIEnv* env, jclass clazz) {
+    return EINTR;
+}
+static jint get_enobufs(JNIEnv* env, jclass clazz) {
+    return ENOBUFS;
+}
+static jint get_statx_basic_stats(JNIEnv* env, jclass clazz) {
+    return STATX_BASIC_STATS;
+}
+static jint get_statx_btime(JNIEnv* env, jclass clazz) {
+    return STATX_BTIME;
+}
+static jint get_at_symlink_nofollow(JNIEnv* env, jclass clazz) {
+    return AT_SYMLINK_NOFOLLOW;
+}
+static jint get_at_empty_path(JNIEnv* env, jclass clazz) {
+    return AT_EMPTY_PATH;
+}
+static jint get_s_ifmt(JNIEnv* env, jclass clazz) {
+    return S_IFMT;
+}
+static jint get_s_ifreg(JNIEnv* env, jclass clazz) {
+    return S_IFREG;
+}
+static jint get_s_ifdir(JNIEnv* env, jclass clazz) {
+    return S_IFDIR;
+}
+static jint get_s_iflnk(JNIEnv* env, jclass clazz) {
+    return S_IFLNK;
+}
+static jint get_eperm(JNIEnv* env, jclass clazz) {
+    return EPERM;
+}
+static jint get_enoent(JNIEnv* env, jclass clazz) {
+    return ENOENT;
+}
+static jint get_eacces(JNIEnv* env, jclass clazz) {
+    return EACCES;
+}
+static jint get_eexist(JNIEnv* env, jclass clazz) {
+    return EEXIST;
+}
+static jint get_eloop(JNIEnv* env, jclass clazz) {
+    return ELOOP;
+}
+static jint get_enotempty(JNIEnv* env, jclass clazz) {
+    return ENOTEMPTY;
+}
 
 static JNINativeMethod method_table[] = {
     {"oRdOnly",            "()I", (void *) get_o_rdonly},
@@ -77,6 +129,23 @@ static JNINativeMethod method_table[] = {
     {"spliceFMove",        "()I", (void *) get_splice_f_move},
     {"spliceFNonblock",    "()I", (void *) get_splice_f_nonblock},
     {"spliceFMore",        "()I", (void *) get_splice_f_more},
+    {"eCanceled",          "()I", (void *) get_ecanceled},
+    {"eIntr",              "()I", (void *) get_eintr},
+    {"eNoBufs",            "()I", (void *) get_enobufs},
+    {"statxBasicStats",    "()I", (void *) get_statx_basic_stats},
+    {"statxBtime",         "()I", (void *) get_statx_btime},
+    {"atSymlinkNoFollow",  "()I", (void *) get_at_symlink_nofollow},
+    {"atEmptyPath",        "()I", (void *) get_at_empty_path},
+    {"sIfMt",              "()I", (void *) get_s_ifmt},
+    {"sIfReg",             "()I", (void *) get_s_ifreg},
+    {"sIfDir",             "()I", (void *) get_s_ifdir},
+    {"sIfLnk",             "()I", (void *) get_s_iflnk},
+    {"ePerm",              "()I", (void *) get_eperm},
+    {"eNoEnt",             "()I", (void *) get_enoent},
+    {"eAcces",             "()I", (void *) get_eacces},
+    {"eExist",             "()I", (void *) get_eexist},
+    {"eLoop",              "()I", (void *) get_eloop},
+    {"eNotEmpty",          "()I", (void *) get_enotempty},
 };
 
 jint jni_file_io_constants_on_load(JNIEnv *env) {
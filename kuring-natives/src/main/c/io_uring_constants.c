@@ -145,6 +145,54 @@ static jint get_iosqe_buffer_select(JNIEnv* env, jclass clazz) {
 static jint get_ioring_cqe_f_buffer(JNIEnv* env, jclass clazz) {
     return IORING_CQE_F_BUFFER;
 }
+static jint get_iosqe_fixed_file(JNIEnv* env, jclass clazz) {
+    return IOSQE_FIXED_FILE;
+}
+static jint get_ioring_register_files_update(JNIEnv* env, jclass clazz) {
+    return IORING_REGISTER_FILES_UPDATE;
+}
+static jbyte get_ioring_op_async_cancel(JNIEnv* env, jclass clazz) {
+    return IORING_OP_ASYNC_CANCEL;
+}
+static jint get_iosqe_io_link(JNIEnv* env, jclass clazz) {
+    return IOSQE_IO_LINK;
+}
+static jbyte get_ioring_op_link_timeout(JNIEnv* env, jclass clazz) {
+    return IORING_OP_LINK_TIMEOUT;
+}
+static jint get_ioring_cqe_f_buf_more(JNIEnv* env, jclass clazz) {
+    return IORING_CQE_F_BUF_MORE;
+}
+static jint get_iou_pbuf_ring_inc(JNIEnv* env, jclass clazz) {
+    return IOU_PBUF_RING_INC;
+}
+static jint get_ioring_feat_nodrop(JNIEnv* env, jclass clazz) {
+    return IORING_FEAT_NODROP;
+}
+static jint get_ioring_setup_r_disabled(JNIEnv* env, jclass clazz) {
+    return IORING_SETUP_R_DISABLED;
+}
+static jint get_ioring_setup_coop_taskrun(JNIEnv* env, jclass clazz) {
+    return IORING_SETUP_COOP_TASKRUN;
+}
+static jint get_ioring_setup_taskrun_flag(JNIEnv* env, jclass clazz) {
+    return IORING_SETUP_TASKRUN_FLAG;
+}
+static jint get_ioring_setup_single_issuer(JNIEnv* env, jclass clazz) {
+    return IORING_SETUP_SINGLE_ISSUER;
+}
+static jint get_ioring_setup_defer_taskrun(JNIEnv* env, jclass clazz) {
+    return IORING_SETUP_DEFER_TASKRUN;
+}
+static jint get_ioring_sq_taskrun(JNIEnv* env, jclass clazz) {
+    return IORING_SQ_TASKRUN;
+}
+static jint get_ioring_register_enable_rings(JNIEnv* env, jclass clazz) {
+    return IORING_REGISTER_ENABLE_RINGS;
+}
+static jbyte get_ioring_op_ftruncate(JNIEnv* env, jclass clazz) {
+    return IORING_OP_FTRUNCATE;
+}
 
 
 static JNINativeMethod method_table[] = {
@@ -195,6 +243,22 @@ static JNINativeMethod method_table[] = {
     {"ioRingUnregisterPbufRing", "()I", (void *) get_ioring_unregister_pbuf_ring},
     {"iosqeBufferSelect", "()I", (void *) get_iosqe_buffer_select},
     {"ioRingCqeFBuffer", "()I", (void *) get_ioring_cqe_f_buffer},
+    {"iosqeFixedFile", "()I", (void *) get_iosqe_fixed_file},
+    {"ioRingRegisterFilesUpdate", "()I", (void *) get_ioring_register_files_update},
+    {"ioRingOpAsyncCancel", "()B", (void *) get_ioring_op_async_cancel},
+    {"iosqeIoLink", "()I", (void *) get_iosqe_io_link},
+    {"ioRingOpLinkTimeout", "()B", (void *) get_ioring_op_link_timeout},
+    {"ioRingCqeFBufMore", "()I", (void *) get_ioring_cqe_f_buf_more},
+    {"iouPbufRingInc", "()I", (void *) get_iou_pbuf_ring_inc},
+    {"ioRingFeatNoDrop", "()I", (void *) get_ioring_feat_nodrop},
+    {"ioRingSetupRDisabled", "()I", (void *) get_ioring_setup_r_disabled},
+    {"ioRingSetupCoopTaskrun", "()I", (void *) get_ioring_setup_coop_taskrun},
+    {"ioRingSetupTaskrunFlag", "()I", (void *) get_ioring_setup_taskrun_flag},
+    {"ioRingSetupSingleIssuer", "()I", (void *) get_ioring_setup_single_issuer},
+    {"ioRingSetupDeferTaskrun", "()I", (void *) get_ioring_setup_defer_taskrun},
+    {"ioRingSqTaskrun", "()I", (void *) get_ioring_sq_taskrun},
+    {"ioRingRegisterEnableRings", "()I", (void *) get_ioring_register_enable_rings},
+    {"ioRingOpFtruncate", "()B", (void *) get_ioring_op_ftruncate},
 };
 
 jint jni_io_uring_constants_on_load(JNIEnv *env) {
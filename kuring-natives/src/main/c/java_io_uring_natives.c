@@ -182,7 +182,7 @@ void throwRuntimeExceptionErrorNo(JNIEnv* env, char *message, int errorNumber) {
     free(allocatedMessage);
 }
 
-void setup_iouring(JNIEnv *env, struct io_uring *ring, int entries, int flags, int sq_thread_idle, int sq_thread_cpu, int cq_size, int attach_wq_ring_fd) {
+static int setup_iouring(JNIEnv *env, struct io_uring *ring, int entries, int flags, int sq_thread_idle, int sq_thread_cpu, int cq_size, int attach_wq_ring_fd) {
     struct io_uring_params p;
     int ring_fd;
     int ret;
@@ -204,17 +204,20 @@ void setup_iouring(JNIEnv *env, struct io_uring *ring, int entries, int flags, i
     ring_fd = sys_io_uring_setup(entries, &p);
     if (ring_fd < 0) {
         throwRuntimeExceptionErrorNo(env, "failed to create io_uring ring fd;", errno);
+        return -1;
     }
 
     ret = io_uring_mmap(ring_fd, &p, &ring->sq, &ring->cq);
 
-    if (!ret) {
-        ring->flags = p.flags;
-        ring->ring_fd = ring_fd;
-    } else {
+    if (ret) {
         close(ring_fd);
-        throwRuntimeExceptionErrorNo(env, "failed to create io_uring ring fd;", errno);
+        throwRuntimeExceptionErrorNo(env, "failed to create io_uring ring fd;", ret);
+        return -1;
     }
+    ring->flags = p.flags;
+    ring->features = p.features;
+    ring->ring_fd = ring_fd;
+    return 0;
 }
 
 static void java_io_uring_register(JNIEnv *env, jclass clazz, jint fd, jint opcode, jlong arg, jint nr_args) {
@@ -234,7 +237,7 @@ static jobjectArray java_io_uring_setup_iouring(JNIEnv *env, jclass clazz, jint
         return NULL;
     }
 
-    jlongArray submissionArray = (*env)->NewLongArray(env, 12);
+    jlongArray submissionArray = (*env)->NewLongArray(env, 13);
     if (submissionArray == NULL) {
         return NULL;
     }
@@ -246,7 +249,9 @@ static jobjectArray java_io_uring_setup_iouring(JNIEnv *env, jclass clazz, jint
     }
 
     struct io_uring ring;
-    setup_iouring(env, &ring, entries, flags, sq_thread_idle, sq_thread_cpu, cq_size, attach_wq_ring_fd);
+    if (setup_iouring(env, &ring, entries, flags, sq_thread_idle, sq_thread_cpu, cq_size, attach_wq_ring_fd) < 0) {
+        return NULL;
+    }
 
     jlong submissionArrayElements[] = {
         (jlong) ring.sq.khead,
@@ -260,9 +265,10 @@ static jobjectArray java_io_uring_setup_iouring(JNIEnv *env, jclass clazz, jint
         (jlong) ring.sq.ring_sz,
         (jlong) ring.sq.ring_ptr,
         (jlong) ring.ring_fd,
-        (jlong) ring.flags
+        (jlong) ring.flags,
+        (jlong) ring.features
     };
-    (*env)->SetLongArrayRegion(env, submissionArray, 0, 12, submissionArrayElements);
+    (*env)->SetLongArrayRegion(env, submissionArray, 0, 13, submissionArrayElements);
 
     jlong completionArrayElements[] = {
         (jlong) ring.cq.khead,
@@ -34,6 +34,7 @@ struct io_uring {
     struct io_uring_sq sq;
     struct io_uring_cq cq;
     unsigned flags;
+    unsigned features;
     int ring_fd;
 };
 
@@ -2,4 +2,10 @@ package one.kuring;
 
 interface CompletionCallback {
     void handle(int res, int flags, long userData);
+
+    /**
+     * Called after each batch of completions, once the queue head has been published to the kernel.
+     */
+    default void onBatchEnd() {
+    }
 }
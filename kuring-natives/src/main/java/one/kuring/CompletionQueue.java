@@ -52,20 +52,48 @@ class CompletionQueue {
         return ringHead != MemoryUtils.getIntVolatile(kTail);
     }
 
+    /**
+     * Number of cqes posted by the kernel and not reaped yet, safe to read from any thread.
+     */
+    int backlog() {
+        return MemoryUtils.getIntVolatile(kTail) - MemoryUtils.getIntVolatile(kHead);
+    }
+
+    /**
+     * Number of cqes the kernel dropped because the queue was full and it couldn't hold them back,
+     * safe to read from any thread. Stays 0 on kernels with IORING_FEAT_NODROP unless they run out of memory.
+     */
+    int getDropped() {
+        return MemoryUtils.getIntVolatile(kOverflow);
+    }
+
+    /**
+     * Reaps completions until the queue is empty. Every batch ends at the tail seen when it started,
+     * the head is published to the kernel once per batch rather than once per completion.
+     *
+     * @return number of completions processed
+     */
     int processEvents(CompletionCallback callback) {
-        int tail = MemoryUtils.getIntVolatile(kTail);
         int i = 0;
-        while (ringHead != tail) {
-            long cqeAddress = kCompletionArray + (long) (ringHead & ringMask) * CQE_SIZE;
+        int tail;
+        while (ringHead != (tail = MemoryUtils.getIntVolatile(kTail))) {
+            try {
+                while (ringHead != tail) {
+                    long cqeAddress = kCompletionArray + (long) (ringHead & ringMask) * CQE_SIZE;
 
-            long userData = MemoryUtils.getLong(cqeAddress + CQE_USER_DATA_FIELD);
-            int res = MemoryUtils.getInt(cqeAddress + CQE_RES_FIELD);
-            int flags = MemoryUtils.getInt(cqeAddress + CQE_FLAGS_FIELD);
+                    long userData = MemoryUtils.getLong(cqeAddress + CQE_USER_DATA_FIELD);
+                    int res = MemoryUtils.getInt(cqeAddress + CQE_RES_FIELD);
+                    int flags = MemoryUtils.getInt(cqeAddress + CQE_FLAGS_FIELD);
 
-            ringHead += 1;
-            MemoryUtils.putIntOrdered(kHead, ringHead);
-            i++;
-            callback.handle(res, flags, userData);
+                    ringHead += 1;
+                    i++;
+                    callback.handle(res, flags, userData);
+                }
+            } finally {
+                // the cqes are copied out before the callback runs, so the slots can be handed back late
+                MemoryUtils.putIntOrdered(kHead, ringHead);
+            }
+            callback.onBatchEnd();
         }
         return i;
     }
@@ -35,4 +35,38 @@ class FileIoConstants {
     static native int spliceFNonblock();
 
     static native int spliceFMore();
+
+    static native int eCanceled();
+
+    static native int eIntr();
+
+    static native int eNoBufs();
+
+    static native int statxBasicStats();
+
+    static native int statxBtime();
+
+    static native int atSymlinkNoFollow();
+
+    static native int atEmptyPath();
+
+    static native int sIfMt();
+
+    static native int sIfReg();
+
+    static native int sIfDir();
+
+    static native int sIfLnk();
+
+    static native int ePerm();
+
+    static native int eNoEnt();
+
+    static native int eAcces();
+
+    static native int eExist();
+
+    static native int eLoop();
+
+    static native int eNotEmpty();
 }
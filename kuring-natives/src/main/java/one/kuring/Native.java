@@ -58,7 +58,7 @@ public class Native {
                 (int) pointers[1][8],
                 pointers[1][9]
         );
-        return new Uring(completionQueue, submissionQueue, (int) pointers[0][10]);
+        return new Uring(completionQueue, submissionQueue, (int) pointers[0][10], (int) pointers[0][12]);
     }
 
     private static native int ioUringEnter0(int ringFd, int toSubmit, int minComplete, int flags);
@@ -158,19 +158,27 @@ public class Native {
     public static final byte IORING_OP_RECV = UringConstants.ioRingOpRecv();
     public static final byte IORING_OP_SHUTDOWN = UringConstants.ioRingOpShutdown();
     public static final byte IORING_OP_SEND_ZC = UringConstants.ioRingOpSendZc();
+    public static final byte IORING_OP_FTRUNCATE = UringConstants.ioRingOpFtruncate();
     public static final byte IORING_OP_SPLICE = UringConstants.ioRingOpSplice();
+    public static final byte IORING_OP_ASYNC_CANCEL = UringConstants.ioRingOpAsyncCancel();
+    public static final byte IORING_OP_LINK_TIMEOUT = UringConstants.ioRingOpLinkTimeout();
 
     public static final int IORING_REGISTER_BUFFERS = UringConstants.ioRingRegisterBuffers();
     public static final int IORING_UNREGISTER_BUFFERS = UringConstants.ioRingUnregisterBuffers();
     public static final int IORING_REGISTER_FILES = UringConstants.ioRingRegisterFiles();
     public static final int IORING_UNREGISTER_FILES = UringConstants.ioRingUnregisterFiles();
+    public static final int IORING_REGISTER_FILES_UPDATE = UringConstants.ioRingRegisterFilesUpdate();
     public static final int IORING_REGISTER_PBUF_RING = UringConstants.ioRingRegisterPbufRing();
     public static final int IORING_UNREGISTER_PBUF_RING = UringConstants.ioRingUnregisterPbufRing();
+    public static final int IOU_PBUF_RING_INC = UringConstants.iouPbufRingInc();
     public static final int IORING_REGISTER_PROBE = UringConstants.ioRingRegisterProbe();
+    public static final int IORING_REGISTER_ENABLE_RINGS = UringConstants.ioRingRegisterEnableRings();
     public static final int IORING_ENTER_GETEVENTS = UringConstants.ioRingEnterGetEvents();
     public static final int IORING_ENTER_SQ_WAKEUP = UringConstants.ioRingEnterSqWakeup();
     public static final int IORING_SQ_NEED_WAKEUP = UringConstants.ioRingSqNeedWakeup();
     public static final int IORING_SQ_CQ_OVERFLOW = UringConstants.ioRingSqCqOverflow();
+    public static final int IORING_SQ_TASKRUN = UringConstants.ioRingSqTaskrun();
+    public static final int IORING_FEAT_NODROP = UringConstants.ioRingFeatNoDrop();
     public static final int IORING_FSYNC_DATASYNC = UringConstants.ioRingFsyncDatasync();
     public static final int IORING_SETUP_SQPOLL = UringConstants.ioRingSetupSqPoll();
     public static final int IORING_SETUP_IOPOLL = UringConstants.ioRingSetupIoPoll();
@@ -178,9 +186,17 @@ public class Native {
     public static final int IORING_SETUP_CQ_SIZE = UringConstants.ioRingSetupCqSize();
     public static final int IORING_SETUP_CLAMP = UringConstants.ioRingSetupClamp();
     public static final int IORING_SETUP_ATTACH_WQ = UringConstants.ioRingSetupAttachWq();
+    public static final int IORING_SETUP_R_DISABLED = UringConstants.ioRingSetupRDisabled();
+    public static final int IORING_SETUP_COOP_TASKRUN = UringConstants.ioRingSetupCoopTaskrun();
+    public static final int IORING_SETUP_TASKRUN_FLAG = UringConstants.ioRingSetupTaskrunFlag();
+    public static final int IORING_SETUP_SINGLE_ISSUER = UringConstants.ioRingSetupSingleIssuer();
+    public static final int IORING_SETUP_DEFER_TASKRUN = UringConstants.ioRingSetupDeferTaskrun();
     public static final int IOSQE_BUFFER_SELECT = UringConstants.iosqeBufferSelect();
+    public static final int IOSQE_FIXED_FILE = UringConstants.iosqeFixedFile();
+    public static final int IOSQE_IO_LINK = UringConstants.iosqeIoLink();
 
     public static final int IORING_CQE_F_BUFFER = UringConstants.ioRingCqeFBuffer();
+    public static final int IORING_CQE_F_BUF_MORE = UringConstants.ioRingCqeFBufMore();
 
     public static final int O_RDONLY = FileIoConstants.oRdOnly();
     public static final int O_WRONLY = FileIoConstants.oWrOnly();
@@ -188,6 +204,14 @@ public class Native {
     public static final int O_TRUNC = FileIoConstants.oTrunc();
     public static final int O_CREAT = FileIoConstants.oCreat();
     public static final int STATX_SIZE = FileIoConstants.statxSize();
+    public static final int STATX_BASIC_STATS = FileIoConstants.statxBasicStats();
+    public static final int STATX_BTIME = FileIoConstants.statxBtime();
+    public static final int AT_SYMLINK_NOFOLLOW = FileIoConstants.atSymlinkNoFollow();
+    public static final int AT_EMPTY_PATH = FileIoConstants.atEmptyPath();
+    public static final int S_IFMT = FileIoConstants.sIfMt();
+    public static final int S_IFREG = FileIoConstants.sIfReg();
+    public static final int S_IFDIR = FileIoConstants.sIfDir();
+    public static final int S_IFLNK = FileIoConstants.sIfLnk();
     public static final int O_DIRECT = FileIoConstants.oDirect();
     public static final int O_CLOEXEC = FileIoConstants.oCloexec();
     public static final int O_APPEND = FileIoConstants.oAppend();
@@ -199,4 +223,13 @@ public class Native {
     public static final int SPLICE_F_MOVE = FileIoConstants.spliceFMove();
     public static final int SPLICE_F_NONBLOCK = FileIoConstants.spliceFNonblock();
     public static final int SPLICE_F_MORE = FileIoConstants.spliceFMore();
+    public static final int ECANCELED = FileIoConstants.eCanceled();
+    public static final int EINTR = FileIoConstants.eIntr();
+    public static final int ENOBUFS = FileIoConstants.eNoBufs();
+    public static final int EPERM = FileIoConstants.ePerm();
+    public static final int ENOENT = FileIoConstants.eNoEnt();
+    public static final int EACCES = FileIoConstants.eAcces();
+    public static final int EEXIST = FileIoConstants.eExist();
+    public static final int ELOOP = FileIoConstants.eLoop();
+    public static final int ENOTEMPTY = FileIoConstants.eNotEmpty();
 }
@@ -1,5 +1,8 @@
 package one.kuring;
 
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static one.kuring.Native.*;
 
 class SubmissionQueue {
@@ -21,6 +24,9 @@ class SubmissionQueue {
 
     private static final int SQE_FILE_INDEX = 44;
 
+    private static final long CLAIM_POSITION_MASK = 0xFFFFFFFFL;
+    private static final long CLAIMS_CLOSED = 1L << 32;
+
     private final long kHead;
     private final long kTail;
     private final long kRingEntries;
@@ -41,6 +47,16 @@ class SubmissionQueue {
 
     private final long ringFlags;
 
+    // written by the owner thread only
+    private volatile long enterCalls;
+    private volatile long submitted;
+
+    // multi producer mode, see enableClaims
+    // lower 32 bits hold the next position to claim, CLAIMS_CLOSED bit is set once no more claims are allowed
+    private AtomicLong claimTail;
+    // position + 1 of the sqe last published in each slot
+    private AtomicIntegerArray claimPublished;
+
     public SubmissionQueue(long kHead,
                            long kTail,
                            long kRingMask,
@@ -83,6 +99,33 @@ class SubmissionQueue {
         return MemoryUtils.getIntVolatile(kFlags);
     }
 
+    /**
+     * @return true if the completion queue ran full and the kernel holds back completions that didn't fit
+     */
+    public boolean isCqOverflow() {
+        return (getFlags() & IORING_SQ_CQ_OVERFLOW) == IORING_SQ_CQ_OVERFLOW;
+    }
+
+    /**
+     * @return true if the kernel has task work for the ring that only runs once the submitting thread enters it,
+     * the flag is only maintained for rings set up with IORING_SETUP_TASKRUN_FLAG
+     */
+    public boolean isTaskRun() {
+        return (getFlags() & IORING_SQ_TASKRUN) == IORING_SQ_TASKRUN;
+    }
+
+    /**
+     * Enters the kernel just to reap, so it runs pending task work and posts the completions it holds back
+     * as far as the completion queue has room. Unlike a submit this enters the kernel even if a SQPOLL thread
+     * does the submitting.
+     *
+     * @return result of io_uring_enter, a negative errno if the kernel couldn't be entered
+     */
+    public int getEvents() {
+        enterCalls++;
+        return Native.ioUringEnter(ringFd, 0, 0, IORING_ENTER_GETEVENTS);
+    }
+
 
     public int submit(int minComplete) {
         return submit(tail - head, minComplete, IORING_ENTER_GETEVENTS);
@@ -148,6 +191,7 @@ class SubmissionQueue {
             }
         }
         if (needEnter) {
+            enterCalls++;
             ret = Native.ioUringEnter(ringFd, toSubmit, minComplete, flags);
         } else {
             ret = toSubmit;
@@ -156,6 +200,7 @@ class SubmissionQueue {
         if (ret < 0) {
             throw new RuntimeException(String.format("Error code: %d; message: %s", -ret, Native.decodeErrno(ret)));
         }
+        submitted += ret;
         return ret;
     }
 
@@ -163,6 +208,144 @@ class SubmissionQueue {
         return tail;
     }
 
+    /**
+     * Number of io_uring_enter calls, safe to read from any thread.
+     */
+    public long getEnterCalls() {
+        return enterCalls;
+    }
+
+    /**
+     * Number of sqes consumed by the kernel, safe to read from any thread.
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Approximate number of sqes written but not consumed by the kernel yet, safe to read from any thread.
+     */
+    public int pending() {
+        return Math.max(tail - MemoryUtils.getIntVolatile(kHead), 0);
+    }
+
+    public int getRingEntries() {
+        return ringEntries;
+    }
+
+    /**
+     * Switches the queue into multi producer mode, where every sqe, including the ones written
+     * by the owner thread, must be reserved with {@link #claim()} and made visible with
+     * {@link #publishClaim(long)}. The owner thread moves published sqes under the local tail
+     * with {@link #isClaimPublished()} and {@link #advanceTail()}.
+     * Must be called before the queue is shared with other threads.
+     */
+    public void enableClaims() {
+        claimTail = new AtomicLong(tail & CLAIM_POSITION_MASK);
+        claimPublished = new AtomicIntegerArray(ringEntries);
+    }
+
+    /**
+     * Reserves the next sqe, can be called from any thread.
+     *
+     * @return position of the reserved sqe or -1 if the queue is full or closed for claims
+     */
+    public long claim() {
+        return claim(1);
+    }
+
+    /**
+     * Reserves count consecutive sqes, so that they can be linked together, can be called from any thread.
+     *
+     * @return position of the first reserved sqe or -1 if the queue is full or closed for claims
+     */
+    public long claim(int count) {
+        while (true) {
+            long current = claimTail.get();
+            if ((current & CLAIMS_CLOSED) != 0) {
+                return -1;
+            }
+            // slots are free again only once the kernel has consumed them
+            if ((int) current - MemoryUtils.getIntVolatile(kHead) > ringEntries - count) {
+                return -1;
+            }
+            if (claimTail.compareAndSet(current, (current + count) & CLAIM_POSITION_MASK)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Fills the sqe reserved by {@link #claim()}, must be called by the thread that claimed it.
+     */
+    public void writeClaimedSqe(long position, byte op, int flags, int rwFlags, int fd,
+                                long bufferAddress, int length, long offset, long data, int bufIndex, int fileIndex) {
+        long sqe = submissionArrayQueueAddress + ((int) position & ringMask) * SQE_SIZE;
+        setData(sqe, op, flags, rwFlags, fd, bufferAddress, length, offset, data, bufIndex, fileIndex);
+    }
+
+    /**
+     * Makes the sqe written by {@link #writeClaimedSqe} visible to the owner thread.
+     */
+    public void publishClaim(long position) {
+        claimPublished.lazySet((int) position & ringMask, (int) position + 1);
+    }
+
+    /**
+     * Owner thread only.
+     *
+     * @return true if the sqe at the local tail has been claimed and published
+     */
+    public boolean isClaimPublished() {
+        return claimPublished.get(tail & ringMask) == tail + 1;
+    }
+
+    /**
+     * Owner thread only, true if some claimed sqes are not under the local tail yet.
+     */
+    public boolean hasClaims() {
+        return claimTail != null && (int) claimTail.get() != tail;
+    }
+
+    /**
+     * Owner thread only, overrides the user data of the published sqe at the local tail.
+     */
+    public void setClaimUserData(long userData) {
+        long sqe = submissionArrayQueueAddress + (tail & ringMask) * SQE_SIZE;
+        MemoryUtils.putLong(sqe + SQE_USER_DATA_FIELD, userData);
+    }
+
+    /**
+     * Owner thread only, turns the published sqe at the local tail into a nop with the given user data.
+     */
+    public void discardClaim(long userData) {
+        long sqe = submissionArrayQueueAddress + (tail & ringMask) * SQE_SIZE;
+        setData(sqe, IORING_OP_NOP, 0, 0, -1, 0, 0, 0, userData, 0, 0);
+    }
+
+    /**
+     * Owner thread only, moves the published sqe at the local tail under the tail.
+     */
+    public void advanceTail() {
+        tail++;
+    }
+
+    /**
+     * Rejects all further claims, sqes claimed before still have to be published and flushed.
+     */
+    public void closeClaims() {
+        if (claimTail != null) {
+            claimTail.getAndUpdate(current -> current | CLAIMS_CLOSED);
+        }
+    }
+
+    /**
+     * Owner thread only, number of sqes that can be enqueued before the queue has to be submitted.
+     */
+    public int remaining() {
+        return ringEntries - (tail - head);
+    }
+
     public boolean hasPending() {
         return tail - head > 0;
     }
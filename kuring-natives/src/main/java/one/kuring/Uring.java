@@ -4,9 +4,11 @@ class Uring {
     private final CompletionQueue completionQueue;
     private final SubmissionQueue submissionQueue;
     private final int ringFd;
+    private final int features;
 
-    Uring(CompletionQueue completionQueue, SubmissionQueue submissionQueue, int ringFd) {
+    Uring(CompletionQueue completionQueue, SubmissionQueue submissionQueue, int ringFd, int features) {
         this.ringFd = ringFd;
+        this.features = features;
         this.completionQueue = completionQueue;
         this.submissionQueue = submissionQueue;
     }
@@ -23,6 +25,13 @@ class Uring {
         return ringFd;
     }
 
+    /**
+     * @param feature one of the IORING_FEAT_* flags the kernel reported on setup, e.g. {@link Native#IORING_FEAT_NODROP}
+     */
+    public boolean hasFeature(int feature) {
+        return (features & feature) == feature;
+    }
+
     public void close() {
         Native.closeRing(ringFd, submissionQueue.kRingPointer, submissionQueue.ringSize, completionQueue.kRingPointer, completionQueue.ringSize);
     }
@@ -94,4 +94,36 @@ class UringConstants {
     static native int ioRingCqeFBuffer();
 
     static native int ioRingUnregisterPbufRing();
+
+    static native int iosqeFixedFile();
+
+    static native int ioRingRegisterFilesUpdate();
+
+    static native byte ioRingOpAsyncCancel();
+
+    static native int iosqeIoLink();
+
+    static native byte ioRingOpLinkTimeout();
+
+    static native int ioRingCqeFBufMore();
+
+    static native int iouPbufRingInc();
+
+    static native int ioRingFeatNoDrop();
+
+    static native int ioRingSetupRDisabled();
+
+    static native int ioRingSetupCoopTaskrun();
+
+    static native int ioRingSetupTaskrunFlag();
+
+    static native int ioRingSetupSingleIssuer();
+
+    static native int ioRingSetupDeferTaskrun();
+
+    static native int ioRingSqTaskrun();
+
+    static native int ioRingRegisterEnableRings();
+
+    static native byte ioRingOpFtruncate();
 }
@@ -0,0 +1,67 @@
+package one.kuring
+
+import org.openjdk.jmh.annotations.*
+
+/**
+ * Submits batches of nops through a reusable result provider, so the only objects involved are
+ * the pooled commands. Run with `-prof gc`: once warmed up gc.alloc.rate.norm should stay at ~0 B/op.
+ */
+@Fork(2)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 3, time = 5)
+@State(Scope.Thread)
+@OperationsPerInvocation(CommandPoolingBenchmark.BATCH)
+open class CommandPoolingBenchmark {
+
+    companion object {
+        const val BATCH = 64
+    }
+
+    lateinit var eventExecutor: EventExecutor
+    private val resultProvider = CountingResultProvider()
+
+    @Setup
+    fun setup() {
+        eventExecutor = EventExecutor.initDefault()
+    }
+
+    @TearDown
+    fun tearDown() {
+        eventExecutor.close()
+    }
+
+    @Benchmark
+    fun nopBatch(): Long {
+        val target = resultProvider.completed + BATCH
+        repeat(BATCH) {
+            eventExecutor.executeCommand(Command.nop(eventExecutor, resultProvider))
+        }
+        while (resultProvider.completed < target) {
+            // spin, completions are counted on the event loop thread
+        }
+        return target
+    }
+
+    class CountingResultProvider : ResultProvider<Int> {
+        @Volatile
+        var completed = 0L
+
+        override fun onSuccess(result: Int) {
+            completed++
+        }
+
+        override fun onSuccess(`object`: Any?) {
+        }
+
+        override fun onError(ex: Throwable) {
+            completed++
+        }
+
+        override fun getInner(): Int? {
+            return null
+        }
+
+        override fun release() {
+        }
+    }
+}
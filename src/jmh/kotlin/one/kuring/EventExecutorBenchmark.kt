@@ -1,7 +1,7 @@
 package one.kuring
 
 import kotlinx.coroutines.runBlocking
-import kotlinx.coroutines.suspendCancellableCoroutine
+import one.kuring.AbstractFile.Companion.suspendCommand
 import org.openjdk.jmh.annotations.*
 
 @Fork(2)
@@ -26,9 +26,7 @@ open class EventExecutorBenchmark {
     @Benchmark
     fun executeSingle(): Int {
         return runBlocking {
-            suspendCancellableCoroutine {
-                eventExecutor.executeCommand(Command.nop(eventExecutor, CoroutineResultProvider.newInstance(it)))
-            }
+            eventExecutor.suspendCommand { Command.nop(eventExecutor, it) }
         }
     }
 
@@ -36,9 +34,7 @@ open class EventExecutorBenchmark {
     @GroupThreads(3)
     fun executeMulti(): Int {
         return runBlocking {
-            suspendCancellableCoroutine {
-                eventExecutor.executeCommand(Command.nop(eventExecutor, CoroutineResultProvider.newInstance(it)))
-            }
+            eventExecutor.suspendCommand { Command.nop(eventExecutor, it) }
         }
     }
 }
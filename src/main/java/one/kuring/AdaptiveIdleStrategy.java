@@ -0,0 +1,54 @@
+package one.kuring;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tunes itself from the observed gaps between bursts of work, kept as an exponentially weighted moving average.
+ * When the expected gap is longer than {@code maxWaitNanos} the loop parks right away, otherwise it spins for
+ * the first half of twice the expected gap, yields for the second half and parks if work still didn't show up.
+ */
+public class AdaptiveIdleStrategy implements IdleStrategy {
+    private final long maxWaitNanos;
+    private long averageGapNanos;
+    private long idleStartNanos = -1;
+
+    public AdaptiveIdleStrategy(long maxWait, TimeUnit unit) {
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("maxWait < 0");
+        }
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.averageGapNanos = maxWaitNanos;
+    }
+
+    @Override
+    public Action onIdle(int idleCount) {
+        long now = System.nanoTime();
+        if (idleStartNanos == -1) {
+            idleStartNanos = now;
+        }
+        if (averageGapNanos > maxWaitNanos) {
+            return Action.PARK;
+        }
+        long idleNanos = now - idleStartNanos;
+        if (idleNanos < averageGapNanos) {
+            return Action.SPIN;
+        }
+        if (idleNanos < 2 * averageGapNanos) {
+            return Action.YIELD;
+        }
+        return Action.PARK;
+    }
+
+    @Override
+    public void onWork(int workCount) {
+        if (idleStartNanos != -1) {
+            long gap = System.nanoTime() - idleStartNanos;
+            averageGapNanos += (gap - averageGapNanos) >> 3;
+            idleStartNanos = -1;
+        }
+    }
+
+    long averageGapNanos() {
+        return averageGapNanos;
+    }
+}
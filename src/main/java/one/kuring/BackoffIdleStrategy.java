@@ -0,0 +1,31 @@
+package one.kuring;
+
+/**
+ * Spins for {@code maxSpins} idle iterations, then yields for {@code maxYields} more and parks after that.
+ */
+public class BackoffIdleStrategy implements IdleStrategy {
+    private final int maxSpins;
+    private final int maxYields;
+
+    public BackoffIdleStrategy(int maxSpins, int maxYields) {
+        if (maxSpins < 0) {
+            throw new IllegalArgumentException("maxSpins < 0");
+        }
+        if (maxYields < 0) {
+            throw new IllegalArgumentException("maxYields < 0");
+        }
+        this.maxSpins = maxSpins;
+        this.maxYields = maxYields;
+    }
+
+    @Override
+    public Action onIdle(int idleCount) {
+        if (idleCount <= maxSpins) {
+            return Action.SPIN;
+        }
+        if (idleCount - maxSpins <= maxYields) {
+            return Action.YIELD;
+        }
+        return Action.PARK;
+    }
+}
@@ -1,18 +1,44 @@
 package one.kuring;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Result of a provided buffer read. The handle is pooled, it must not be used after {@link #close()}.
+ */
 public class BufRingResult implements AutoCloseable {
+    private static final ObjectRecycler.Kind<BufRingResult> KIND = new ObjectRecycler.Kind<>(BufRingResult::new);
+
+    private final ObjectRecycler<BufRingResult> recycler;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
     private ByteBuffer buffer;
     private int readBytes;
     private int bufferId;
+    private boolean more;
+    private IoUringBufRing bufRing;
     private Ring ownerRing;
+    private EventExecutor executor;
 
-    BufRingResult(ByteBuffer buffer, int readBytes, int bufferId, Ring ownerRing) {
-        this.buffer = buffer;
-        this.readBytes = readBytes;
-        this.bufferId = bufferId;
-        this.ownerRing = ownerRing;
+    private BufRingResult(ObjectRecycler<BufRingResult> recycler) {
+        this.recycler = recycler;
+    }
+
+    /**
+     * @param bufferId id of the buffer in the group, -1 for a spare buffer the read fell back to
+     */
+    static BufRingResult newInstance(ByteBuffer buffer, int readBytes, int bufferId, boolean more,
+                                     IoUringBufRing bufRing, Ring ownerRing, EventExecutor executor) {
+        BufRingResult result = executor.recycler(KIND).borrow();
+        result.buffer = buffer;
+        result.readBytes = readBytes;
+        result.bufferId = bufferId;
+        result.more = more;
+        result.bufRing = bufRing;
+        result.ownerRing = ownerRing;
+        result.executor = executor;
+        result.closed.set(false);
+        return result;
     }
 
     public ByteBuffer getBuffer() {
@@ -23,16 +49,50 @@ public class BufRingResult implements AutoCloseable {
         return readBytes;
     }
 
+    /**
+     * Buffers of an incrementally consumed group are handed out piece by piece, {@link #getBuffer()} then only
+     * covers the bytes of this read.
+     *
+     * @return true if the kernel keeps filling the rest of the buffer with later reads,
+     * the buffer goes back to its group once the kernel is done with it and all its pieces are closed
+     */
+    public boolean hasMore() {
+        return more;
+    }
+
     int getBufferId() {
         return bufferId;
     }
 
+    IoUringBufRing getBufRing() {
+        return bufRing;
+    }
+
     Ring getOwnerRing() {
         return ownerRing;
     }
 
+    /**
+     * Returns the buffer to its group, can be called from any thread. Only the first call has an effect.
+     */
     @Override
     public void close() throws Exception {
-        ownerRing.recycleBuffer(bufferId);
+        if (closed.compareAndSet(false, true)) {
+            executor.recycleBufRingResult(this);
+        }
+    }
+
+    /**
+     * Puts the handle back to the pool once the event loop took the buffer back.
+     */
+    void release() {
+        buffer = null;
+        readBytes = 0;
+        bufferId = 0;
+        more = false;
+        bufRing = null;
+        ownerRing = null;
+        executor = null;
+        recycler.recycle(this);
     }
 }
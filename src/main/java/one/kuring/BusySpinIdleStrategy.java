@@ -0,0 +1,12 @@
+package one.kuring;
+
+/**
+ * Never gives the cpu away, lowest latency at the cost of a fully busy core per executor.
+ */
+public class BusySpinIdleStrategy implements IdleStrategy {
+
+    @Override
+    public Action onIdle(int idleCount) {
+        return Action.SPIN;
+    }
+}
@@ -0,0 +1,108 @@
+package one.kuring;
+
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * {@link java.nio.file.OpenOption}s and attributes of a JDK channel translated to the flags and mode of the open.
+ */
+final class ChannelOptions {
+    private static final int DEFAULT_MODE = 438; // 0666
+
+    final boolean readable;
+    final boolean writable;
+    final boolean append;
+    final boolean deleteOnClose;
+    final OpenOption[] openOptions;
+    final int mode;
+
+    private ChannelOptions(boolean readable, boolean writable, boolean append, boolean deleteOnClose,
+                           OpenOption[] openOptions, int mode) {
+        this.readable = readable;
+        this.writable = writable;
+        this.append = append;
+        this.deleteOnClose = deleteOnClose;
+        this.openOptions = openOptions;
+        this.mode = mode;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if an option isn't a {@link StandardOpenOption} or an attribute
+     *                                       isn't {@code posix:permissions}
+     * @throws IllegalArgumentException      if APPEND is combined with READ or TRUNCATE_EXISTING
+     */
+    static ChannelOptions parse(Set<? extends java.nio.file.OpenOption> options, FileAttribute<?>... attrs) {
+        boolean append = options.contains(StandardOpenOption.APPEND);
+        boolean readable = options.contains(StandardOpenOption.READ);
+        boolean writable = options.contains(StandardOpenOption.WRITE) || append;
+        if (!readable && !writable) {
+            readable = true;
+        }
+        if (append && (readable || options.contains(StandardOpenOption.TRUNCATE_EXISTING))) {
+            throw new IllegalArgumentException("APPEND + READ or APPEND + TRUNCATE_EXISTING not allowed");
+        }
+        Set<OpenOption> openOptions = EnumSet.noneOf(OpenOption.class);
+        openOptions.add(readable && writable ? OpenOption.READ_WRITE : writable ? OpenOption.WRITE_ONLY : OpenOption.READ_ONLY);
+        openOptions.add(OpenOption.CLOSE_ON_EXIT);
+        boolean deleteOnClose = false;
+        for (java.nio.file.OpenOption option : options) {
+            if (!(option instanceof StandardOpenOption)) {
+                throw new UnsupportedOperationException("Unsupported option: " + option);
+            }
+            switch ((StandardOpenOption) option) {
+                case APPEND:
+                    openOptions.add(OpenOption.APPEND);
+                    break;
+                case CREATE:
+                    if (writable) {
+                        openOptions.add(OpenOption.CREATE);
+                    }
+                    break;
+                case CREATE_NEW:
+                    if (writable) {
+                        openOptions.add(OpenOption.CREATE);
+                        openOptions.add(OpenOption.EXCL);
+                    }
+                    break;
+                case TRUNCATE_EXISTING:
+                    if (writable) {
+                        openOptions.add(OpenOption.TRUNCATE);
+                    }
+                    break;
+                case DSYNC:
+                    openOptions.add(OpenOption.DSYNC);
+                    break;
+                case SYNC:
+                    openOptions.add(OpenOption.SYNC);
+                    break;
+                case DELETE_ON_CLOSE:
+                    deleteOnClose = true;
+                    break;
+                default:
+                    // READ, WRITE and SPARSE
+                    break;
+            }
+        }
+        return new ChannelOptions(readable, writable, append, deleteOnClose,
+                openOptions.toArray(new OpenOption[0]), toMode(attrs));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int toMode(FileAttribute<?>... attrs) {
+        int mode = DEFAULT_MODE;
+        for (FileAttribute<?> attr : attrs) {
+            if (!"posix:permissions".equals(attr.name())) {
+                throw new UnsupportedOperationException("Unsupported attribute: " + attr.name());
+            }
+            mode = 0;
+            for (PosixFilePermission permission : (Set<PosixFilePermission>) attr.value()) {
+                // the enum lists permissions from OWNER_READ (0400) down to OTHERS_EXECUTE (0001)
+                mode |= 1 << (8 - permission.ordinal());
+            }
+        }
+        return mode;
+    }
+}
@@ -1,20 +1,16 @@
 package one.kuring;
 
-import cn.danielw.fop.DisruptorObjectPool;
-import cn.danielw.fop.ObjectPool;
-import cn.danielw.fop.PoolConfig;
-import cn.danielw.fop.Poolable;
+import kotlinx.coroutines.Job;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
 
 class Command<T> implements Runnable {
-    private static final CommandAllocator<? extends Command<?>> allocator = new CommandAllocator<>();
-    private static final PoolConfig poolConfig = new PoolConfig() {
-        {
-            setPartitionSize(50);
-            setMinSize(100);
-            setMaxSize(150);
-        }
-    };
-    private static final ObjectPool<? extends Command<?>> pool = new DisruptorObjectPool<>(poolConfig, allocator);
+    private static final ObjectRecycler.Kind<Command<?>> KIND = new ObjectRecycler.Kind<>(Command::new);
+    // "", statx of the fd itself with AT_EMPTY_PATH
+    private static final long EMPTY_PATH = MemoryUtils.getStringPtr("");
+
+    private final ObjectRecycler<Command<?>> recycler;
 
     private byte op;
     private int flags;
@@ -28,8 +24,27 @@ class Command<T> implements Runnable {
     private T operationResult;
     private EventExecutor executor;
     private PollableStatus pollableStatus;
-    private Poolable<?> handle;
     private ResultProvider<T> resultProvider;
+    // user_data of the submitted sqe, assigned by the event loop
+    private long userData = CommandTable.NO_SLOT;
+    // bumped every time the command goes back to the pool, tells a late cancel request the command was reused
+    private int epoch;
+    // 0 unless the operation is linked to a timeout
+    private long timeoutNanos;
+    // buffer group of a provided buffer read
+    private IoUringBufRing bufRing;
+    // spare buffer a provided buffer read falls back to when the group runs out of buffers
+    private ByteBuffer fallbackBuffer;
+    // System.nanoTime() when handed to the executor, 0 unless the executor times commands
+    private long submitNanos;
+    // already reported by the stuck operation watchdog
+    private boolean stuck;
+    // cancelled before it reached the ring, event loop thread only
+    private boolean cancelled;
+    // holds an in-flight permit of the executor, given back when the command completes
+    private boolean permit;
+    // waits for an in-flight permit before it is handed to the executor, null otherwise
+    private volatile Job permitWait;
 
 
     byte getOp() {
@@ -80,18 +95,123 @@ class Command<T> implements Runnable {
         return executor;
     }
 
-    Command() {
+    long getUserData() {
+        return userData;
+    }
+
+    void setUserData(long userData) {
+        this.userData = userData;
+    }
+
+    int getEpoch() {
+        return epoch;
+    }
+
+    long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    long getSubmitNanos() {
+        return submitNanos;
+    }
+
+    void setSubmitNanos(long submitNanos) {
+        this.submitNanos = submitNanos;
+    }
+
+    boolean isStuck() {
+        return stuck;
+    }
+
+    void setStuck() {
+        this.stuck = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Marks a command that has been cancelled before the event loop got it, it fails instead of being submitted.
+     */
+    void setCancelled() {
+        this.cancelled = true;
+    }
+
+    void setPermit() {
+        this.permit = true;
+    }
+
+    /**
+     * Gives the in-flight permit back, if the command holds one. Called before the result provider
+     * is told about the result, so the next operation can take the permit right away.
+     */
+    void releasePermit() {
+        if (permit) {
+            permit = false;
+            executor.inFlightLimit().release();
+        }
+    }
+
+    void setPermitWait(Job permitWait) {
+        this.permitWait = permitWait;
+    }
+
+    /**
+     * Stops waiting for an in-flight permit, the command is then handed to the executor without one.
+     * Call after {@link #setCancelled()}, so the command fails instead of being submitted.
+     */
+    void cancelPermitWait() {
+        Job permitWait = this.permitWait;
+        if (permitWait != null) {
+            permitWait.cancel((CancellationException) null);
+        }
+    }
+
+    ResultProvider<T> getResultProvider() {
+        return resultProvider;
+    }
+
+    IoUringBufRing getBufRing() {
+        return bufRing;
+    }
+
+    boolean isIncrementalRead() {
+        return bufRing != null && bufRing.isIncremental();
+    }
+
+    ByteBuffer getFallbackBuffer() {
+        return fallbackBuffer;
+    }
+
+    /**
+     * Turns the provided buffer read into a plain read into the given buffer.
+     */
+    void useFallbackBuffer(ByteBuffer buffer) {
+        fallbackBuffer = buffer;
+        flags &= ~Native.IOSQE_BUFFER_SELECT;
+        bufIndex = 0;
+        bufferAddress = MemoryUtils.getDirectBufferAddress(buffer);
+        length = Math.min(length, buffer.capacity());
+    }
+
+    private Command(ObjectRecycler<Command<?>> recycler) {
+        this.recycler = recycler;
     }
 
 
     @Override
     public void run() {
-        long opId = executor.scheduleCommand(this);
-        executor.ringFromCommand(this).addOperation(this, opId);
+        if (cancelled) {
+            error(new CancellationException("Cancelled before submission"));
+            return;
+        }
+        executor.ringFromCommand(this).addCommand(this);
     }
 
     void complete(Object obj) {
         try {
+            releasePermit();
             resultProvider.onSuccess(obj);
         } finally {
             release();
@@ -100,6 +220,7 @@ class Command<T> implements Runnable {
 
     void complete(int result) {
         try {
+            releasePermit();
             resultProvider.onSuccess(result);
         } finally {
             release();
@@ -108,12 +229,40 @@ class Command<T> implements Runnable {
 
     void error(Throwable ex) {
         try {
+            releasePermit();
             resultProvider.onError(ex);
         } finally {
             release();
         }
     }
 
+    /**
+     * Makes the command refer to its file through the registered file table slot instead of the fd.
+     *
+     * @param fixedFileIndex slot in the registered file table or -1 to keep using the fd
+     */
+    Command<T> withFixedFile(int fixedFileIndex) {
+        if (fixedFileIndex >= 0) {
+            fd = fixedFileIndex;
+            flags |= Native.IOSQE_FIXED_FILE;
+        }
+        return this;
+    }
+
+    /**
+     * Links the command to a timeout, if the operation doesn't complete in time the kernel cancels it
+     * and the command fails with {@link OperationTimeoutException}.
+     *
+     * @param timeoutNanos timeout in nanoseconds or 0 for no timeout
+     */
+    Command<T> withTimeout(long timeoutNanos) {
+        if (timeoutNanos < 0) {
+            throw new IllegalArgumentException("Timeout is negative");
+        }
+        this.timeoutNanos = timeoutNanos;
+        return this;
+    }
+
     static <T> Command<T> nop(EventExecutor executor, ResultProvider<T> resultProvider) {
         return init(Native.IORING_OP_NOP,
                 0,
@@ -129,6 +278,26 @@ class Command<T> implements Runnable {
                 resultProvider);
     }
 
+    /**
+     * Completes with -ETIME once the relative timeout expires.
+     *
+     * @param timespecAddress __kernel_timespec that must stay valid until the sqe is submitted
+     */
+    static <T> Command<T> timeout(long timespecAddress, EventExecutor executor, ResultProvider<T> resultProvider) {
+        return init(Native.IORING_OP_TIMEOUT,
+                0,
+                0,
+                -1,
+                timespecAddress,
+                1,
+                0,
+                0,
+                0,
+                PollableStatus.NON_POLLABLE,
+                executor,
+                resultProvider);
+    }
+
     static <T> Command<T> writeVectored(
             int fd,
             long offset,
@@ -227,31 +396,91 @@ class Command<T> implements Runnable {
         );
     }
 
-    static <T> Command<T> readProvidedBuf(
+    static <T> Command<T> readFixed(
+            int fd,
+            long offset,
+            int length,
+            long bufferAddress,
+            int bufIndex,
+            PollableStatus pollableStatus,
+            EventExecutor executor,
+            ResultProvider<T> resultProvider
+    ) {
+        return init(
+                Native.IORING_OP_READ_FIXED,
+                0,
+                0,
+                fd,
+                bufferAddress,
+                length,
+                offset,
+                bufIndex,
+                0,
+                pollableStatus,
+                executor,
+                resultProvider
+        );
+    }
+
+    static <T> Command<T> writeFixed(
             int fd,
             long offset,
+            int length,
+            long bufferAddress,
+            int bufIndex,
             PollableStatus pollableStatus,
             EventExecutor executor,
             ResultProvider<T> resultProvider
     ) {
         return init(
+                Native.IORING_OP_WRITE_FIXED,
+                0,
+                0,
+                fd,
+                bufferAddress,
+                length,
+                offset,
+                bufIndex,
+                0,
+                pollableStatus,
+                executor,
+                resultProvider
+        );
+    }
+
+    static <T> Command<T> readProvidedBuf(
+            int fd,
+            long offset,
+            int length,
+            PollableStatus pollableStatus,
+            EventExecutor executor,
+            ResultProvider<T> resultProvider
+    ) {
+        IoUringBufRing bufRing = executor.bufRing(pollableStatus, length);
+        Command<T> command = init(
                 Native.IORING_OP_READ,
                 Native.IOSQE_BUFFER_SELECT,
                 0,
                 fd,
                 0,
-                executor.getBufferLength(pollableStatus),
+                Math.min(length, bufRing.getBufferSize()),
                 offset,
-                executor.bufRingId(pollableStatus),
+                bufRing.getId(),
                 0,
                 pollableStatus,
                 executor,
                 resultProvider
         );
+        command.bufRing = bufRing;
+        return command;
     }
 
+    /**
+     * Statx of an open file, follows the file through a rename or an unlink unlike a statx of its path.
+     * Takes the fd rather than a registered file table slot, statx doesn't accept a fixed file.
+     */
     static <T> Command<T> size(
-            long pathAddress,
+            int fd,
             long statxBuffer,
             EventExecutor executor,
             ResultProvider<T> resultProvider
@@ -259,10 +488,38 @@ class Command<T> implements Runnable {
         return init(
                 Native.IORING_OP_STATX,
                 0,
+                Native.AT_EMPTY_PATH,
+                fd,
+                EMPTY_PATH,
+                Native.STATX_SIZE,
+                statxBuffer,
+                0,
                 0,
+                null,
+                executor,
+                resultProvider
+        );
+    }
+
+    /**
+     * @param statxFlags AT_* flags, e.g. {@link Native#AT_SYMLINK_NOFOLLOW}
+     * @param mask       STATX_* fields to fill in
+     */
+    static <T> Command<T> statx(
+            long pathAddress,
+            int statxFlags,
+            int mask,
+            long statxBuffer,
+            EventExecutor executor,
+            ResultProvider<T> resultProvider
+    ) {
+        return init(
+                Native.IORING_OP_STATX,
+                0,
+                statxFlags,
                 -1,
                 pathAddress,
-                Native.STATX_SIZE,
+                mask,
                 statxBuffer,
                 0,
                 0,
@@ -363,6 +620,52 @@ class Command<T> implements Runnable {
         );
     }
 
+    static <T> Command<T> sync(
+            int fd,
+            EventExecutor executor,
+            ResultProvider<T> resultProvider
+    ) {
+        return init(
+                Native.IORING_OP_FSYNC,
+                0,
+                0,
+                fd,
+                0,
+                0,
+                0,
+                0,
+                0,
+                null,
+                executor,
+                resultProvider
+        );
+    }
+
+    /**
+     * Requires kernel 6.9+
+     */
+    static <T> Command<T> truncate(
+            int fd,
+            long length,
+            EventExecutor executor,
+            ResultProvider<T> resultProvider
+    ) {
+        return init(
+                Native.IORING_OP_FTRUNCATE,
+                0,
+                0,
+                fd,
+                0,
+                0,
+                length,
+                0,
+                0,
+                null,
+                executor,
+                resultProvider
+        );
+    }
+
     static <T> Command<T> preAllocate(
             int fd,
             long length,
@@ -424,8 +727,8 @@ class Command<T> implements Runnable {
             EventExecutor executor,
             ResultProvider<T> resultProvider
     ) {
-        Poolable<Command<T>> handle = (Poolable<Command<T>>) pool.borrowObject();
-        Command<T> command = handle.getObject();
+        @SuppressWarnings("unchecked")
+        Command<T> command = (Command<T>) executor.recycler(KIND).borrow();
         command.op = op;
         command.flags = flags;
         command.rwFlags = rwFlags;
@@ -439,7 +742,6 @@ class Command<T> implements Runnable {
         command.pollableStatus = pollableStatus;
         command.resultProvider = resultProvider;
         command.operationResult = resultProvider.getInner();
-        command.handle = handle;
         return command;
     }
 
@@ -457,7 +759,17 @@ class Command<T> implements Runnable {
         resultProvider = null;
         executor = null;
         pollableStatus = null;
-        handle.close();
+        userData = CommandTable.NO_SLOT;
+        timeoutNanos = 0;
+        submitNanos = 0;
+        stuck = false;
+        cancelled = false;
+        permit = false;
+        permitWait = null;
+        bufRing = null;
+        fallbackBuffer = null;
+        epoch++;
+        recycler.recycle(this);
     }
 
     @Override
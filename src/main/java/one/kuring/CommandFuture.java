@@ -0,0 +1,44 @@
+package one.kuring;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Future of an operation of the non suspending file API, cancelling it asks the kernel to cancel the operation.
+ * Dependent stages that don't come with their own executor run on the event loop thread and must not block it.
+ */
+final class CommandFuture extends CompletableFuture<Integer> implements IntCompletionHandler<Object> {
+    private final EventExecutor executor;
+    private Command<?> command;
+    private int epoch;
+
+    CommandFuture(EventExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Called right before the command is submitted.
+     */
+    void setCommand(Command<?> command) {
+        this.command = command;
+        this.epoch = command.getEpoch();
+    }
+
+    @Override
+    public void completed(int result, Object attachment) {
+        complete(result);
+    }
+
+    @Override
+    public void failed(Throwable ex, Object attachment) {
+        completeExceptionally(ex);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled && command != null) {
+            executor.cancel(command, epoch);
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,95 @@
+package one.kuring;
+
+import java.util.function.Consumer;
+
+/**
+ * Fixed capacity table of in-flight commands shared by the rings of one executor.
+ * The slot of a command and the generation of that slot are encoded in the sqe user_data:
+ * <pre>
+ * | generation (upper 32 bits) | slot (lower 32 bits) |
+ * </pre>
+ * so a completion is resolved with a single array load, and a completion whose generation
+ * doesn't match the slot anymore (stale or duplicated user_data) is ignored.
+ * <p>
+ * Not thread safe, must only be accessed from the event loop thread.
+ */
+class CommandTable {
+    static final long NO_SLOT = -1L;
+
+    private final Command<?>[] commands;
+    private final int[] generations;
+    private final int[] freeSlots;
+    private int freeCount;
+
+    CommandTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        this.commands = new Command<?>[capacity];
+        this.generations = new int[capacity];
+        this.freeSlots = new int[capacity];
+        // lower slots on top of the stack, so a lightly loaded table stays within a few cache lines
+        for (int i = 0; i < capacity; i++) {
+            freeSlots[i] = capacity - 1 - i;
+        }
+        this.freeCount = capacity;
+    }
+
+    /**
+     * @return user_data identifying the command or {@link #NO_SLOT} if the table is full
+     */
+    long add(Command<?> command) {
+        if (freeCount == 0) {
+            return NO_SLOT;
+        }
+        int slot = freeSlots[--freeCount];
+        commands[slot] = command;
+        long userData = ((long) generations[slot] << 32) | slot;
+        command.setUserData(userData);
+        return userData;
+    }
+
+    /**
+     * @return command associated with the given user_data or null if there is no such command
+     */
+    Command<?> get(long userData) {
+        int slot = (int) userData;
+        if (slot < 0 || slot >= commands.length || generations[slot] != (int) (userData >>> 32)) {
+            return null;
+        }
+        return commands[slot];
+    }
+
+    /**
+     * Removes the command associated with the given user_data, the slot can be reused right away
+     * because any further completion carrying the same user_data won't match the new generation.
+     *
+     * @return removed command or null if there is no such command
+     */
+    Command<?> remove(long userData) {
+        Command<?> command = get(userData);
+        if (command != null) {
+            int slot = (int) userData;
+            commands[slot] = null;
+            generations[slot]++;
+            freeSlots[freeCount++] = slot;
+        }
+        return command;
+    }
+
+    void forEach(Consumer<Command<?>> action) {
+        for (Command<?> command : commands) {
+            if (command != null) {
+                action.accept(command);
+            }
+        }
+    }
+
+    int size() {
+        return commands.length - freeCount;
+    }
+
+    int capacity() {
+        return commands.length;
+    }
+}
@@ -0,0 +1,51 @@
+package one.kuring;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * Thrown when the kernel fails an operation, carries the errno the operation completed with.
+ */
+public class ErrnoException extends IOException {
+    private final int errno;
+
+    ErrnoException(int errno) {
+        super(String.format("Error code: %d; message: %s", errno, Native.decodeErrno(-errno)));
+        this.errno = errno;
+    }
+
+    /**
+     * @return positive errno, e.g. {@link Native#ENOENT}
+     */
+    public int getErrno() {
+        return errno;
+    }
+
+    /**
+     * The exception the JDK file system throws for this errno, e.g. {@link NoSuchFileException} for ENOENT.
+     */
+    FileSystemException toFileSystemException(String file) {
+        FileSystemException ex;
+        if (errno == Native.ENOENT) {
+            ex = new NoSuchFileException(file);
+        } else if (errno == Native.EEXIST) {
+            ex = new FileAlreadyExistsException(file);
+        } else if (errno == Native.EACCES || errno == Native.EPERM) {
+            ex = new AccessDeniedException(file);
+        } else if (errno == Native.ENOTEMPTY) {
+            ex = new DirectoryNotEmptyException(file);
+        } else if (errno == Native.ELOOP) {
+            // a loop of symbolic links, with the message the JDK gives
+            ex = new FileSystemException(file, null,
+                    Native.decodeErrno(-errno) + " or unable to access attributes of symbolic link");
+        } else {
+            ex = new FileSystemException(file, null, Native.decodeErrno(-errno));
+        }
+        ex.initCause(this);
+        return ex;
+    }
+}
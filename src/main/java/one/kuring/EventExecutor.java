@@ -1,6 +1,12 @@
 package one.kuring;
 
+import kotlinx.coroutines.sync.Semaphore;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public abstract class EventExecutor implements AutoCloseable {
 
@@ -12,7 +18,31 @@ public abstract class EventExecutor implements AutoCloseable {
 
     abstract <T> T executeCommand(Command<T> command);
 
-    abstract <T> long scheduleCommand(Command<T> command);
+    abstract void execute(Runnable task);
+
+    /**
+     * Queues the task to run on the event loop thread, unlike {@link #execute(Runnable)} it never runs the task
+     * right away, even if called from the event loop thread.
+     */
+    abstract void schedule(Runnable task);
+
+    /**
+     * @return true if called from the event loop thread
+     */
+    abstract boolean inEventLoop();
+
+    /**
+     * @return true while the event loop is handling completions, event loop thread only
+     */
+    abstract boolean isReaping();
+
+    /**
+     * Asks the kernel to cancel the command if it is still in flight, can be called from any thread.
+     * The command completes with an error once the kernel gives up on it.
+     *
+     * @param epoch {@link Command#getEpoch()} read before the command was submitted
+     */
+    abstract void cancel(Command<?> command, int epoch);
 
     abstract <T> Ring ringFromCommand(Command<T> command);
 
@@ -20,15 +50,109 @@ public abstract class EventExecutor implements AutoCloseable {
 
     abstract void start();
 
+    @Override
+    public abstract void close();
+
     abstract int sleepableRingFd();
 
     public abstract void recycleBufRingResult(BufRingResult x);
 
-    abstract int bufRingId(PollableStatus pollableStatus);
+    /**
+     * Number of provided buffer reads that found the buffer group with the given buffer size empty,
+     * see {@link Builder#withBufRing(int, int)}. A steadily growing value means the group is too small
+     * for the number of buffers the application holds on to.
+     */
+    public abstract long bufRingExhausted(int bufRingBufSize);
+
+    /**
+     * Number of provided buffer reads that fell back to a spare buffer, see {@link Builder#bufRingSpareBuffers(int)}.
+     */
+    public abstract long bufRingFallbacks(int bufRingBufSize);
+
+    /**
+     * Picks the provided buffer group for a read of length bytes, see {@link Builder#withBufRing(int, int)}.
+     *
+     * @throws IllegalStateException if the executor was built without buf rings
+     */
+    abstract IoUringBufRing bufRing(PollableStatus pollableStatus, int length);
+
+    /**
+     * Returns the pool of objects of the given kind owned by this executor, creating it on first use.
+     */
+    abstract <T> ObjectRecycler<T> recycler(ObjectRecycler.Kind<T> kind);
+
+    /**
+     * Approximate number of commands currently owned by this executor, safe to read from any thread.
+     */
+    abstract int inFlight();
+
+    /**
+     * Permits that file operations take for as long as they are in flight, see {@link Builder#maxInFlight(int)}.
+     *
+     * @return null if the number of operations in flight is not limited
+     */
+    abstract Semaphore inFlightLimit();
+
+    /**
+     * Registers the file in the registered file table of both rings, event loop thread only.
+     *
+     * @return slot the file was registered at or -1 if there is no registered file table or it is full
+     */
+    abstract int registerFile(int fd);
+
+    /**
+     * Frees the registered file table slot, event loop thread only.
+     */
+    abstract void unregisterFile(int fixedFileIndex);
+
+    /**
+     * Takes a buffer from the pool set up with {@link Builder#withRegisteredBuffers(int, int)}.
+     * The buffer must be closed to return it to the pool.
+     *
+     * @return free buffer or null if all buffers are in use
+     * @throws IllegalStateException if the executor was built without registered buffers
+     */
+    public abstract RegisteredBuffer borrowRegisteredBuffer();
+
+    /**
+     * Latencies and gauges of this executor, see {@link Builder#withMetrics()}.
+     *
+     * @throws IllegalStateException if the executor was built without metrics
+     */
+    public abstract ExecutorMetrics metrics();
+
+    /**
+     * Lists the operations currently owned by the kernel, taken on the event loop thread.
+     * The executor's own bookkeeping operations are left out.
+     *
+     * @return completes with the operations, or with a {@link java.util.concurrent.RejectedExecutionException}
+     * if the executor is closed
+     */
+    public abstract CompletableFuture<List<InFlightOperation>> inFlightOperations();
+
+    /**
+     * Number of idle event loop iterations that were followed by another iteration right away.
+     */
+    public abstract long spins();
 
-    abstract int getBufferLength(PollableStatus pollableStatus);
+    /**
+     * Number of idle event loop iterations that yielded the cpu.
+     */
+    public abstract long yields();
+
+    /**
+     * Number of times the event loop blocked in the kernel waiting for completions.
+     */
+    public abstract long parks();
+
+    /**
+     * Number of times another thread had to wake up the parked event loop.
+     */
+    public abstract long wakeups();
 
     public static class Builder {
+        private static final AtomicInteger executorIds = new AtomicInteger();
+
         private int entries = 4096;
         private boolean ioRingSetupSqPoll = false;
         private int sqThreadIdle = 0;
@@ -39,10 +163,34 @@ public abstract class EventExecutor implements AutoCloseable {
         private boolean ioRingSetupClamp = false;
         private boolean ioRingSetupAttachWq = false;
         private int attachWqRingFd = 0;
+        // null turns the flag on if the kernel supports it
+        private Boolean ioRingSetupCoopTaskrun;
+        private Boolean ioRingSetupTaskrunFlag;
+        private Boolean ioRingSetupSingleIssuer;
+        private Boolean ioRingSetupDeferTaskrun;
+
+        // one entry per provided buffer group
+        private int[] bufRingSizes = new int[0];
+        private int[] bufRingBufSizes = new int[0];
+        private boolean[] bufRingIncremental = new boolean[0];
+        private int bufRingSpareBuffers = 0;
+
+        private boolean directSubmission = false;
 
-        private boolean withBufRing = false;
-        private int bufRingSize = 0;
-        private int bufRingBufSize = 0;
+        private int registeredFiles = 0;
+
+        private int registeredBuffers = 0;
+        private int registeredBufferSize = 0;
+
+        private int maxInFlight = 0;
+        private boolean metrics = false;
+        private long slowOperationThresholdNanos = -1;
+        private long watchdogThresholdNanos = -1;
+        private boolean cancelStuckOperations = false;
+        private StuckOperationListener stuckOperationListener;
+
+        private Supplier<IdleStrategy> idleStrategy = () -> new BackoffIdleStrategy(1000, 100);
+        private boolean daemon = false;
 
         private Builder() {
         }
@@ -123,20 +271,256 @@ public abstract class EventExecutor implements AutoCloseable {
         }
 
         /**
-         * Setup buf ring feature
+         * By default, the kernel interrupts the event loop thread with an IPI to run the task work of a completion,
+         * with this flag it runs the task work on the next transition into the kernel instead.
+         * On by default if the kernel supports it, not allowed with IORING_SETUP_SQPOLL.
+         */
+        public Builder ioRingSetupCoopTaskrun(boolean enabled) {
+            this.ioRingSetupCoopTaskrun = enabled;
+            return this;
+        }
+
+        /**
+         * The kernel raises IORING_SQ_TASKRUN in the submission queue flags while task work is pending,
+         * so an event loop that doesn't park enters the kernel to run it rather than missing the completions.
+         * Requires IORING_SETUP_COOP_TASKRUN or IORING_SETUP_DEFER_TASKRUN, on by default with any of them if the kernel supports it.
+         */
+        public Builder ioRingSetupTaskrunFlag(boolean enabled) {
+            this.ioRingSetupTaskrunFlag = enabled;
+            return this;
+        }
+
+        /**
+         * Tells the kernel that only one thread submits to the rings, which lets it skip synchronization.
+         * The rings are set up disabled and the event loop thread becomes their issuer by enabling them,
+         * io_uring_register calls on the rings from any other thread are then rejected.
+         * On by default if the kernel supports it and IORING_SETUP_SQPOLL is off.
+         */
+        public Builder ioRingSetupSingleIssuer(boolean enabled) {
+            this.ioRingSetupSingleIssuer = enabled;
+            return this;
+        }
+
+        /**
+         * Defers task work until the event loop reaps completions, so the kernel never interrupts the event loop thread
+         * and completions get posted in batches. Requires IORING_SETUP_SINGLE_ISSUER,
+         * on by default with it if the kernel supports it, not allowed with IORING_SETUP_SQPOLL.
+         */
+        public Builder ioRingSetupDeferTaskrun(boolean enabled) {
+            this.ioRingSetupDeferTaskrun = enabled;
+            return this;
+        }
+
+        /**
+         * Setup buf ring feature. Can be called several times to register one buffer group per size class,
+         * a provided buffer read then takes its buffer from the group with the smallest buffers that fit it.
          *
          * @param bufRingSize    number of buffers in the ring, must be power of 2
-         * @param bufRingBufSize buffer size
+         * @param bufRingBufSize buffer size, must differ from the buffer size of the other groups
          */
         public Builder withBufRing(int bufRingSize, int bufRingBufSize) {
-            this.withBufRing = true;
-            this.bufRingSize = bufRingSize;
-            this.bufRingBufSize = bufRingBufSize;
+            return withBufRing(bufRingSize, bufRingBufSize, false);
+        }
+
+        /**
+         * Setup buf ring feature, see {@link #withBufRing(int, int)}.
+         * <p>
+         * An incremental group hands out a buffer piece by piece: every read takes only as many bytes as it read
+         * and the next read goes on right after them in the same buffer, see {@link BufRingResult#hasMore()}.
+         * This lets a group of a few large buffers serve many small reads. Requires kernel 6.12,
+         * on older kernels the group is set up as a plain one.
+         *
+         * @param bufRingSize    number of buffers in the ring, must be power of 2
+         * @param bufRingBufSize buffer size, must differ from the buffer size of the other groups
+         * @param incremental    consume buffers incrementally
+         */
+        public Builder withBufRing(int bufRingSize, int bufRingBufSize, boolean incremental) {
+            if (bufRingBufSize <= 0 || bufRingSize <= 0 || !isPowerOfTwo(bufRingSize)) {
+                throw new IllegalArgumentException("bufRingBufSize and bufRingSize must be positive and bufRingSize must be power of 2");
+            }
+            // keep the groups sorted by buffer size
+            int i = 0;
+            while (i < bufRingBufSizes.length && bufRingBufSizes[i] < bufRingBufSize) {
+                i++;
+            }
+            if (i < bufRingBufSizes.length && bufRingBufSizes[i] == bufRingBufSize) {
+                throw new IllegalArgumentException("buf ring with buffer size " + bufRingBufSize + " is already set up");
+            }
+            this.bufRingSizes = insert(bufRingSizes, i, bufRingSize);
+            this.bufRingBufSizes = insert(bufRingBufSizes, i, bufRingBufSize);
+            this.bufRingIncremental = insert(bufRingIncremental, i, incremental);
             return this;
         }
 
+        /**
+         * When a buffer group runs out of buffers, a provided buffer read waits until the application returns
+         * a buffer with {@link BufRingResult#close()}. With spare buffers the read instead falls back to a plain
+         * read into a spare buffer of the same size, the spare buffer goes back to the group on close.
+         *
+         * @param count maximum number of spare buffers per buffer group, allocated on first use
+         */
+        public Builder bufRingSpareBuffers(int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("count < 0");
+            }
+            this.bufRingSpareBuffers = count;
+            return this;
+        }
+
+        /**
+         * Let threads other than the event loop write submission queue entries directly, reserving them with an
+         * atomic tail, instead of handing commands over through the task queue. The event loop then only publishes
+         * the entries and enters the kernel. Commands fall back to the task queue while the submission queue is full.
+         */
+        public Builder directSubmission() {
+            this.directSubmission = true;
+            return this;
+        }
+
+        /**
+         * Registers a pool of buffers with both rings, to be used with {@code readFixed} and {@code writeFixed}.
+         * The kernel maps registered buffers once instead of pinning the pages on every operation.
+         * Buffers are carved out of one page aligned allocation, so with a size that is a multiple of the
+         * logical block size every buffer is suitable for O_DIRECT.
+         * The memory counts against RLIMIT_MEMLOCK on older kernels.
+         *
+         * @param count      number of buffers, at most 16384
+         * @param bufferSize size of each buffer, at most 1 GiB
+         */
+        public Builder withRegisteredBuffers(int count, int bufferSize) {
+            if (count <= 0 || count > 16384) {
+                throw new IllegalArgumentException("count must be in range (0, 16384]");
+            }
+            if (bufferSize <= 0 || bufferSize > 1 << 30) {
+                throw new IllegalArgumentException("bufferSize must be in range (0, 1 GiB]");
+            }
+            this.registeredBuffers = count;
+            this.registeredBufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Registers a sparse file table of the given size with both rings. Files opened with
+         * {@link OpenOption#FIXED_FILE} take a slot in it and all their operations use IOSQE_FIXED_FILE,
+         * which saves the file lookup and refcounting the kernel otherwise does on every operation.
+         *
+         * @param count number of slots
+         */
+        public Builder withRegisteredFiles(int count) {
+            if (count <= 0) {
+                throw new IllegalArgumentException("count <= 0");
+            }
+            this.registeredFiles = count;
+            return this;
+        }
+
+        /**
+         * Limits the number of file operations in flight on the executor. Once the limit is reached, further
+         * operations suspend until a permit frees up, so a burst turns into latency instead of growing the
+         * backlog without bound. An operation holds its permit until the kernel completes it, a cancelled one included.
+         * Without a limit, commands that don't fit into the rings wait in the executor until completions free up room.
+         * Unless {@link #ioRingSetupCqSize(int)} is set, the completion queue is sized to fit two completions of every
+         * operation the limit lets in, the operation's own and that of its linked timeout or of a cancel.
+         *
+         * @param maxInFlight maximum number of operations in flight
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("maxInFlight <= 0");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Records the latency of every operation per opcode and ring, see {@link EventExecutor#metrics()}.
+         * Costs a clock read per submitted operation and per completion batch.
+         */
+        public Builder withMetrics() {
+            this.metrics = true;
+            return this;
+        }
+
+        /**
+         * Emits JDK Flight Recorder events from the event loop: io_uring_enter calls with the number of sqes
+         * submitted, completion batches, parks and wakeups, and operations that took at least the given time
+         * from submit to completion. Lets stalls be lined up with GC pauses and safepoints in a recording.
+         * Off by default, then the events cost a branch on a final field.
+         *
+         * @param slowOperationThreshold minimum latency of an operation to be recorded, 0 records every operation
+         */
+        public Builder withFlightRecorderEvents(long slowOperationThreshold, TimeUnit unit) {
+            if (slowOperationThreshold < 0) {
+                throw new IllegalArgumentException("slowOperationThreshold < 0");
+            }
+            this.slowOperationThresholdNanos = unit.toNanos(slowOperationThreshold);
+            return this;
+        }
+
+        /**
+         * Marks operations the kernel hasn't completed within the threshold as stuck without telling anyone,
+         * they are only recorded as flight recorder events when {@link #withFlightRecorderEvents} is on.
+         * Pass a listener to log them, see {@link #withStuckOperationWatchdog(long, TimeUnit, boolean, StuckOperationListener)}.
+         */
+        public Builder withStuckOperationWatchdog(long threshold, TimeUnit unit) {
+            return withStuckOperationWatchdog(threshold, unit, false, operation -> {
+            });
+        }
+
+        /**
+         * Checks the operations in flight twice per threshold and tells the listener about every operation
+         * the kernel hasn't completed within the threshold, e.g. because of a hung device.
+         * Operations of the io poll ring can't be cancelled and are only reported.
+         * With {@link #withFlightRecorderEvents} on, every stuck operation is also recorded as an event.
+         *
+         * @param cancel   ask the kernel to cancel stuck operations, they then fail with an {@link java.io.IOException}
+         * @param listener called on the event loop thread, once per stuck operation
+         */
+        public Builder withStuckOperationWatchdog(long threshold, TimeUnit unit, boolean cancel,
+                                                  StuckOperationListener listener) {
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("threshold <= 0");
+            }
+            if (listener == null) {
+                throw new IllegalArgumentException("listener is null");
+            }
+            this.watchdogThresholdNanos = unit.toNanos(threshold);
+            this.cancelStuckOperations = cancel;
+            this.stuckOperationListener = listener;
+            return this;
+        }
+
+        /**
+         * What the event loop does when it runs out of work, see {@link BusySpinIdleStrategy},
+         * {@link BackoffIdleStrategy} and {@link AdaptiveIdleStrategy}.
+         * Defaults to {@code new BackoffIdleStrategy(1000, 100)}.
+         *
+         * @param idleStrategy called once per executor built
+         */
+        public Builder idleStrategy(Supplier<IdleStrategy> idleStrategy) {
+            if (idleStrategy == null) {
+                throw new IllegalArgumentException("idleStrategy is null");
+            }
+            this.idleStrategy = idleStrategy;
+            return this;
+        }
+
+        /**
+         * Runs the event loop on a daemon thread, so an executor that is never closed doesn't keep the JVM alive.
+         */
+        public Builder daemon() {
+            this.daemon = true;
+            return this;
+        }
 
         public EventExecutor build() {
+            return build("EventExecutor-" + executorIds.getAndIncrement());
+        }
+
+        /**
+         * @param threadName name of the event loop thread
+         */
+        EventExecutor build(String threadName) {
             if (entries > 4096 || !isPowerOfTwo(entries)) {
                 throw new IllegalArgumentException("entries must be power of 2 and less than 4096");
             }
@@ -146,8 +530,26 @@ public abstract class EventExecutor implements AutoCloseable {
             if (ioRingSetupSqAff && !ioRingSetupSqPoll) {
                 throw new IllegalArgumentException("IORING_SETUP_SQ_AFF is only meaningful when IORING_SETUP_SQPOLL is specified");
             }
-            if (withBufRing && (bufRingBufSize <= 0 || bufRingSize <= 0 || !isPowerOfTwo(bufRingSize))) {
-                throw new IllegalArgumentException("bufRingBufSize and bufRingSize must be positive and bufRingSize must be power of 2");
+            boolean singleIssuer = ioRingSetupSingleIssuer != null ? ioRingSetupSingleIssuer
+                    : !ioRingSetupSqPoll && IoUringProbe.isSetupSupported(Native.IORING_SETUP_SINGLE_ISSUER);
+            int singleIssuerFlags = Native.IORING_SETUP_SINGLE_ISSUER | Native.IORING_SETUP_DEFER_TASKRUN;
+            boolean deferTaskrun = ioRingSetupDeferTaskrun != null ? ioRingSetupDeferTaskrun
+                    : singleIssuer && !ioRingSetupSqPoll && IoUringProbe.isSetupSupported(singleIssuerFlags);
+            boolean coopTaskrun = ioRingSetupCoopTaskrun != null ? ioRingSetupCoopTaskrun
+                    : !ioRingSetupSqPoll && IoUringProbe.isSetupSupported(Native.IORING_SETUP_COOP_TASKRUN);
+            int taskrunFlags = Native.IORING_SETUP_TASKRUN_FLAG
+                    | (coopTaskrun ? Native.IORING_SETUP_COOP_TASKRUN : 0)
+                    | (deferTaskrun ? singleIssuerFlags : 0);
+            boolean taskrunFlag = ioRingSetupTaskrunFlag != null ? ioRingSetupTaskrunFlag
+                    : (coopTaskrun || deferTaskrun) && IoUringProbe.isSetupSupported(taskrunFlags);
+            if (ioRingSetupSqPoll && (coopTaskrun || taskrunFlag || deferTaskrun)) {
+                throw new IllegalArgumentException("IORING_SETUP_COOP_TASKRUN, IORING_SETUP_TASKRUN_FLAG and IORING_SETUP_DEFER_TASKRUN are not allowed with IORING_SETUP_SQPOLL");
+            }
+            if (taskrunFlag && !coopTaskrun && !deferTaskrun) {
+                throw new IllegalArgumentException("IORING_SETUP_TASKRUN_FLAG requires IORING_SETUP_COOP_TASKRUN or IORING_SETUP_DEFER_TASKRUN");
+            }
+            if (deferTaskrun && !singleIssuer) {
+                throw new IllegalArgumentException("IORING_SETUP_DEFER_TASKRUN requires IORING_SETUP_SINGLE_ISSUER");
             }
             EventExecutor pollEventExecutor = new EventExecutorImpl(entries,
                     ioRingSetupSqPoll,
@@ -159,9 +561,27 @@ public abstract class EventExecutor implements AutoCloseable {
                     ioRingSetupClamp,
                     ioRingSetupAttachWq,
                     attachWqRingFd,
-                    withBufRing,
-                    bufRingSize,
-                    bufRingBufSize
+                    coopTaskrun,
+                    taskrunFlag,
+                    singleIssuer,
+                    deferTaskrun,
+                    bufRingSizes,
+                    bufRingBufSizes,
+                    bufRingIncremental,
+                    bufRingSpareBuffers,
+                    directSubmission,
+                    idleStrategy.get(),
+                    registeredBuffers,
+                    registeredBufferSize,
+                    registeredFiles,
+                    maxInFlight,
+                    metrics,
+                    slowOperationThresholdNanos,
+                    watchdogThresholdNanos,
+                    cancelStuckOperations,
+                    stuckOperationListener,
+                    daemon,
+                    threadName
             );
             pollEventExecutor.start();
             return pollEventExecutor;
@@ -177,6 +597,22 @@ public abstract class EventExecutor implements AutoCloseable {
         return new Builder();
     }
 
+    private static int[] insert(int[] array, int index, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static boolean[] insert(boolean[] array, int index, boolean value) {
+        boolean[] result = new boolean[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
     private static boolean isPowerOfTwo(int x) {
         return (x != 0) && ((x & (x - 1)) == 0);
     }
@@ -0,0 +1,179 @@
+package one.kuring;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * A fixed set of {@link EventExecutor}s, each with its own rings and event loop thread.
+ * Every file is pinned to one member of the group when it is opened, so that all operations on a file
+ * are served by the same rings while independent files are spread across cores.
+ */
+public class EventExecutorGroup implements AutoCloseable {
+
+    private final EventExecutor[] executors;
+    private final Chooser chooser;
+
+    private EventExecutorGroup(EventExecutor[] executors, Chooser chooser) {
+        this.executors = executors;
+        this.chooser = chooser;
+    }
+
+    /**
+     * Picks the executor a file with the given path should be pinned to.
+     *
+     * @param path absolute path of the file being opened
+     */
+    public EventExecutor next(String path) {
+        return executors[chooser.choose(path, executors)];
+    }
+
+    /**
+     * Returns the executor with the given index, {@code 0 <= index < size()}.
+     */
+    public EventExecutor get(int index) {
+        return executors[index];
+    }
+
+    public int size() {
+        return executors.length;
+    }
+
+    @Override
+    public void close() {
+        for (EventExecutor executor : executors) {
+            executor.close();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private interface Chooser {
+        int choose(String path, EventExecutor[] executors);
+    }
+
+    private static class RoundRobinChooser implements Chooser {
+        private final AtomicInteger idx = new AtomicInteger();
+
+        @Override
+        public int choose(String path, EventExecutor[] executors) {
+            return Math.abs(idx.getAndIncrement() % executors.length);
+        }
+    }
+
+    private static class LeastInFlightChooser implements Chooser {
+        private final AtomicInteger idx = new AtomicInteger();
+
+        @Override
+        public int choose(String path, EventExecutor[] executors) {
+            // start from a rotating position so that ties don't always land on the first executor
+            int start = Math.abs(idx.getAndIncrement() % executors.length);
+            int result = start;
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < executors.length; i++) {
+                int candidate = (start + i) % executors.length;
+                int inFlight = executors[candidate].inFlight();
+                if (inFlight < min) {
+                    min = inFlight;
+                    result = candidate;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static class HashChooser implements Chooser {
+        private final ToIntFunction<String> hash;
+
+        HashChooser(ToIntFunction<String> hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public int choose(String path, EventExecutor[] executors) {
+            return Math.floorMod(hash.applyAsInt(path), executors.length);
+        }
+    }
+
+    public static class Builder {
+        private static final AtomicInteger groupIds = new AtomicInteger();
+
+        private int size = Runtime.getRuntime().availableProcessors();
+        private EventExecutor.Builder executorBuilder = EventExecutor.builder();
+        private Chooser chooser = new RoundRobinChooser();
+
+        private Builder() {
+        }
+
+        /**
+         * Number of executors in the group, one event loop thread and one pair of rings each.
+         * Defaults to the number of available processors.
+         */
+        public Builder size(int size) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("size <= 0");
+            }
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * Builder used to create every member of the group.
+         */
+        public Builder executorBuilder(EventExecutor.Builder executorBuilder) {
+            if (executorBuilder == null) {
+                throw new IllegalArgumentException("executorBuilder is null");
+            }
+            this.executorBuilder = executorBuilder;
+            return this;
+        }
+
+        /**
+         * Pin files to executors in turn. This is the default.
+         */
+        public Builder roundRobin() {
+            this.chooser = new RoundRobinChooser();
+            return this;
+        }
+
+        /**
+         * Pin each file to the executor with the fewest commands in flight at the time the file is opened.
+         */
+        public Builder leastInFlight() {
+            this.chooser = new LeastInFlightChooser();
+            return this;
+        }
+
+        /**
+         * Pin each file to the executor selected by the given hash of its absolute path,
+         * so the same file is always served by the same executor.
+         */
+        public Builder hashed(ToIntFunction<String> pathHash) {
+            if (pathHash == null) {
+                throw new IllegalArgumentException("pathHash is null");
+            }
+            this.chooser = new HashChooser(pathHash);
+            return this;
+        }
+
+        public EventExecutorGroup build() {
+            EventExecutor[] executors = new EventExecutor[size];
+            // tells apart the threads of the members and of different groups
+            String threadName = "EventExecutorGroup-" + groupIds.getAndIncrement() + "-";
+            try {
+                for (int i = 0; i < size; i++) {
+                    executors[i] = executorBuilder.build(threadName + i);
+                }
+            } catch (Throwable ex) {
+                for (EventExecutor executor : executors) {
+                    if (executor != null) {
+                        executor.close();
+                    }
+                }
+                throw ex;
+            }
+            return new EventExecutorGroup(executors, chooser);
+        }
+    }
+}
@@ -1,23 +1,34 @@
 package one.kuring;
 
-import one.kuring.collections.IntObjectHashMap;
-import one.kuring.collections.IntObjectMap;
+import kotlinx.coroutines.sync.Semaphore;
+import kotlinx.coroutines.sync.SemaphoreKt;
 import org.jctools.queues.MpscChunkedArrayQueue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.IntSupplier;
 
 class EventExecutorImpl extends EventExecutor {
     private static final int STOP = 2;
     private static final int AWAKE = 1;
     private static final int WAIT = 0;
+    // IORING_MAX_CQ_ENTRIES
+    private static final int MAX_CQ_ENTRIES = 65536;
+    // the eventfd read and the watchdog timeout are in flight on top of the file operations
+    private static final int INTERNAL_COMMANDS = 2;
+    // an operation with a timeout, or one that gets cancelled, posts a second completion for the linked timeout
+    // or the cancel request
+    private static final int CQES_PER_OPERATION = 2;
 
     private final ResultProvider<Integer> eventFdReadResultProvider = new ResultProvider<Integer>() {
         @Override
         public void onSuccess(int result) {
+            wakeups++;
             EventExecutorImpl.this.addEventFdRead();
         }
 
@@ -41,26 +52,69 @@ class EventExecutorImpl extends EventExecutor {
 
         }
     };
+    private final ResultProvider<Integer> watchdogResultProvider = new ResultProvider<Integer>() {
+        @Override
+        public void onSuccess(int result) {
+            onWatchdogTimeout();
+        }
+
+        @Override
+        public void onSuccess(Object object) {
+
+        }
+
+        @Override
+        public void onError(Throwable ex) {
+            // -ETIME, the timeout expired
+            onWatchdogTimeout();
+        }
+
+        @Override
+        public Integer getInner() {
+            return null;
+        }
+
+        @Override
+        public void release() {
+
+        }
+    };
     private final Queue<Runnable> tasks = new MpscChunkedArrayQueue<>(65536);
     private final Ring sleepableRing;
     private final Ring pollRing;
     private final AtomicInteger state = new AtomicInteger(AWAKE);
+    private final AtomicInteger inFlight = new AtomicInteger();
     private final long eventFdBuffer = MemoryUtils.allocateMemory(8);
     private final int eventFd = Native.getEventFd();
-    final IntObjectMap<Command<?>> commands;
+    final CommandTable commands;
+    private final boolean directSubmission;
+    // copy on write, indexed by ObjectRecycler.Kind.index
+    private volatile ObjectRecycler<?>[] recyclers = new ObjectRecycler<?>[4];
     private final Thread t;
 
-    private final long sleepTimeout = TimeUnit.NANOSECONDS.convert(1000, TimeUnit.MILLISECONDS);
-    private long startWork = -1;
-
-    private final IntSupplier sequencer = new IntSupplier() {
-        private int i = 0;
-
-        @Override
-        public int getAsInt() {
-            return i++;
-        }
-    };
+    private final IdleStrategy idleStrategy;
+    private final Semaphore inFlightLimit;
+    private final RegisteredBufferPool registeredBuffers;
+    private final RegisteredFileTable registeredFiles;
+    private final ExecutorMetrics metrics;
+    private final boolean flightRecorder;
+    // commands are timed for metrics, slow operation events and the stuck operation watchdog
+    private final boolean timeCommands;
+    // stuck operation watchdog, off unless the threshold is positive
+    private final long watchdogThresholdNanos;
+    private final boolean cancelStuckOperations;
+    private final StuckOperationListener stuckOperationListener;
+    // __kernel_timespec of the watchdog timeout
+    private final long watchdogTimespec;
+
+    // event loop thread only
+    private boolean reaping;
+
+    // written by the event loop thread only
+    private volatile long spins;
+    private volatile long yields;
+    private volatile long parks;
+    private volatile long wakeups;
 
     EventExecutorImpl(int entries,
                       boolean ioRingSetupSqPoll,
@@ -72,11 +126,42 @@ class EventExecutorImpl extends EventExecutor {
                       boolean ioRingSetupClamp,
                       boolean ioRingSetupAttachWq,
                       int attachWqRingFd,
-                      boolean withBufRing,
-                      int numOfBuffers,
-                      int bufRingBufSize
+                      boolean ioRingSetupCoopTaskrun,
+                      boolean ioRingSetupTaskrunFlag,
+                      boolean ioRingSetupSingleIssuer,
+                      boolean ioRingSetupDeferTaskrun,
+                      int[] bufRingSizes,
+                      int[] bufRingBufSizes,
+                      boolean[] bufRingIncremental,
+                      int bufRingSpareBuffers,
+                      boolean directSubmission,
+                      IdleStrategy idleStrategy,
+                      int registeredBuffers,
+                      int registeredBufferSize,
+                      int registeredFiles,
+                      int maxInFlight,
+                      boolean metrics,
+                      long slowOperationThresholdNanos,
+                      long watchdogThresholdNanos,
+                      boolean cancelStuckOperations,
+                      StuckOperationListener stuckOperationListener,
+                      boolean daemon,
+                      String threadName
     ) {
-        this.commands = new IntObjectHashMap<>(entries);
+        // every ring can have a full sq and a full cq worth of commands in flight,
+        // the kernel rounds both sizes up to a power of two
+        int sqEntries = roundToPowerOfTwo(entries);
+        long cqNeeded = (long) CQES_PER_OPERATION * maxInFlight + INTERNAL_COMMANDS;
+        if (!ioRingSetupCqSize && maxInFlight > 0 && cqNeeded > sqEntries * 2L) {
+            // room for all completions of every operation the limit lets in, a burst then can't overflow the cq
+            ioRingSetupCqSize = true;
+            cqSize = roundToPowerOfTwo((int) Math.min(cqNeeded, MAX_CQ_ENTRIES));
+        }
+        int cqEntries = ioRingSetupCqSize ? roundToPowerOfTwo(cqSize) : sqEntries * 2;
+        this.commands = new CommandTable(2 * (sqEntries + cqEntries));
+        this.directSubmission = directSubmission;
+        this.idleStrategy = idleStrategy;
+        this.inFlightLimit = maxInFlight > 0 ? SemaphoreKt.Semaphore(maxInFlight, 0) : null;
 
         int flags = 0;
         if (ioRingSetupSqPoll) {
@@ -94,14 +179,59 @@ class EventExecutorImpl extends EventExecutor {
         if (ioRingSetupAttachWq) {
             flags |= Native.IORING_SETUP_ATTACH_WQ;
         }
+        if (ioRingSetupCoopTaskrun) {
+            flags |= Native.IORING_SETUP_COOP_TASKRUN;
+        }
+        if (ioRingSetupTaskrunFlag) {
+            flags |= Native.IORING_SETUP_TASKRUN_FLAG;
+        }
+        if (ioRingSetupSingleIssuer) {
+            // the rings are set up here but used by the event loop thread, which becomes the issuer by enabling them
+            flags |= Native.IORING_SETUP_SINGLE_ISSUER | Native.IORING_SETUP_R_DISABLED;
+        }
+        if (ioRingSetupDeferTaskrun) {
+            flags |= Native.IORING_SETUP_DEFER_TASKRUN;
+        }
+
+
+        sleepableRing = new SleepableRing(entries, flags, sqThreadIdle, sqThreadCpu, cqSize, attachWqRingFd, bufRingBufSizes, bufRingSizes, bufRingIncremental, bufRingSpareBuffers, eventFd, eventFdBuffer, this, directSubmission, metrics, slowOperationThresholdNanos, commands);
+        pollRing = new PollRing(entries, flags | Native.IORING_SETUP_IOPOLL, sqThreadIdle, sqThreadCpu, cqSize, attachWqRingFd, bufRingBufSizes, bufRingSizes, bufRingIncremental, bufRingSpareBuffers, directSubmission, metrics, slowOperationThresholdNanos, commands);
 
+        if (registeredBuffers > 0) {
+            this.registeredBuffers = new RegisteredBufferPool(registeredBuffers, registeredBufferSize, this);
+            this.registeredBuffers.register(sleepableRing.ring.getRingFd());
+            this.registeredBuffers.register(pollRing.ring.getRingFd());
+        } else {
+            this.registeredBuffers = null;
+        }
+
+        if (registeredFiles > 0) {
+            this.registeredFiles = new RegisteredFileTable(registeredFiles, sleepableRing.ring.getRingFd(), pollRing.ring.getRingFd());
+        } else {
+            this.registeredFiles = null;
+        }
 
-        sleepableRing = new SleepableRing(entries, flags, sqThreadIdle, sqThreadCpu, cqSize, attachWqRingFd, withBufRing, bufRingBufSize, numOfBuffers, eventFd, eventFdBuffer, this, commands);
-        pollRing = new PollRing(entries, flags | Native.IORING_SETUP_IOPOLL, sqThreadIdle, sqThreadCpu, cqSize, attachWqRingFd, withBufRing, bufRingBufSize, numOfBuffers, commands);
+        this.metrics = metrics ? new ExecutorMetrics(this, sleepableRing, pollRing) : null;
+        this.flightRecorder = slowOperationThresholdNanos >= 0;
+        this.watchdogThresholdNanos = watchdogThresholdNanos;
+        this.cancelStuckOperations = cancelStuckOperations;
+        this.stuckOperationListener = stuckOperationListener;
+        this.timeCommands = metrics || flightRecorder || watchdogThresholdNanos > 0;
+        if (watchdogThresholdNanos > 0) {
+            // a stuck operation is reported within one and a half thresholds
+            long period = Math.max(watchdogThresholdNanos / 2, 1);
+            this.watchdogTimespec = MemoryUtils.allocateMemory(16);
+            MemoryUtils.putLong(watchdogTimespec, period / 1_000_000_000L);
+            MemoryUtils.putLong(watchdogTimespec + Long.BYTES, period % 1_000_000_000L);
+        } else {
+            this.watchdogTimespec = 0;
+        }
 
-        this.t = new Thread(this::run, "EventExecutor");
+        this.t = new Thread(this::run, threadName);
+        this.t.setDaemon(daemon);
     }
 
+    @Override
     void execute(Runnable task) {
         boolean inEventLoop = inEventLoop();
         if (inEventLoop) {
@@ -112,13 +242,24 @@ class EventExecutorImpl extends EventExecutor {
         }
     }
 
+    @Override
+    void schedule(Runnable task) {
+        addTask(task);
+        wakeup(inEventLoop());
+    }
+
     private void wakeup(boolean inEventLoop) {
-        if (!inEventLoop && state.getAndSet(AWAKE) != AWAKE) {
+        // only a parked loop needs the eventfd write, and a concurrent close must not be overwritten
+        if (!inEventLoop && state.get() == WAIT && state.compareAndSet(WAIT, AWAKE)) {
             unpark();
+            if (flightRecorder) {
+                FlightRecorderEvents.wakeup();
+            }
         }
     }
 
-    private boolean inEventLoop() {
+    @Override
+    boolean inEventLoop() {
         return t == Thread.currentThread();
     }
 
@@ -132,52 +273,165 @@ class EventExecutorImpl extends EventExecutor {
 
     @Override
     public <T> T executeCommand(Command<T> command) {
+        if (timeCommands) {
+            command.setSubmitNanos(System.nanoTime());
+        }
+        return submitCommand(command);
+    }
+
+    private <T> T submitCommand(Command<T> command) {
         T resultHolder = command.getOperationResult();
-        execute(command);
+        // linked operations need consecutive sqes and incremental buffer group reads have to be
+        // queued one after another, so both always go through the event loop
+        if (directSubmission && !inEventLoop() && command.getTimeoutNanos() == 0 && !command.isIncrementalRead()
+                && ringFromCommand(command).tryAddOperation(command)) {
+            wakeup(false);
+        } else {
+            execute(command);
+        }
         return resultHolder;
     }
 
     @Override
-    <T> long scheduleCommand(Command<T> command) {
-        int id = sequencer.getAsInt();
-        commands.put(id, command);
-        return id;
+    @SuppressWarnings("unchecked")
+    <T> ObjectRecycler<T> recycler(ObjectRecycler.Kind<T> kind) {
+        ObjectRecycler<?>[] recyclers = this.recyclers;
+        if (kind.index < recyclers.length) {
+            ObjectRecycler<?> recycler = recyclers[kind.index];
+            if (recycler != null) {
+                return (ObjectRecycler<T>) recycler;
+            }
+        }
+        return newRecycler(kind);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> ObjectRecycler<T> newRecycler(ObjectRecycler.Kind<T> kind) {
+        ObjectRecycler<?>[] recyclers = this.recyclers;
+        if (kind.index < recyclers.length && recyclers[kind.index] != null) {
+            return (ObjectRecycler<T>) recyclers[kind.index];
+        }
+        recyclers = Arrays.copyOf(recyclers, Math.max(recyclers.length, kind.index + 1));
+        // enough objects for a full command table, anything above that is allocated and dropped
+        ObjectRecycler<T> recycler = new ObjectRecycler<>(commands.capacity(), kind.factory);
+        recyclers[kind.index] = recycler;
+        this.recyclers = recyclers;
+        return recycler;
+    }
+
+    private static int roundToPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
     }
 
 
     @Override
-    int bufRingId(PollableStatus pollableStatus) {
+    IoUringBufRing bufRing(PollableStatus pollableStatus, int length) {
         if (!pollRing.isBufRingInitialized() && !sleepableRing.isBufRingInitialized()) {
             throw new IllegalStateException("Buf ring is not initialized");
         }
-        final int id;
+        final IoUringBufRing bufRing;
         if (PollableStatus.POLLABLE == pollableStatus) {
-            id = pollRing.getBufRingId();
+            bufRing = pollRing.selectBufRing(length);
         } else {
-            id = sleepableRing.getBufRingId();
+            bufRing = sleepableRing.selectBufRing(length);
         }
-        return id;
+        return bufRing;
     }
 
     @Override
-    int getBufferLength(PollableStatus pollableStatus) {
-        if (!pollRing.isBufRingInitialized() && !sleepableRing.isBufRingInitialized()) {
-            throw new IllegalStateException("Buf ring is not initialized");
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    void cancel(Command<?> command, int epoch) {
+        try {
+            execute(() -> cancelOnEventLoop(command, epoch));
+        } catch (RejectedExecutionException e) {
+            // the loop is stopping and drains what is left on its own
         }
-        final int bufferSize;
-        if (PollableStatus.POLLABLE == pollableStatus) {
-            bufferSize = pollRing.getBufferLength();
-        } else {
-            bufferSize = sleepableRing.getBufferLength();
+    }
+
+    private void cancelOnEventLoop(Command<?> command, int epoch) {
+        if (command.getEpoch() != epoch) {
+            // already completed
+            return;
         }
-        return bufferSize;
+        Ring ring = ringFromCommand(command);
+        ring.flushClaimedOperations();
+        if (command.getUserData() == CommandTable.NO_SLOT) {
+            if (ring.removePendingCommand(command)) {
+                command.error(new CancellationException("Cancelled before submission"));
+            } else {
+                // not handed to the loop yet, still in the task queue or waiting for an in-flight permit
+                command.setCancelled();
+                command.cancelPermitWait();
+            }
+        } else if (ring != pollRing) {
+            // polled reads and writes can't be cancelled, they don't take long to complete anyway
+            ring.addCancel(command);
+        }
+    }
+
+    @Override
+    Semaphore inFlightLimit() {
+        return inFlightLimit;
+    }
+
+    @Override
+    int registerFile(int fd) {
+        return registeredFiles == null ? -1 : registeredFiles.add(fd);
+    }
+
+    @Override
+    void unregisterFile(int fixedFileIndex) {
+        registeredFiles.remove(fixedFileIndex);
+    }
+
+    @Override
+    public RegisteredBuffer borrowRegisteredBuffer() {
+        if (registeredBuffers == null) {
+            throw new IllegalStateException("Registered buffers are not initialized");
+        }
+        return registeredBuffers.borrow();
+    }
+
+    @Override
+    public ExecutorMetrics metrics() {
+        if (metrics == null) {
+            throw new IllegalStateException("Metrics are not enabled");
+        }
+        return metrics;
+    }
+
+    @Override
+    public long spins() {
+        return spins;
+    }
+
+    @Override
+    public long yields() {
+        return yields;
+    }
+
+    @Override
+    public long parks() {
+        return parks;
+    }
+
+    @Override
+    public long wakeups() {
+        return wakeups;
     }
 
     @Override
     <T> Ring ringFromCommand(Command<T> command) {
         final Ring result;
-        if (command.getOp() == Native.IORING_OP_READ || command.getOp() == Native.IORING_OP_WRITE) {
-            if (PollableStatus.POLLABLE == command.getPollableStatus()) {
+        byte op = command.getOp();
+        if (op == Native.IORING_OP_READ || op == Native.IORING_OP_WRITE
+                || op == Native.IORING_OP_READ_FIXED || op == Native.IORING_OP_WRITE_FIXED) {
+            // io poll rings only accept reads and writes, there is no place for a link timeout
+            if (PollableStatus.POLLABLE == command.getPollableStatus() && command.getTimeoutNanos() == 0) {
                 result = pollRing;
             } else {
                 result = sleepableRing;
@@ -189,24 +443,25 @@ class EventExecutorImpl extends EventExecutor {
     }
 
     private void run() {
+        sleepableRing.enable();
+        pollRing.enable();
         addEventFdRead();
+        if (watchdogThresholdNanos > 0) {
+            addWatchdogTimeout();
+        }
+        int idleCount = 0;
         while (true) {
-            try {
-                state.set(WAIT);
-                if (canSleep()) {
-                    if (sleepTimeout()) {
-                        submitTasksAndWait();
-                        resetSleepTimeout();
-                    }
-                }
-            } catch (Throwable t) {
-                handleLoopException(t);
-            } finally {
-                state.set(AWAKE);
+            int work = drain();
+            if (work > 0) {
+                idleCount = 0;
+                idleStrategy.onWork(work);
+            } else {
+                idleCount = idle(++idleCount);
             }
-            drain();
             if (state.get() == STOP) {
-                while (!canSleep()) {
+                sleepableRing.closeClaims();
+                pollRing.closeClaims();
+                while (!canSleep() || hasPendingCommands()) {
                     // make sure we proceed all tasks, submit all submissions and wait all completions
                     drain();
                 }
@@ -216,17 +471,52 @@ class EventExecutorImpl extends EventExecutor {
         }
     }
 
-    private void resetSleepTimeout() {
-        startWork = System.nanoTime();
+    /**
+     * @return idle count to continue with, reset to 0 after a park
+     */
+    private int idle(int idleCount) {
+        switch (idleStrategy.onIdle(idleCount)) {
+            case SPIN:
+                spins++;
+                return idleCount;
+            case YIELD:
+                yields++;
+                Thread.yield();
+                return idleCount;
+            default:
+                park();
+                return 0;
+        }
     }
 
-    private boolean sleepTimeout() {
-        return System.nanoTime() - startWork >= sleepTimeout;
+    private void park() {
+        if (!state.compareAndSet(AWAKE, WAIT)) {
+            // stopping
+            return;
+        }
+        try {
+            // re-check after publishing WAIT, producers only wake up a waiting loop
+            if (canSleep()) {
+                parks++;
+                if (flightRecorder) {
+                    Object event = FlightRecorderEvents.beginPark();
+                    submitTasksAndWait();
+                    FlightRecorderEvents.commitPark(event);
+                } else {
+                    submitTasksAndWait();
+                }
+            }
+        } catch (Throwable t) {
+            handleLoopException(t);
+        } finally {
+            state.compareAndSet(WAIT, AWAKE);
+        }
     }
 
     @Override
     void addEventFdRead() {
-        executeCommand(Command.read(
+        // stays in flight while the loop is idle, so it isn't timed
+        submitCommand(Command.read(
                 eventFd,
                 0,
                 8,
@@ -237,17 +527,84 @@ class EventExecutorImpl extends EventExecutor {
         ));
     }
 
+    private void addWatchdogTimeout() {
+        submitCommand(Command.timeout(watchdogTimespec, this, watchdogResultProvider));
+    }
+
+    private void onWatchdogTimeout() {
+        if (state.get() == STOP) {
+            return;
+        }
+        long now = System.nanoTime();
+        commands.forEach(command -> {
+            // only commands handed over by the application are timed
+            if (command.getSubmitNanos() != 0 && !command.isStuck()
+                    && now - command.getSubmitNanos() >= watchdogThresholdNanos) {
+                command.setStuck();
+                InFlightOperation operation = toInFlightOperation(command, now);
+                if (flightRecorder) {
+                    FlightRecorderEvents.stuckOperation(operation);
+                }
+                try {
+                    stuckOperationListener.onStuckOperation(operation);
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                }
+                Ring ring = ringFromCommand(command);
+                if (cancelStuckOperations && ring != pollRing) {
+                    ring.addCancel(command);
+                }
+            }
+        });
+        addWatchdogTimeout();
+    }
+
+    @Override
+    public CompletableFuture<List<InFlightOperation>> inFlightOperations() {
+        CompletableFuture<List<InFlightOperation>> result = new CompletableFuture<>();
+        try {
+            execute(() -> {
+                long now = System.nanoTime();
+                List<InFlightOperation> operations = new ArrayList<>(commands.size());
+                commands.forEach(command -> {
+                    if (command.getResultProvider() != eventFdReadResultProvider
+                            && command.getResultProvider() != watchdogResultProvider) {
+                        operations.add(toInFlightOperation(command, now));
+                    }
+                });
+                result.complete(operations);
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private InFlightOperation toInFlightOperation(Command<?> command, long now) {
+        return new InFlightOperation(
+                command.getOp(),
+                command.getFd(),
+                command.getOffset(),
+                command.getLength(),
+                command.getSubmitNanos() == 0 ? -1 : now - command.getSubmitNanos(),
+                ringFromCommand(command) == pollRing ? ExecutorMetrics.RingType.POLL : ExecutorMetrics.RingType.SLEEPABLE
+        );
+    }
+
     private boolean canSleep() {
-        return !hasTasks() && !hasCompletions() && !pollRing.hasInKernel();
+        return !hasTasks() && !hasCompletions() && !hasRecycled() && !pollRing.hasInKernel()
+                && !sleepableRing.hasClaimedOperations() && !pollRing.hasClaimedOperations();
     }
 
-    private void submitIo() {
+    private int submitIo() {
+        int flushed = sleepableRing.flushClaimedOperations() + pollRing.flushClaimedOperations();
         if (sleepableRing.hasPending()) {
             sleepableRing.submitIo();
         }
         if (pollRing.hasInKernel() || pollRing.hasPending()) {
-            pollRing.submissionQueue.submit();
+            pollRing.submitAndPoll();
         }
+        return flushed;
     }
 
     private void submitTasksAndWait() {
@@ -260,8 +617,8 @@ class EventExecutorImpl extends EventExecutor {
 
     @Override
     public void close() {
-        if (state.getAndSet(STOP) == WAIT) {
-            wakeup(inEventLoop());
+        if (state.getAndSet(STOP) == WAIT && !inEventLoop()) {
+            unpark();
         }
     }
 
@@ -273,32 +630,43 @@ class EventExecutorImpl extends EventExecutor {
     private void closeRings() {
         sleepableRing.close();
         pollRing.close();
+        if (watchdogTimespec != 0) {
+            MemoryUtils.freeMemory(watchdogTimespec);
+        }
+        if (registeredFiles != null) {
+            registeredFiles.close();
+        }
     }
 
-    private void drain() {
+    /**
+     * @return number of completions, tasks and flushed submissions processed
+     */
+    private int drain() {
+        int work = 0;
         boolean moreWork = true;
         do {
             try {
-                moreWork = processAllCompletedTasks() != 0 | runAllTasks();
+                int processed = processAllCompletedTasks() + runAllTasks() + recycleBuffers() + addPendingCommands();
+                work += processed;
+                moreWork = processed != 0;
             } catch (Throwable r) {
                 handleLoopException(r);
             }
         } while (moreWork);
-        submitIo();
+        work += submitIo();
+        // single writer, readers only need an eventually consistent value
+        inFlight.lazySet(commands.size());
+        return work;
     }
 
-    private boolean runAllTasks() {
-        Runnable task = tasks.poll();
-        if (task == null) {
-            return false;
-        }
-        while (true) {
+    private int runAllTasks() {
+        int result = 0;
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
             safeExec(task);
-            task = tasks.poll();
-            if (task == null) {
-                return true;
-            }
+            result++;
         }
+        return result;
     }
 
     private static void safeExec(Runnable task) {
@@ -311,11 +679,21 @@ class EventExecutorImpl extends EventExecutor {
 
     private int processAllCompletedTasks() {
         int result = 0;
-        result += sleepableRing.processCompletedTasks();
-        result += pollRing.processCompletedTasks();
+        reaping = true;
+        try {
+            result += sleepableRing.processCompletedTasks();
+            result += pollRing.processCompletedTasks();
+        } finally {
+            reaping = false;
+        }
         return result;
     }
 
+    @Override
+    boolean isReaping() {
+        return reaping;
+    }
+
     private void handleLoopException(Throwable t) {
         try {
             Thread.sleep(1000);
@@ -325,10 +703,26 @@ class EventExecutorImpl extends EventExecutor {
         }
     }
 
+    private int recycleBuffers() {
+        return sleepableRing.recycleBuffers() + pollRing.recycleBuffers();
+    }
+
+    private int addPendingCommands() {
+        return sleepableRing.addPendingCommands() + pollRing.addPendingCommands();
+    }
+
+    private boolean hasPendingCommands() {
+        return sleepableRing.hasPendingCommands() || pollRing.hasPendingCommands();
+    }
+
     private boolean hasCompletions() {
         return sleepableRing.hasCompletions() || pollRing.hasCompletions();
     }
 
+    private boolean hasRecycled() {
+        return sleepableRing.hasRecycled() || pollRing.hasRecycled();
+    }
+
     private boolean hasTasks() {
         return !tasks.isEmpty();
     }
@@ -337,7 +731,20 @@ class EventExecutorImpl extends EventExecutor {
         return sleepableRing.ring.getRingFd();
     }
 
+    @Override
     public void recycleBufRingResult(BufRingResult bufRingRes) {
-        bufRingRes.getOwnerRing().recycleBuffer(bufRingRes.getBufferId());
+        // buffer rings are not thread safe, the loop gives buffers back in batches once per drain iteration
+        bufRingRes.getOwnerRing().addRecycled(bufRingRes);
+        wakeup(inEventLoop());
+    }
+
+    @Override
+    public long bufRingExhausted(int bufRingBufSize) {
+        return sleepableRing.bufRingExhausted(bufRingBufSize) + pollRing.bufRingExhausted(bufRingBufSize);
+    }
+
+    @Override
+    public long bufRingFallbacks(int bufRingBufSize) {
+        return sleepableRing.bufRingFallbacks(bufRingBufSize) + pollRing.bufRingFallbacks(bufRingBufSize);
     }
 }
@@ -0,0 +1,107 @@
+package one.kuring;
+
+/**
+ * Latencies and gauges of an executor built with {@link EventExecutor.Builder#withMetrics()}.
+ * Everything here is safe to read from any thread while the event loop keeps running.
+ */
+public final class ExecutorMetrics {
+
+    /**
+     * Every executor owns two rings, reads and writes of files that support polling go to the poll ring,
+     * everything else goes to the sleepable one.
+     */
+    public enum RingType {
+        SLEEPABLE,
+        POLL
+    }
+
+    private final EventExecutor executor;
+    private final Ring sleepableRing;
+    private final Ring pollRing;
+
+    ExecutorMetrics(EventExecutor executor, Ring sleepableRing, Ring pollRing) {
+        this.executor = executor;
+        this.sleepableRing = sleepableRing;
+        this.pollRing = pollRing;
+    }
+
+    /**
+     * Time from handing the operation to the executor to the event loop reaping its completion,
+     * including the time it waited for room in the ring.
+     *
+     * @param op opcode, e.g. {@link Native#IORING_OP_READ}
+     * @return null if no such operation completed on the ring yet
+     */
+    public LatencyHistogram latency(RingType ring, byte op) {
+        return ring(ring).latency(op);
+    }
+
+    /**
+     * Approximate number of operations owned by the executor, see {@link EventExecutor.Builder#maxInFlight(int)}.
+     */
+    public int inFlight() {
+        return executor.inFlight();
+    }
+
+    /**
+     * Approximate number of submission queue entries the kernel has not consumed yet.
+     */
+    public int sqPending(RingType ring) {
+        return ring(ring).submissionQueue.pending();
+    }
+
+    /**
+     * Number of completion queue entries the event loop has not reaped yet.
+     */
+    public int cqBacklog(RingType ring) {
+        return ring(ring).completionQueue.backlog();
+    }
+
+    /**
+     * Number of times the completion queue ran full during a burst. The kernel holds the completions that
+     * don't fit back, the event loop flushes them as soon as it notices, see {@link EventExecutor.Builder#maxInFlight(int)}
+     * to size the completion queue for the bursts to expect.
+     */
+    public long cqOverflows(RingType ring) {
+        return ring(ring).getCqOverflows();
+    }
+
+    /**
+     * Number of completions the kernel dropped because the completion queue was full and it couldn't hold them back.
+     * Anything but 0 means operations that never complete, see {@link EventExecutor.Builder#withStuckOperationWatchdog}.
+     */
+    public long cqDropped(RingType ring) {
+        return ring(ring).getCqDropped();
+    }
+
+    public long enterCalls(RingType ring) {
+        return ring(ring).submissionQueue.getEnterCalls();
+    }
+
+    /**
+     * Number of submission queue entries consumed by the kernel.
+     */
+    public long submitted(RingType ring) {
+        return ring(ring).submissionQueue.getSubmitted();
+    }
+
+    /**
+     * Lower is better, a loop that batches well makes a fraction of a syscall per operation.
+     */
+    public double enterCallsPerOp(RingType ring) {
+        long submitted = submitted(ring);
+        return submitted == 0 ? 0 : (double) enterCalls(ring) / submitted;
+    }
+
+    public long parks() {
+        return executor.parks();
+    }
+
+    public long wakeups() {
+        return executor.wakeups();
+    }
+
+    private Ring ring(RingType ring) {
+        return ring == RingType.POLL ? pollRing : sleepableRing;
+    }
+}
@@ -0,0 +1,188 @@
+package one.kuring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events of the event loop, see {@link EventExecutor.Builder#withFlightRecorderEvents}.
+ * Call sites check the executor flag first, so none of the event classes are loaded while the events are off.
+ * Once on, every event is still subject to the settings of the running recording.
+ */
+final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() {
+    }
+
+    @Name("one.kuring.Enter")
+    @Label("io_uring_enter")
+    @Description("Submission of a batch of sqes to the kernel")
+    @Category({"kuring", "Ring"})
+    @StackTrace(false)
+    static final class EnterEvent extends Event {
+        @Label("Ring")
+        String ring;
+
+        @Label("Submitted")
+        @Description("Number of sqes the kernel consumed")
+        int submitted;
+
+        @Label("Entered")
+        @Description("False if a SQPOLL thread picked the sqes up without a syscall")
+        boolean entered;
+    }
+
+    @Name("one.kuring.CompletionBatch")
+    @Label("Completion Batch")
+    @Description("Processing of the completions found in the completion queue")
+    @Category({"kuring", "Ring"})
+    @StackTrace(false)
+    static final class CompletionBatchEvent extends Event {
+        @Label("Ring")
+        String ring;
+
+        @Label("Completions")
+        int completions;
+    }
+
+    @Name("one.kuring.Park")
+    @Label("Park")
+    @Description("Event loop blocked in the kernel waiting for completions")
+    @Category({"kuring", "Event Loop"})
+    @StackTrace(false)
+    static final class ParkEvent extends Event {
+    }
+
+    @Name("one.kuring.Wakeup")
+    @Label("Wakeup")
+    @Description("Another thread woke up the parked event loop")
+    @Category({"kuring", "Event Loop"})
+    static final class WakeupEvent extends Event {
+    }
+
+    @Name("one.kuring.SlowOperation")
+    @Label("Slow Operation")
+    @Description("Operation that took longer than the configured threshold from submit to completion")
+    @Category({"kuring", "Ring"})
+    @StackTrace(false)
+    static final class SlowOperationEvent extends Event {
+        @Label("Ring")
+        String ring;
+
+        @Label("Opcode")
+        int op;
+
+        @Label("Result")
+        int result;
+
+        @Label("Length")
+        @DataAmount
+        int length;
+
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("one.kuring.StuckOperation")
+    @Label("Stuck Operation")
+    @Description("Operation the kernel hasn't completed within the watchdog threshold")
+    @Category({"kuring", "Ring"})
+    @StackTrace(false)
+    static final class StuckOperationEvent extends Event {
+        @Label("Ring")
+        String ring;
+
+        @Label("Opcode")
+        int op;
+
+        @Label("File Descriptor")
+        int fd;
+
+        @Label("Offset")
+        long offset;
+
+        @Label("Length")
+        @DataAmount
+        int length;
+
+        @Label("Age")
+        @Timespan(Timespan.NANOSECONDS)
+        long age;
+    }
+
+    static EnterEvent beginEnter() {
+        EnterEvent event = new EnterEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitEnter(Object event, String ring, int submitted, boolean entered) {
+        EnterEvent enter = (EnterEvent) event;
+        if (submitted > 0 && enter.shouldCommit()) {
+            enter.ring = ring;
+            enter.submitted = submitted;
+            enter.entered = entered;
+            enter.commit();
+        }
+    }
+
+    static CompletionBatchEvent beginCompletionBatch() {
+        CompletionBatchEvent event = new CompletionBatchEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitCompletionBatch(Object event, String ring, int completions) {
+        CompletionBatchEvent batch = (CompletionBatchEvent) event;
+        if (completions > 0 && batch.shouldCommit()) {
+            batch.ring = ring;
+            batch.completions = completions;
+            batch.commit();
+        }
+    }
+
+    static ParkEvent beginPark() {
+        ParkEvent event = new ParkEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitPark(Object event) {
+        ((ParkEvent) event).commit();
+    }
+
+    static void wakeup() {
+        new WakeupEvent().commit();
+    }
+
+    static void slowOperation(String ring, byte op, int result, int length, long latency) {
+        SlowOperationEvent event = new SlowOperationEvent();
+        if (event.shouldCommit()) {
+            event.ring = ring;
+            event.op = op;
+            event.result = result;
+            event.length = length;
+            event.latency = latency;
+            event.commit();
+        }
+    }
+
+    static void stuckOperation(InFlightOperation operation) {
+        StuckOperationEvent event = new StuckOperationEvent();
+        if (event.shouldCommit()) {
+            event.ring = operation.getRing().name();
+            event.op = operation.getOp();
+            event.fd = operation.getFd();
+            event.offset = operation.getOffset();
+            event.length = operation.getLength();
+            event.age = operation.getAgeNanos();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package one.kuring;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Result provider of the non suspending file API, hands the result to an {@link IntCompletionHandler}.
+ * The operation holds an in-flight permit of the executor if it limits operations in flight,
+ * the command gives the permit back before the handler is called.
+ */
+final class HandlerResultProvider implements ResultProvider<Integer> {
+    private static final ObjectRecycler.Kind<HandlerResultProvider> KIND = new ObjectRecycler.Kind<>(HandlerResultProvider::new);
+
+    private final ObjectRecycler<HandlerResultProvider> recycler;
+
+    private EventExecutor executor;
+    private IntCompletionHandler<Object> handler;
+    private Object attachment;
+    private ByteBuffer buffer;
+    private int bufferPosition;
+
+    private HandlerResultProvider(ObjectRecycler<HandlerResultProvider> recycler) {
+        this.recycler = recycler;
+    }
+
+    /**
+     * @param buffer buffer the position of which is advanced by the result, null if the result isn't a byte count
+     */
+    @SuppressWarnings("unchecked")
+    static <A> HandlerResultProvider newInstance(EventExecutor executor, ByteBuffer buffer,
+                                                 A attachment, IntCompletionHandler<? super A> handler) {
+        HandlerResultProvider provider = executor.recycler(KIND).borrow();
+        provider.executor = executor;
+        provider.handler = (IntCompletionHandler<Object>) handler;
+        provider.attachment = attachment;
+        provider.buffer = buffer;
+        provider.bufferPosition = buffer == null ? 0 : buffer.position();
+        return provider;
+    }
+
+    @Override
+    public void onSuccess(int result) {
+        if (buffer != null && result > 0) {
+            ((Buffer) buffer).position(bufferPosition + result);
+        }
+        IntCompletionHandler<Object> handler = this.handler;
+        Object attachment = this.attachment;
+        // the handler may submit the next operation right away, which can reuse this provider
+        release();
+        try {
+            handler.completed(result, attachment);
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onSuccess(Object object) {
+
+    }
+
+    @Override
+    public void onError(Throwable ex) {
+        IntCompletionHandler<Object> handler = this.handler;
+        Object attachment = this.attachment;
+        release();
+        try {
+            handler.failed(ex, attachment);
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }
+
+    @Override
+    public Integer getInner() {
+        return null;
+    }
+
+    @Override
+    public void release() {
+        executor = null;
+        handler = null;
+        attachment = null;
+        buffer = null;
+        bufferPosition = 0;
+        recycler.recycle(this);
+    }
+}
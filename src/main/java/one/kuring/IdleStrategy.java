@@ -0,0 +1,41 @@
+package one.kuring;
+
+/**
+ * Decides what the event loop does when an iteration found nothing to do, trading CPU usage for wakeup latency.
+ * Each executor gets its own instance, only ever called from the event loop thread.
+ *
+ * @see EventExecutor.Builder#idleStrategy(java.util.function.Supplier)
+ */
+public interface IdleStrategy {
+
+    enum Action {
+        /**
+         * Run the next loop iteration right away.
+         */
+        SPIN,
+        /**
+         * Yield the cpu, then run the next loop iteration.
+         */
+        YIELD,
+        /**
+         * Block in the kernel until a completion arrives or another thread wakes the loop up.
+         * The loop only parks when it has nothing in flight that has to be polled.
+         */
+        PARK
+    }
+
+    /**
+     * Called after an iteration that found no work.
+     *
+     * @param idleCount number of consecutive idle iterations, starts at 1 and is reset after work or a park
+     */
+    Action onIdle(int idleCount);
+
+    /**
+     * Called after an iteration that processed some tasks, completions or submissions.
+     *
+     * @param workCount number of items processed
+     */
+    default void onWork(int workCount) {
+    }
+}
@@ -0,0 +1,70 @@
+package one.kuring;
+
+/**
+ * Snapshot of an operation owned by the kernel, for diagnostics.
+ *
+ * @see EventExecutor#inFlightOperations()
+ */
+public final class InFlightOperation {
+    private final byte op;
+    private final int fd;
+    private final long offset;
+    private final int length;
+    private final long ageNanos;
+    private final ExecutorMetrics.RingType ring;
+
+    InFlightOperation(byte op, int fd, long offset, int length, long ageNanos, ExecutorMetrics.RingType ring) {
+        this.op = op;
+        this.fd = fd;
+        this.offset = offset;
+        this.length = length;
+        this.ageNanos = ageNanos;
+        this.ring = ring;
+    }
+
+    /**
+     * @return opcode, e.g. {@link Native#IORING_OP_READ}
+     */
+    public byte getOp() {
+        return op;
+    }
+
+    /**
+     * @return file descriptor or registered file index for fixed files
+     */
+    public int getFd() {
+        return fd;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return time since the operation was handed to the executor or -1 if the executor doesn't time operations,
+     * operations are timed with metrics, flight recorder events or the stuck operation watchdog enabled
+     */
+    public long getAgeNanos() {
+        return ageNanos;
+    }
+
+    public ExecutorMetrics.RingType getRing() {
+        return ring;
+    }
+
+    @Override
+    public String toString() {
+        return "InFlightOperation{" +
+                "op=" + op +
+                ", fd=" + fd +
+                ", offset=" + offset +
+                ", length=" + length +
+                ", ageNanos=" + ageNanos +
+                ", ring=" + ring +
+                '}';
+    }
+}
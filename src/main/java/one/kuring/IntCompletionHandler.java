@@ -0,0 +1,21 @@
+package one.kuring;
+
+/**
+ * Handler of the result of an operation submitted with the callback API of {@link AbstractFile}.
+ * Works like {@link java.nio.channels.CompletionHandler}, except that the result is a primitive int,
+ * so neither the result nor the operation allocates. One handler can serve any number of operations at once,
+ * the attachment tells them apart.
+ * <p>
+ * Both methods are called on the event loop thread and must not block it.
+ *
+ * @param <A> type of the object attached to the operation
+ */
+public interface IntCompletionHandler<A> {
+
+    /**
+     * @param result result of the operation, e.g. the number of bytes read
+     */
+    void completed(int result, A attachment);
+
+    void failed(Throwable ex, A attachment);
+}
@@ -1,12 +1,13 @@
 package one.kuring;
 
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.concurrent.atomic.AtomicInteger;
 
 // todo optimized io_uring_buf_ring_cq_advance
 //  abstract file proper api
 //  struct tests
-//  pool BufRingResult
 //  generify ResultProvider
 //  check if feature supported
 class IoUringBufRing {
@@ -17,6 +18,7 @@ class IoUringBufRing {
         private static final int RING_ADDR = 0; // __u64
         private static final int RING_ENTRIES = 8; // __u32
         private static final int BG_ID = 12; // __u16
+        private static final int FLAGS = 14; // __u16
         private static final long SIZE = Native.ioUringBufRegSize();
 
         static void putRingAddr(long address, long value) {
@@ -30,6 +32,10 @@ class IoUringBufRing {
         static void putBgId(long address, short value) {
             MemoryUtils.putShort(address + BG_ID, value);
         }
+
+        static void putFlags(long address, short value) {
+            MemoryUtils.putShort(address + FLAGS, value);
+        }
     }
 
     private static class IoUringBufRingStruct {
@@ -47,8 +53,8 @@ class IoUringBufRing {
             return MemoryUtils.getShort(address + TAIL);
         }
 
-        static long getIoUringBuf(long address, int tail, int offset, int mask) {
-            return address + ((tail + offset) & mask) * Native.ioUringBufSize();
+        static long getIoUringBuf(long address, int entry) {
+            return address + entry * Native.ioUringBufSize();
         }
     }
 
@@ -61,6 +67,10 @@ class IoUringBufRing {
             MemoryUtils.putLong(baseAddress, addr);
         }
 
+        static long getAddr(long baseAddress) {
+            return MemoryUtils.getLong(baseAddress);
+        }
+
         static void setLen(long baseAddress, int len) {
             MemoryUtils.putInt(baseAddress + LEN, len);
         }
@@ -82,10 +92,41 @@ class IoUringBufRing {
     private final long bufferBaseAddress;
 
     private final short id;
-
-
-    public IoUringBufRing(int ringFd, int bufferSize, int numOfBuffers) {
+    private final boolean incremental;
+
+    // everything below is event loop thread only
+
+    // buffers added after the published tail, the kernel sees them once the tail is published
+    private int unpublished;
+    // buffers and spare buffers given back since the last publish, each one lets a waiter retry
+    private int returned;
+
+    // incremental groups only, indexed by buffer id
+    // ring entry of the buffer, the kernel moves its address forward as it consumes the buffer
+    private final int[] entries;
+    // where the next piece of the buffer starts
+    private final int[] consumed;
+    // pieces of the buffer handed out and not closed yet
+    private final int[] openPieces;
+    // the kernel moved on to the next buffer, the buffer goes back once all its pieces are closed
+    private final boolean[] kernelDone;
+    // the kernel doesn't say where a piece starts, so an incremental group serves one read at a time
+    private final ArrayDeque<Command<?>> queuedReads;
+    private Command<?> readInFlight;
+
+    // provided buffer reads that got ENOBUFS, resubmitted as buffers come back
+    private final ArrayDeque<Command<?>> waiters = new ArrayDeque<>();
+    // one-off buffers reads fall back to instead of waiting, allocated on demand
+    private final ArrayDeque<ByteBuffer> spareBuffers = new ArrayDeque<>();
+    private final int maxSpareBuffers;
+    private int spareBuffersAllocated;
+
+    private volatile long exhausted;
+    private volatile long fallbacks;
+
+    public IoUringBufRing(int ringFd, int bufferSize, int numOfBuffers, boolean incremental, int maxSpareBuffers) {
         this.bufferSize = bufferSize;
+        this.maxSpareBuffers = maxSpareBuffers;
         this.numOfBuffers = numOfBuffers;
         this.ringFd = ringFd;
         int bufRingSize = (int) ((Native.ioUringBufSize() + bufferSize) * numOfBuffers);
@@ -106,24 +147,176 @@ class IoUringBufRing {
         this.bufferBaseAddress = bufRingBaseAddress + Native.ioUringBufSize() * numOfBuffers;
         this.bufferBaseBb = ((ByteBuffer) bufRingBuffer.position((int) (Native.ioUringBufSize() * numOfBuffers))).slice();
 
-        Native.ioUringRegister(ringFd, Native.IORING_REGISTER_PBUF_RING, registerBufRingBufferAddress, 1);
+        this.incremental = incremental && register(registerBufRingBufferAddress);
+        if (this.incremental) {
+            this.entries = new int[numOfBuffers];
+            this.queuedReads = new ArrayDeque<>();
+            this.consumed = new int[numOfBuffers];
+            this.openPieces = new int[numOfBuffers];
+            this.kernelDone = new boolean[numOfBuffers];
+        } else {
+            Native.ioUringRegister(ringFd, Native.IORING_REGISTER_PBUF_RING, registerBufRingBufferAddress, 1);
+            this.entries = null;
+            this.queuedReads = null;
+            this.consumed = null;
+            this.openPieces = null;
+            this.kernelDone = null;
+        }
         for (int i = 0; i < numOfBuffers; i++) {
-            addBuffer(i);
             initBbArrayElement(i);
+            addBuffer(i, i);
         }
         IoUringBufRingStruct.publishTail(bufRingBaseAddress, (short) numOfBuffers);
     }
 
+    /**
+     * @return true if the group was registered for incremental consumption, false if the kernel doesn't support it
+     */
+    private boolean register(long registerBufRingBufferAddress) {
+        IoUringBufReg.putFlags(registerBufRingBufferAddress, (short) Native.IOU_PBUF_RING_INC);
+        try {
+            Native.ioUringRegister(ringFd, Native.IORING_REGISTER_PBUF_RING, registerBufRingBufferAddress, 1);
+            return true;
+        } catch (RuntimeException e) {
+            // EINVAL before 6.12
+            IoUringBufReg.putFlags(registerBufRingBufferAddress, (short) 0);
+            return false;
+        }
+    }
+
+    /**
+     * Hands out the next piece of an incrementally consumed buffer. Event loop thread only.
+     * <p>
+     * A regular file read consumes as much of the buffer as it asked for even if it reads less, other reads only
+     * consume what they read. Either way the next piece starts at the address the kernel left in the ring entry.
+     *
+     * @param more the kernel keeps using the rest of the buffer, see {@link Native#IORING_CQE_F_BUF_MORE}
+     * @return the bytes read
+     */
+    ByteBuffer consume(int id, int readBytes, boolean more) {
+        int offset = consumed[id];
+        if (more) {
+            long ioUringBuf = IoUringBufRingStruct.getIoUringBuf(bufRingBaseAddress, entries[id]);
+            consumed[id] = (int) (IoUringBuf.getAddr(ioUringBuf) - getRingBufferAddress(id));
+        } else {
+            kernelDone[id] = true;
+        }
+        openPieces[id]++;
+        ByteBuffer buffer = buffers[id].duplicate();
+        ((Buffer) buffer).limit(offset + readBytes).position(offset);
+        ByteBuffer piece = buffer.slice();
+        ((Buffer) piece).position(readBytes);
+        return piece;
+    }
+
+    /**
+     * Adds the buffer back after the tail, it isn't visible to the kernel until {@link #publishRecycled()}.
+     * A piece of an incrementally consumed buffer only gives the buffer back once it's the last one.
+     */
     void recycleBuffer(int id) {
-        addBuffer(id);
+        if (incremental) {
+            if (--openPieces[id] > 0 || !kernelDone[id]) {
+                return;
+            }
+            consumed[id] = 0;
+            kernelDone[id] = false;
+        }
+        addBuffer(id, unpublished++);
         buffers[id].clear();
-        IoUringBufRingStruct.publishTail(bufRingBaseAddress, (short) 1);
+        returned++;
+    }
+
+    /**
+     * Makes all buffers recycled since the last call visible to the kernel with a single tail store.
+     *
+     * @return number of buffers and spare buffers given back since the last call
+     */
+    int publishRecycled() {
+        if (unpublished > 0) {
+            IoUringBufRingStruct.publishTail(bufRingBaseAddress, (short) unpublished);
+            unpublished = 0;
+        }
+        int result = returned;
+        returned = 0;
+        return result;
     }
 
     ByteBuffer getBuffer(int id) {
         return buffers[id];
     }
 
+    /**
+     * Counts a read that found the ring empty and hands out a spare buffer for it, if one is left.
+     *
+     * @return spare buffer of {@link #getBufferSize()} bytes or null if the read has to wait
+     */
+    ByteBuffer onExhausted() {
+        exhausted++;
+        ByteBuffer spare = spareBuffers.poll();
+        if (spare == null && spareBuffersAllocated < maxSpareBuffers) {
+            spareBuffersAllocated++;
+            spare = MemoryUtils.allocateAlignedByteBuffer(bufferSize, Native.getPageSize());
+        }
+        if (spare != null) {
+            fallbacks++;
+        }
+        return spare;
+    }
+
+    void recycleSpareBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        spareBuffers.add(buffer);
+        returned++;
+    }
+
+    /**
+     * @return false if the read has to wait for the read in flight to complete, it's then queued
+     */
+    boolean startRead(Command<?> command) {
+        if (readInFlight == null || readInFlight == command) {
+            readInFlight = command;
+            return true;
+        }
+        queuedReads.add(command);
+        return false;
+    }
+
+    /**
+     * @return next queued read or null
+     */
+    Command<?> finishRead() {
+        readInFlight = queuedReads.poll();
+        return readInFlight;
+    }
+
+    boolean removeQueuedRead(Command<?> command) {
+        return queuedReads != null && queuedReads.remove(command);
+    }
+
+    Command<?> pollQueuedRead() {
+        return queuedReads == null ? null : queuedReads.poll();
+    }
+
+    void addWaiter(Command<?> command) {
+        waiters.add(command);
+    }
+
+    Command<?> pollWaiter() {
+        return waiters.poll();
+    }
+
+    boolean removeWaiter(Command<?> command) {
+        return waiters.remove(command);
+    }
+
+    long getExhausted() {
+        return exhausted;
+    }
+
+    long getFallbacks() {
+        return fallbacks;
+    }
+
     public void close() {
         ByteBuffer registerBufRingBuffer = ByteBuffer.allocateDirect((int) IoUringBufReg.SIZE);
         long registerStructBufAddress = MemoryUtils.getDirectBufferAddress(registerBufRingBuffer);
@@ -132,16 +325,17 @@ class IoUringBufRing {
     }
 
     private void initBbArrayElement(int id) {
-        ByteBuffer slice = ((ByteBuffer) bufferBaseBb.position(id * bufferSize)).slice();
-        buffers[id] = slice;
+        ((Buffer) bufferBaseBb).limit((id + 1) * bufferSize).position(id * bufferSize);
+        buffers[id] = bufferBaseBb.slice();
+        ((Buffer) bufferBaseBb).clear();
     }
 
-    private void addBuffer(int id) {
-        long ioUringBuf = IoUringBufRingStruct.getIoUringBuf(
-                bufRingBaseAddress,
-                IoUringBufRingStruct.getTail(bufRingBaseAddress),
-                id,
-                getBufRingMask());
+    private void addBuffer(int id, int offset) {
+        int entry = (IoUringBufRingStruct.getTail(bufRingBaseAddress) + offset) & getBufRingMask();
+        long ioUringBuf = IoUringBufRingStruct.getIoUringBuf(bufRingBaseAddress, entry);
+        if (incremental) {
+            entries[id] = entry;
+        }
 
         IoUringBuf.setAddr(ioUringBuf, getRingBufferAddress(id));
         IoUringBuf.setLen(ioUringBuf, bufferSize);
@@ -161,7 +355,15 @@ class IoUringBufRing {
         return id;
     }
 
+    boolean isIncremental() {
+        return incremental;
+    }
+
     int getBufferSize() {
         return bufferSize;
     }
+
+    int getTail() {
+        return IoUringBufRingStruct.getTail(bufRingBaseAddress) & 0xFFFF;
+    }
 }
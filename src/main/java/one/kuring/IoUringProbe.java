@@ -1,6 +1,8 @@
 package one.kuring;
 
 import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 class IoUringProbe {
 
@@ -16,6 +18,8 @@ class IoUringProbe {
     private static final int OP = 0; // __u8
     private static final int FLAGS = 2; // __u16
 
+    private static final Map<Integer, Boolean> SETUP_SUPPORT = new ConcurrentHashMap<>();
+
     private final ByteBuffer probeBuffer = ByteBuffer.allocateDirect((int) Native.probeBufferSize());
     private final byte lastOpSupported;
     private final byte probeOpsArrayLen;
@@ -30,6 +34,27 @@ class IoUringProbe {
         lastOpSupported = MemoryUtils.getByte(probeBufferAddress);
     }
 
+    /**
+     * The probe only covers opcodes, setup flags are probed by setting up a throwaway ring,
+     * the kernel rejects flags it doesn't know or combinations it doesn't support. The answer is cached per flag set.
+     *
+     * @param flags IORING_SETUP_* flags
+     */
+    static boolean isSetupSupported(int flags) {
+        return SETUP_SUPPORT.computeIfAbsent(flags, IoUringProbe::trySetup);
+    }
+
+    private static boolean trySetup(int flags) {
+        Uring ring;
+        try {
+            ring = Native.setupIoUring(1, flags, 0, 0, 0, 0);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        ring.close();
+        return true;
+    }
+
     boolean isOpSupported(int ioUringOp) {
         return lastOpSupported >= ioUringOp;
     }
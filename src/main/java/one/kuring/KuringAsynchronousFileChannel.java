@@ -0,0 +1,373 @@
+package one.kuring;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link AsynchronousFileChannel} backed by an {@link AsyncFile}, so code written against the JDK channel
+ * gets io_uring without changes.
+ * <p>
+ * Completion handlers are called and futures are completed on the event loop thread of the executor,
+ * rather than on a thread of a pool, and must not block it. The blocking methods ({@link #size()},
+ * {@link #force(boolean)}, {@link #truncate(long)} and the open methods) must not be called on that thread.
+ * <p>
+ * Heap buffers are supported by transferring through a temporary direct buffer, direct buffers
+ * are handed to the kernel as is. File locks are not supported.
+ */
+public final class KuringAsynchronousFileChannel extends AsynchronousFileChannel {
+    private final AsyncFile file;
+    private final EventExecutor executor;
+    private final Path path;
+    private final boolean readable;
+    private final boolean writable;
+    private final boolean deleteOnClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private KuringAsynchronousFileChannel(AsyncFile file, EventExecutor executor, Path path,
+                                          boolean readable, boolean writable, boolean deleteOnClose) {
+        this.file = file;
+        this.executor = executor;
+        this.path = path;
+        this.readable = readable;
+        this.writable = writable;
+        this.deleteOnClose = deleteOnClose;
+    }
+
+    /**
+     * Opens or creates a file, works in the same manner as {@link AsynchronousFileChannel#open(Path, java.nio.file.OpenOption...)}.
+     * {@link StandardOpenOption#APPEND} is not supported as the channel has no position.
+     */
+    public static KuringAsynchronousFileChannel open(Path path, EventExecutor executor,
+                                                     java.nio.file.OpenOption... options) throws IOException {
+        return open(path, new HashSet<>(Arrays.asList(options)), executor);
+    }
+
+    /**
+     * Opens or creates a file, works in the same manner as
+     * {@link AsynchronousFileChannel#open(Path, Set, java.util.concurrent.ExecutorService, FileAttribute[])}.
+     * The only supported attribute is {@code posix:permissions}, applied when the file is created.
+     */
+    public static KuringAsynchronousFileChannel open(Path path, Set<? extends java.nio.file.OpenOption> options,
+                                                     EventExecutor executor, FileAttribute<?>... attrs) throws IOException {
+        Objects.requireNonNull(path, "path");
+        Objects.requireNonNull(executor, "executor");
+        if (options.contains(StandardOpenOption.APPEND)) {
+            throw new UnsupportedOperationException("APPEND not allowed");
+        }
+        ChannelOptions channelOptions = ChannelOptions.parse(options, attrs);
+        AsyncFile file = open(path, executor, channelOptions);
+        return new KuringAsynchronousFileChannel(file, executor, path, channelOptions.readable, channelOptions.writable,
+                channelOptions.deleteOnClose);
+    }
+
+    /**
+     * Opens the file of a JDK channel, failing with the exception the JDK would throw.
+     */
+    static AsyncFile open(Path path, EventExecutor executor, ChannelOptions options) throws IOException {
+        // not normalized, ".." after a symbolic link is resolved by the kernel as the JDK does
+        String absolutePath = path.toAbsolutePath().toString();
+        try {
+            return await(executor, AsyncFile.openAsync(absolutePath, options.mode, executor, options.openOptions));
+        } catch (ErrnoException ex) {
+            throw ex.toFileSystemException(path.toString());
+        }
+    }
+
+    /**
+     * The file this channel reads and writes.
+     */
+    public AsyncFile getFile() {
+        return file;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return await(executor, file.sizeAsync());
+    }
+
+    /**
+     * Truncates the file to the given size if it is larger.
+     * <p>
+     * Requires kernel 6.9+
+     */
+    @Override
+    public AsynchronousFileChannel truncate(long size) throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size");
+        }
+        ensureOpen();
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+        if (size < size()) {
+            await(executor, file.truncateAsync(size));
+        }
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        ensureOpen();
+        await(executor, metaData ? file.syncAsync() : file.dataSyncAsync());
+    }
+
+    @Override
+    public <A> void lock(long position, long size, boolean shared, A attachment,
+                         CompletionHandler<FileLock, ? super A> handler) {
+        throw new UnsupportedOperationException("File locks are not supported");
+    }
+
+    @Override
+    public Future<FileLock> lock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("File locks are not supported");
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("File locks are not supported");
+    }
+
+    @Override
+    public <A> void read(ByteBuffer dst, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        Objects.requireNonNull(handler, "handler");
+        checkRead(dst, position);
+        transfer(new Transfer<>(dst, true, attachment, handler, null), position);
+    }
+
+    @Override
+    public Future<Integer> read(ByteBuffer dst, long position) {
+        checkRead(dst, position);
+        ChannelFuture future = new ChannelFuture();
+        transfer(new Transfer<>(dst, true, null, null, future), position);
+        return future;
+    }
+
+    @Override
+    public <A> void write(ByteBuffer src, long position, A attachment, CompletionHandler<Integer, ? super A> handler) {
+        Objects.requireNonNull(handler, "handler");
+        checkWrite(src, position);
+        transfer(new Transfer<>(src, false, attachment, handler, null), position);
+    }
+
+    @Override
+    public Future<Integer> write(ByteBuffer src, long position) {
+        checkWrite(src, position);
+        ChannelFuture future = new ChannelFuture();
+        transfer(new Transfer<>(src, false, null, null, future), position);
+        return future;
+    }
+
+    private void checkRead(ByteBuffer dst, long position) {
+        Objects.requireNonNull(dst, "dst");
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        if (!readable) {
+            throw new NonReadableChannelException();
+        }
+        if (dst.isReadOnly()) {
+            throw new IllegalArgumentException("Read-only buffer");
+        }
+    }
+
+    private void checkWrite(ByteBuffer src, long position) {
+        Objects.requireNonNull(src, "src");
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        if (!writable) {
+            throw new NonWritableChannelException();
+        }
+    }
+
+    private void transfer(Transfer<?> transfer, long position) {
+        if (!isOpen()) {
+            transfer.failed(new ClosedChannelException(), null);
+            return;
+        }
+        if (!transfer.buffer.hasRemaining()) {
+            transfer.deliver(0);
+            return;
+        }
+        ByteBuffer ioBuffer = transfer.ioBuffer();
+        if (transfer.future != null) {
+            CompletableFuture<Integer> operation = transfer.read
+                    ? file.readAsync(ioBuffer, position)
+                    : file.writeAsync(ioBuffer, position);
+            transfer.future.operation = operation;
+            if (transfer.future.isCancelled()) {
+                // cancelled before the operation was set, the cancel didn't see it
+                operation.cancel(false);
+            }
+            operation.whenComplete(transfer);
+        } else if (transfer.read) {
+            file.read(ioBuffer, position, null, transfer);
+        } else {
+            file.write(ioBuffer, position, null, transfer);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    /**
+     * Closes the file and waits for the close to complete. Operations in flight are not cancelled.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            await(executor, file.closeAsync());
+        } finally {
+            if (deleteOnClose) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    static <T> T await(EventExecutor executor, CompletableFuture<T> future) throws IOException {
+        if (executor.inEventLoop()) {
+            throw new IllegalStateException("Blocking call on the event loop thread");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Future of a read or write, cancelling it asks the kernel to cancel the operation.
+     * The operation is set after it is submitted, a cancel that comes first is forwarded by {@code transfer}.
+     */
+    private static final class ChannelFuture extends CompletableFuture<Integer> {
+        private volatile Future<Integer> operation;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<Integer> operation = this.operation;
+            if (cancelled && operation != null) {
+                operation.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * A single read or write, turns the result of the file operation into the result of the channel operation.
+     */
+    private static final class Transfer<A> implements IntCompletionHandler<Object>,
+            BiConsumer<Integer, Throwable> {
+        private final ByteBuffer buffer;
+        private final boolean read;
+        private final A attachment;
+        private final CompletionHandler<Integer, ? super A> handler;
+        private final ChannelFuture future;
+        private ByteBuffer bounce;
+
+        Transfer(ByteBuffer buffer, boolean read, A attachment,
+                 CompletionHandler<Integer, ? super A> handler, ChannelFuture future) {
+            this.buffer = buffer;
+            this.read = read;
+            this.attachment = attachment;
+            this.handler = handler;
+            this.future = future;
+        }
+
+        /**
+         * The buffer to hand to the kernel, a temporary direct buffer if the channel buffer is on the heap.
+         */
+        ByteBuffer ioBuffer() {
+            if (buffer.isDirect()) {
+                return buffer;
+            }
+            bounce = ByteBuffer.allocateDirect(buffer.remaining());
+            if (!read) {
+                bounce.put(buffer.duplicate());
+                ((Buffer) bounce).flip();
+            }
+            return bounce;
+        }
+
+        @Override
+        public void completed(int result, Object ignored) {
+            if (bounce != null && result > 0) {
+                if (read) {
+                    ((Buffer) bounce).flip();
+                    buffer.put(bounce);
+                } else {
+                    ((Buffer) buffer).position(buffer.position() + result);
+                }
+            }
+            // a read of a non empty buffer that gets nothing is at the end of file
+            deliver(read && result == 0 ? -1 : result);
+        }
+
+        @Override
+        public void failed(Throwable ex, Object ignored) {
+            if (handler != null) {
+                handler.failed(ex, attachment);
+            } else {
+                future.completeExceptionally(ex);
+            }
+        }
+
+        // completion of the future of the file operation
+        @Override
+        public void accept(Integer result, Throwable ex) {
+            if (ex != null) {
+                failed(ex, null);
+            } else {
+                completed(result, null);
+            }
+        }
+
+        void deliver(int result) {
+            if (handler != null) {
+                handler.completed(result, attachment);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package one.kuring;
+
+import org.jctools.queues.MpmcArrayQueue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * {@link FileChannel} backed by an {@link AsyncFile}. The calling thread parks while the event loop
+ * does the I/O, so the channel must not be used on the event loop thread. A parked virtual thread doesn't
+ * hold its carrier, and reads and writes with direct buffers allocate nothing once warmed up.
+ * <p>
+ * Heap buffers are transferred in chunks through a direct buffer taken from a small pool shared by all channels.
+ * Memory mapping and file locks go through a JDK channel opened on the same file the first time they are used.
+ */
+public final class KuringFileChannel extends FileChannel {
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+    // shared rather than per thread, virtual threads would each pin a buffer of their own
+    private static final Queue<ByteBuffer> TRANSFER_BUFFERS = new MpmcArrayQueue<>(16);
+
+    private final AsyncFile file;
+    private final EventExecutor executor;
+    private final Path path;
+    private final ChannelOptions options;
+    private final Object positionLock = new Object();
+    private final Object jdkChannelLock = new Object();
+    // guarded by jdkChannelLock, opened by the first map or lock
+    private FileChannel jdkChannel;
+    // guarded by positionLock, unused in append mode
+    private long position;
+
+    private KuringFileChannel(AsyncFile file, EventExecutor executor, Path path, ChannelOptions options) {
+        this.file = file;
+        this.executor = executor;
+        this.path = path;
+        this.options = options;
+    }
+
+    /**
+     * Opens or creates a file, works in the same manner as {@link FileChannel#open(Path, java.nio.file.OpenOption...)}.
+     */
+    public static KuringFileChannel open(Path path, EventExecutor executor,
+                                         java.nio.file.OpenOption... options) throws IOException {
+        return open(path, new HashSet<>(Arrays.asList(options)), executor);
+    }
+
+    /**
+     * Opens or creates a file, works in the same manner as {@link FileChannel#open(Path, Set, FileAttribute[])}.
+     * The only supported attribute is {@code posix:permissions}, applied when the file is created.
+     */
+    public static KuringFileChannel open(Path path, Set<? extends java.nio.file.OpenOption> options,
+                                         EventExecutor executor, FileAttribute<?>... attrs) throws IOException {
+        Objects.requireNonNull(path, "path");
+        Objects.requireNonNull(executor, "executor");
+        ChannelOptions channelOptions = ChannelOptions.parse(options, attrs);
+        AsyncFile file = KuringAsynchronousFileChannel.open(path, executor, channelOptions);
+        return new KuringFileChannel(file, executor, path, channelOptions);
+    }
+
+    /**
+     * The file this channel reads and writes.
+     */
+    public AsyncFile getFile() {
+        return file;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        checkReadable();
+        synchronized (positionLock) {
+            int read = transfer(dst, position, true);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        checkBounds(dsts, offset, length);
+        checkReadable();
+        synchronized (positionLock) {
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                ByteBuffer dst = dsts[i];
+                int requested = dst.remaining();
+                int read = transfer(dst, position, true);
+                if (read < 0) {
+                    return total == 0 ? -1 : total;
+                }
+                position += read;
+                total += read;
+                if (read < requested) {
+                    break;
+                }
+            }
+            return total;
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        checkWritable();
+        synchronized (positionLock) {
+            if (options.append) {
+                // the kernel writes at the end of file regardless of the offset
+                return transfer(src, -1, false);
+            }
+            int written = transfer(src, position, false);
+            position += written;
+            return written;
+        }
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        checkBounds(srcs, offset, length);
+        checkWritable();
+        synchronized (positionLock) {
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                ByteBuffer src = srcs[i];
+                int requested = src.remaining();
+                int written = write(src);
+                total += written;
+                if (written < requested) {
+                    break;
+                }
+            }
+            return total;
+        }
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        if (options.append) {
+            return size();
+        }
+        synchronized (positionLock) {
+            return position;
+        }
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        ensureOpen();
+        synchronized (positionLock) {
+            position = newPosition;
+        }
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        boolean completed = false;
+        begin();
+        try {
+            long size = file.sizeBlocking();
+            completed = true;
+            return size;
+        } finally {
+            end(completed);
+        }
+    }
+
+    /**
+     * Truncates the file to the given size if it is larger.
+     * <p>
+     * Requires kernel 6.9+
+     */
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size");
+        }
+        checkWritable();
+        if (size < size()) {
+            boolean completed = false;
+            begin();
+            try {
+                file.truncateBlocking(size);
+                completed = true;
+            } finally {
+                end(completed);
+            }
+        }
+        synchronized (positionLock) {
+            if (position > size) {
+                position = size;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        ensureOpen();
+        boolean completed = false;
+        begin();
+        try {
+            if (metaData) {
+                file.syncBlocking();
+            } else {
+                file.dataSyncBlocking();
+            }
+            completed = true;
+        } finally {
+            end(completed);
+        }
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("Negative position or count");
+        }
+        checkReadable();
+        if (!target.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        ByteBuffer buffer = acquireTransferBuffer((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+        try {
+            long total = 0;
+            while (total < count) {
+                ((Buffer) buffer).clear();
+                ((Buffer) buffer).limit((int) Math.min(buffer.capacity(), count - total));
+                int read = transfer(buffer, position + total, true);
+                if (read <= 0) {
+                    break;
+                }
+                ((Buffer) buffer).flip();
+                while (buffer.hasRemaining()) {
+                    int written = target.write(buffer);
+                    total += written;
+                    if (written == 0) {
+                        // a non blocking target that is full
+                        return total;
+                    }
+                }
+            }
+            return total;
+        } finally {
+            releaseTransferBuffer(buffer);
+        }
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("Negative position or count");
+        }
+        checkWritable();
+        if (!src.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        ByteBuffer buffer = acquireTransferBuffer((int) Math.min(count, TRANSFER_BUFFER_SIZE));
+        try {
+            long total = 0;
+            while (total < count) {
+                ((Buffer) buffer).clear();
+                ((Buffer) buffer).limit((int) Math.min(buffer.capacity(), count - total));
+                int read = src.read(buffer);
+                if (read <= 0) {
+                    break;
+                }
+                ((Buffer) buffer).flip();
+                while (buffer.hasRemaining()) {
+                    total += transfer(buffer, position + total, false);
+                }
+            }
+            return total;
+        } finally {
+            releaseTransferBuffer(buffer);
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        checkReadable();
+        return transfer(dst, position, true);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        checkWritable();
+        return transfer(src, position, false);
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+        return jdkChannel().map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+        return new DelegatingFileLock(this, jdkChannel().lock(position, size, shared));
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+        FileLock lock = jdkChannel().tryLock(position, size, shared);
+        return lock != null ? new DelegatingFileLock(this, lock) : null;
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        try {
+            synchronized (jdkChannelLock) {
+                if (jdkChannel != null) {
+                    // releases the locks as well
+                    jdkChannel.close();
+                }
+            }
+            KuringAsynchronousFileChannel.await(executor, file.closeAsync());
+        } finally {
+            if (options.deleteOnClose) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Reads or writes the buffer remaining bytes at the given position and advances the buffer position.
+     * A heap buffer goes through the transfer buffer chunk by chunk until a chunk comes up short.
+     *
+     * @param position -1 to write at the end of file in append mode
+     * @return the number of bytes transferred, -1 for a read at the end of file
+     */
+    private int transfer(ByteBuffer buffer, long position, boolean read) throws IOException {
+        ensureOpen();
+        if (!buffer.hasRemaining()) {
+            return 0;
+        }
+        if (buffer.isDirect()) {
+            int result = transferDirect(buffer, position, read);
+            return read && result == 0 ? -1 : result;
+        }
+        ByteBuffer ioBuffer = acquireTransferBuffer(buffer.remaining());
+        try {
+            int total = 0;
+            while (buffer.hasRemaining()) {
+                int chunk = Math.min(buffer.remaining(), ioBuffer.capacity());
+                ((Buffer) ioBuffer).clear();
+                ((Buffer) ioBuffer).limit(chunk);
+                if (!read) {
+                    ByteBuffer src = buffer.duplicate();
+                    ((Buffer) src).limit(src.position() + chunk);
+                    ioBuffer.put(src);
+                    ((Buffer) ioBuffer).flip();
+                }
+                int result = transferDirect(ioBuffer, position < 0 ? position : position + total, read);
+                if (result <= 0) {
+                    return read && total == 0 ? -1 : total;
+                }
+                if (read) {
+                    ((Buffer) ioBuffer).flip();
+                    buffer.put(ioBuffer);
+                } else {
+                    ((Buffer) buffer).position(buffer.position() + result);
+                }
+                total += result;
+                if (result < chunk) {
+                    break;
+                }
+            }
+            return total;
+        } finally {
+            releaseTransferBuffer(ioBuffer);
+        }
+    }
+
+    private int transferDirect(ByteBuffer buffer, long position, boolean read) throws IOException {
+        boolean completed = false;
+        begin();
+        try {
+            int result = read ? file.readBlocking(buffer, position) : file.writeBlocking(buffer, position);
+            completed = true;
+            return result;
+        } finally {
+            end(completed);
+        }
+    }
+
+    /**
+     * Opens the JDK channel on the fd of this channel rather than on its path, so it reaches the same file
+     * once the path is renamed or removed. The JDK checks the access mode as it does for its own channels.
+     */
+    private FileChannel jdkChannel() throws IOException {
+        synchronized (jdkChannelLock) {
+            // a close takes the lock after marking the channel closed, nothing is opened once it has
+            ensureOpen();
+            if (jdkChannel == null) {
+                Set<StandardOpenOption> jdkOptions = EnumSet.noneOf(StandardOpenOption.class);
+                if (options.readable) {
+                    jdkOptions.add(StandardOpenOption.READ);
+                }
+                if (options.writable) {
+                    jdkOptions.add(StandardOpenOption.WRITE);
+                }
+                FileSystemProvider provider = KuringFileSystemProvider.defaultProvider();
+                Path fdPath = provider.getPath(URI.create("file:///proc/self/fd/" + file.getFd()));
+                jdkChannel = provider.newFileChannel(fdPath, jdkOptions);
+            }
+            return jdkChannel;
+        }
+    }
+
+    /**
+     * Takes a buffer from the pool, or allocates one no larger than the transfer needs when the pool has none
+     * large enough. A smaller buffer taken from the pool is dropped, so the pool grows towards full size buffers.
+     */
+    private static ByteBuffer acquireTransferBuffer(int size) {
+        int capacity = Math.min(size, TRANSFER_BUFFER_SIZE);
+        ByteBuffer buffer = TRANSFER_BUFFERS.poll();
+        if (buffer == null || buffer.capacity() < capacity) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        return buffer;
+    }
+
+    private static void releaseTransferBuffer(ByteBuffer buffer) {
+        // dropped when the pool is full
+        TRANSFER_BUFFERS.offer(buffer);
+    }
+
+    private void checkReadable() throws ClosedChannelException {
+        ensureOpen();
+        if (!options.readable) {
+            throw new NonReadableChannelException();
+        }
+    }
+
+    private void checkWritable() throws ClosedChannelException {
+        ensureOpen();
+        if (!options.writable) {
+            throw new NonWritableChannelException();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private static void checkBounds(ByteBuffer[] buffers, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > buffers.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Lock of the JDK channel handed out as a lock of this channel.
+     */
+    private static final class DelegatingFileLock extends FileLock {
+        private final FileLock delegate;
+
+        DelegatingFileLock(KuringFileChannel channel, FileLock delegate) {
+            super(channel, delegate.position(), delegate.size(), delegate.isShared());
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isValid() {
+            return delegate.isValid();
+        }
+
+        @Override
+        public void release() throws IOException {
+            delegate.release();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package one.kuring;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * File system of a {@link KuringFileSystemProvider}, the wrapped file system with paths of the provider.
+ */
+final class KuringFileSystem extends FileSystem {
+    private final KuringFileSystemProvider provider;
+    private final FileSystem delegate;
+
+    KuringFileSystem(KuringFileSystemProvider provider, FileSystem delegate) {
+        this.provider = provider;
+        this.delegate = delegate;
+    }
+
+    KuringPath wrap(Path path) {
+        return new KuringPath(this, path);
+    }
+
+    @Override
+    public KuringFileSystemProvider provider() {
+        return provider;
+    }
+
+    /**
+     * The wrapped file system can't be closed.
+     */
+    @Override
+    public void close() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return delegate.isReadOnly();
+    }
+
+    @Override
+    public String getSeparator() {
+        return delegate.getSeparator();
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        List<Path> roots = new ArrayList<>();
+        for (Path root : delegate.getRootDirectories()) {
+            roots.add(wrap(root));
+        }
+        return roots;
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return delegate.getFileStores();
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return delegate.supportedFileAttributeViews();
+    }
+
+    @Override
+    public Path getPath(String first, String... more) {
+        return wrap(delegate.getPath(first, more));
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        PathMatcher matcher = delegate.getPathMatcher(syntaxAndPattern);
+        return path -> matcher.matches(path instanceof KuringPath ? ((KuringPath) path).getDelegate() : path);
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        return delegate.getUserPrincipalLookupService();
+    }
+
+    @Override
+    public WatchService newWatchService() throws IOException {
+        return delegate.newWatchService();
+    }
+}
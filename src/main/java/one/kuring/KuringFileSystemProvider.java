@@ -0,0 +1,439 @@
+package one.kuring;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * {@link FileSystemProvider} that wraps the default provider and does the channel I/O and the reads of basic
+ * file attributes with io_uring, so libraries that take a {@link Path} use io_uring without changes.
+ * Everything else, e.g. directory listing, copy and move, is done by the default provider.
+ * <p>
+ * There are two ways to use it:
+ * <ul>
+ *     <li>paths of the {@code kuring} scheme, e.g. {@code Paths.get(URI.create("kuring:///tmp/data"))}
+ *     or {@code FileSystems.getFileSystem(URI.create("kuring:///")).getPath("/tmp/data")}</li>
+ *     <li>as the default provider for every path, with
+ *     {@code -Djava.nio.file.spi.DefaultFileSystemProvider=one.kuring.KuringFileSystemProvider} (JDK 9+),
+ *     older JDKs, e.g. 17, can't load the provider from a jar, its classes then have to come from a directory
+ *     listed on the class path ahead of all jars</li>
+ * </ul>
+ * Files are spread over a shared {@link EventExecutorGroup} of daemon executors created on first use,
+ * its size is set with the {@value #EXECUTORS_PROPERTY} system property and defaults to
+ * the number of available processors, at most 4. If io_uring isn't available, or a call is made on an event loop
+ * thread, the call is served by the default provider.
+ */
+public class KuringFileSystemProvider extends FileSystemProvider {
+    public static final String SCHEME = "kuring";
+    public static final String EXECUTORS_PROPERTY = "one.kuring.fs.executors";
+
+    private final FileSystemProvider delegate;
+    private final String scheme;
+    private final KuringFileSystem fileSystem;
+
+    // set while the thread is in a call served with io_uring, the class loading the call does,
+    // e.g. the natives being loaded or a jar being opened, comes back to the provider
+    private static final ThreadLocal<Boolean> IN_CALL = new ThreadLocal<>();
+
+    // classes of the libraries the calls served with io_uring need
+    private static final String[] RUNTIME_CLASSES = {
+            "kotlin.coroutines.Continuation",
+            "kotlinx.coroutines.sync.Semaphore",
+            "org.jctools.queues.MpscUnboundedArrayQueue",
+    };
+
+    // created on first use, null if io_uring isn't available
+    private volatile EventExecutorGroup group;
+    private volatile boolean unavailable;
+
+    /**
+     * Provider of the {@code kuring} scheme, installed through {@link java.util.ServiceLoader}.
+     */
+    public KuringFileSystemProvider() {
+        this(defaultProvider(), SCHEME);
+    }
+
+    /**
+     * Provider that replaces the given default provider, see {@code java.nio.file.spi.DefaultFileSystemProvider}.
+     */
+    public KuringFileSystemProvider(FileSystemProvider delegate) {
+        this(delegate, delegate.getScheme());
+    }
+
+    private KuringFileSystemProvider(FileSystemProvider delegate, String scheme) {
+        this.delegate = delegate;
+        this.scheme = scheme;
+        this.fileSystem = new KuringFileSystem(this, delegate.getFileSystem(URI.create("file:///")));
+    }
+
+    static FileSystemProvider defaultProvider() {
+        FileSystemProvider provider = FileSystems.getDefault().provider();
+        if (provider instanceof KuringFileSystemProvider) {
+            // installed as the default provider as well
+            return ((KuringFileSystemProvider) provider).delegate;
+        }
+        return provider;
+    }
+
+    private EventExecutorGroup group() {
+        EventExecutorGroup group = this.group;
+        if (group != null || unavailable) {
+            return group;
+        }
+        synchronized (this) {
+            if (this.group != null || unavailable) {
+                return this.group;
+            }
+            if (!runtimeLoadable()) {
+                return null;
+            }
+            try {
+                int size = Integer.getInteger(EXECUTORS_PROPERTY, Math.min(4, Runtime.getRuntime().availableProcessors()));
+                this.group = EventExecutorGroup.builder()
+                        .size(size)
+                        .executorBuilder(EventExecutor.builder().daemon())
+                        .build();
+            } catch (RuntimeException | LinkageError ex) {
+                // no io_uring, e.g. an old kernel or a seccomp filter
+                unavailable = true;
+            }
+            return this.group;
+        }
+    }
+
+    /**
+     * As the default provider the first calls come from the JDK opening the jars of the class path, a class
+     * of the jar being opened can't be loaded yet and a failed linkage would stick, so the calls go to
+     * the default provider until the libraries can be loaded.
+     */
+    private static boolean runtimeLoadable() {
+        ClassLoader loader = KuringFileSystemProvider.class.getClassLoader();
+        try {
+            for (String name : RUNTIME_CLASSES) {
+                Class.forName(name, false, loader);
+            }
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Enters a call served with io_uring, {@link #exit()} must follow.
+     *
+     * @return the executor to serve the file, null if the call has to go to the default provider
+     */
+    private EventExecutor enter(Path file) {
+        if (IN_CALL.get() != null) {
+            return null;
+        }
+        IN_CALL.set(Boolean.TRUE);
+        EventExecutorGroup group = group();
+        if (group == null) {
+            exit();
+            return null;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            if (group.get(i).inEventLoop()) {
+                // blocking the loop would deadlock it
+                exit();
+                return null;
+            }
+        }
+        return group.next(file.toAbsolutePath().normalize().toString());
+    }
+
+    private static void exit() {
+        IN_CALL.remove();
+    }
+
+    private Path unwrap(Path path) {
+        if (path instanceof KuringPath && path.getFileSystem() == fileSystem) {
+            return ((KuringPath) path).getDelegate();
+        }
+        if (path == null) {
+            throw new NullPointerException();
+        }
+        throw new ProviderMismatchException();
+    }
+
+    private void checkUri(URI uri) {
+        if (!scheme.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException("URI scheme is not '" + scheme + "'");
+        }
+    }
+
+    @Override
+    public String getScheme() {
+        return scheme;
+    }
+
+    /**
+     * There is only one file system, see {@link #getFileSystem(URI)}.
+     */
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        checkUri(uri);
+        throw new FileSystemAlreadyExistsException();
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        checkUri(uri);
+        return fileSystem;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        checkUri(uri);
+        if (SCHEME.equals(scheme)) {
+            String path = uri.getRawPath();
+            if (path == null || !path.startsWith("/")) {
+                throw new IllegalArgumentException("URI path is not absolute");
+            }
+            // the default provider reads a file URI without the empty authority as a java.io.File path,
+            // which would resolve it with the default file system
+            uri = URI.create("file://" + path);
+        }
+        return fileSystem.wrap(delegate.getPath(uri));
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options,
+                                              FileAttribute<?>... attrs) throws IOException {
+        return newFileChannel(path, options, attrs);
+    }
+
+    @Override
+    public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options,
+                                      FileAttribute<?>... attrs) throws IOException {
+        Path file = unwrap(path);
+        EventExecutor executor = enter(file);
+        if (executor != null) {
+            try {
+                return KuringFileChannel.open(file, options, executor, attrs);
+            } catch (UnsupportedOperationException ex) {
+                // an option or attribute only the default provider supports
+            } finally {
+                exit();
+            }
+        }
+        return delegate.newFileChannel(file, options, attrs);
+    }
+
+    /**
+     * Opens a {@link KuringAsynchronousFileChannel}, the executor service is ignored,
+     * handlers run on the event loop thread.
+     */
+    @Override
+    public AsynchronousFileChannel newAsynchronousFileChannel(Path path, Set<? extends OpenOption> options,
+                                                              ExecutorService executorService,
+                                                              FileAttribute<?>... attrs) throws IOException {
+        Path file = unwrap(path);
+        EventExecutor executor = enter(file);
+        if (executor != null) {
+            try {
+                return KuringAsynchronousFileChannel.open(file, options, executor, attrs);
+            } catch (UnsupportedOperationException ex) {
+                // an option or attribute only the default provider supports
+            } finally {
+                exit();
+            }
+        }
+        return delegate.newAsynchronousFileChannel(file, options, executorService, attrs);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type,
+                                                            LinkOption... options) throws IOException {
+        Path file = unwrap(path);
+        if (type == BasicFileAttributes.class) {
+            EventExecutor executor = enter(file);
+            if (executor != null) {
+                try {
+                    return (A) statx(file, executor, options);
+                } finally {
+                    exit();
+                }
+            }
+        }
+        return delegate.readAttributes(file, type, options);
+    }
+
+    private static BasicFileAttributes statx(Path file, EventExecutor executor, LinkOption... options) throws IOException {
+        int flags = 0;
+        for (LinkOption option : options) {
+            if (option == LinkOption.NOFOLLOW_LINKS) {
+                flags |= Native.AT_SYMLINK_NOFOLLOW;
+            }
+        }
+        long pathAddress = MemoryUtils.getStringPtr(file.toAbsolutePath().toString());
+        long statxBuffer = MemoryUtils.allocateMemory(StatxUtils.BUF_SIZE);
+        try {
+            CommandFuture future = new CommandFuture(executor);
+            AbstractFile.Companion.executeLimited(executor, Command.statx(
+                    pathAddress,
+                    flags,
+                    StatxFileAttributes.MASK,
+                    statxBuffer,
+                    executor,
+                    HandlerResultProvider.newInstance(executor, null, null, future)
+            ));
+            awaitUninterruptibly(future);
+            return new StatxFileAttributes(statxBuffer);
+        } catch (ErrnoException ex) {
+            throw ex.toFileSystemException(file.toString());
+        } finally {
+            MemoryUtils.freeMemory(statxBuffer);
+            MemoryUtils.freeMemory(pathAddress);
+        }
+    }
+
+    /**
+     * The kernel writes to memory of the operation until it completes, so an interrupt can't cut the wait short.
+     */
+    private static void awaitUninterruptibly(Future<?> future) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    future.get();
+                    return;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        return delegate.readAttributes(unwrap(path), attributes, options);
+    }
+
+    @Override
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        return delegate.getFileAttributeView(unwrap(path), type, options);
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+        delegate.setAttribute(unwrap(path), attribute, value, options);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        DirectoryStream<Path> stream = delegate.newDirectoryStream(unwrap(dir), entry -> filter.accept(fileSystem.wrap(entry)));
+        return new DirectoryStream<Path>() {
+            @Override
+            public Iterator<Path> iterator() {
+                Iterator<Path> iterator = stream.iterator();
+                return new Iterator<Path>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Path next() {
+                        return fileSystem.wrap(iterator.next());
+                    }
+                };
+            }
+
+            @Override
+            public void close() throws IOException {
+                stream.close();
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        delegate.createDirectory(unwrap(dir), attrs);
+    }
+
+    @Override
+    public void createSymbolicLink(Path link, Path target, FileAttribute<?>... attrs) throws IOException {
+        delegate.createSymbolicLink(unwrap(link), unwrap(target), attrs);
+    }
+
+    @Override
+    public void createLink(Path link, Path existing) throws IOException {
+        delegate.createLink(unwrap(link), unwrap(existing));
+    }
+
+    @Override
+    public Path readSymbolicLink(Path link) throws IOException {
+        return fileSystem.wrap(delegate.readSymbolicLink(unwrap(link)));
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        delegate.delete(unwrap(path));
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) throws IOException {
+        delegate.copy(unwrap(source), unwrap(target), options);
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) throws IOException {
+        delegate.move(unwrap(source), unwrap(target), options);
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) throws IOException {
+        return delegate.isSameFile(unwrap(path), unwrap(path2));
+    }
+
+    @Override
+    public boolean isHidden(Path path) throws IOException {
+        return delegate.isHidden(unwrap(path));
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) throws IOException {
+        return delegate.getFileStore(unwrap(path));
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        delegate.checkAccess(unwrap(path), modes);
+    }
+}
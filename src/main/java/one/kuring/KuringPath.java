@@ -0,0 +1,215 @@
+package one.kuring;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+
+/**
+ * Path of a {@link KuringFileSystem}, a path of the wrapped file system that reports the kuring file system as its own.
+ */
+final class KuringPath implements Path {
+    private final KuringFileSystem fileSystem;
+    private final Path delegate;
+
+    KuringPath(KuringFileSystem fileSystem, Path delegate) {
+        this.fileSystem = fileSystem;
+        this.delegate = delegate;
+    }
+
+    Path getDelegate() {
+        return delegate;
+    }
+
+    private Path wrap(Path path) {
+        return path == null ? null : new KuringPath(fileSystem, path);
+    }
+
+    private Path unwrap(Path path) {
+        if (path instanceof KuringPath) {
+            return ((KuringPath) path).delegate;
+        }
+        if (path == null) {
+            throw new NullPointerException();
+        }
+        throw new ProviderMismatchException();
+    }
+
+    @Override
+    public KuringFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return delegate.isAbsolute();
+    }
+
+    @Override
+    public Path getRoot() {
+        return wrap(delegate.getRoot());
+    }
+
+    @Override
+    public Path getFileName() {
+        return wrap(delegate.getFileName());
+    }
+
+    @Override
+    public Path getParent() {
+        return wrap(delegate.getParent());
+    }
+
+    @Override
+    public int getNameCount() {
+        return delegate.getNameCount();
+    }
+
+    @Override
+    public Path getName(int index) {
+        return wrap(delegate.getName(index));
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        return wrap(delegate.subpath(beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        return other instanceof KuringPath && delegate.startsWith(((KuringPath) other).delegate);
+    }
+
+    @Override
+    public boolean startsWith(String other) {
+        return delegate.startsWith(other);
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        return other instanceof KuringPath && delegate.endsWith(((KuringPath) other).delegate);
+    }
+
+    @Override
+    public boolean endsWith(String other) {
+        return delegate.endsWith(other);
+    }
+
+    @Override
+    public Path normalize() {
+        return wrap(delegate.normalize());
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        return wrap(delegate.resolve(unwrap(other)));
+    }
+
+    @Override
+    public Path resolve(String other) {
+        return wrap(delegate.resolve(other));
+    }
+
+    @Override
+    public Path resolveSibling(Path other) {
+        return wrap(delegate.resolveSibling(unwrap(other)));
+    }
+
+    @Override
+    public Path resolveSibling(String other) {
+        return wrap(delegate.resolveSibling(other));
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        return wrap(delegate.relativize(unwrap(other)));
+    }
+
+    @Override
+    public URI toUri() {
+        URI uri = delegate.toUri();
+        String scheme = fileSystem.provider().getScheme();
+        if (scheme.equals(uri.getScheme())) {
+            return uri;
+        }
+        try {
+            return new URI(scheme, uri.getAuthority(), uri.getPath(), uri.getQuery(), uri.getFragment());
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return wrap(delegate.toAbsolutePath());
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        return wrap(delegate.toRealPath(options));
+    }
+
+    /**
+     * The file of the wrapped path, {@link java.io.File} I/O bypasses io_uring.
+     */
+    @Override
+    public File toFile() {
+        // the wrapped path refuses once the kuring file system is the default one
+        return new File(delegate.toString());
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) throws IOException {
+        return delegate.register(watcher, events, modifiers);
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) throws IOException {
+        return delegate.register(watcher, events);
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        Iterator<Path> iterator = delegate.iterator();
+        return new Iterator<Path>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Path next() {
+                return wrap(iterator.next());
+            }
+        };
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return delegate.compareTo(unwrap(other));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof KuringPath
+                && ((KuringPath) other).fileSystem == fileSystem
+                && delegate.equals(((KuringPath) other).delegate);
+    }
+
+    @Override
+    public int hashCode() {
+        return delegate.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
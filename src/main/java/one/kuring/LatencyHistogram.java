@@ -0,0 +1,93 @@
+package one.kuring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds, in the spirit of HdrHistogram.
+ * Every power of two range is split into 64 buckets, so a value is reported with an error below 1.6%.
+ * Values are recorded by the event loop thread only, readers on any other thread see a consistent
+ * enough picture without locking, a value recorded concurrently with a read may or may not be counted.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    // written by the event loop thread only
+    private volatile long totalCount;
+    private volatile long sum;
+    private volatile long maxValue;
+
+    LatencyHistogram() {
+    }
+
+    /**
+     * Event loop thread only.
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        int index = index(value);
+        counts.lazySet(index, counts.get(index) + 1);
+        sum += value;
+        if (value > maxValue) {
+            maxValue = value;
+        }
+        totalCount++;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public double getMean() {
+        long count = totalCount;
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @param percentile in range [0, 100]
+     * @return the highest value that is equivalent to the value at the given percentile, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in range [0, 100]");
+        }
+        long count = totalCount;
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
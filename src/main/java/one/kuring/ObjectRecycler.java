@@ -0,0 +1,56 @@
+package one.kuring;
+
+import org.jctools.queues.MpmcArrayQueue;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Executor local pool of reusable objects.
+ * Objects are borrowed by any thread submitting a command and recycled once the command completes,
+ * which normally happens on the event loop thread. Both sides are lock free.
+ * When the pool is empty a new object is allocated and when it is full a recycled object is dropped,
+ * so once warmed up submit and complete allocate nothing as long as the number of objects in use
+ * stays within the capacity.
+ */
+class ObjectRecycler<T> {
+    private final Queue<T> free;
+    private final Function<ObjectRecycler<T>, T> factory;
+
+    ObjectRecycler(int capacity, Function<ObjectRecycler<T>, T> factory) {
+        this.free = new MpmcArrayQueue<>(Math.max(2, capacity));
+        this.factory = factory;
+    }
+
+    T borrow() {
+        T object = free.poll();
+        if (object == null) {
+            object = factory.apply(this);
+        }
+        return object;
+    }
+
+    void recycle(T object) {
+        free.offer(object);
+    }
+
+    /**
+     * Identifies a kind of pooled objects, every executor keeps its own recycler for each kind,
+     * see {@link EventExecutor#recycler(Kind)}.
+     */
+    static final class Kind<T> {
+        private static final AtomicInteger indexes = new AtomicInteger();
+
+        final int index = indexes.getAndIncrement();
+        final Function<ObjectRecycler<T>, T> factory;
+
+        /**
+         * @param factory creates a new object bound to the given recycler, the object returns itself
+         *                to that recycler when released
+         */
+        Kind(Function<ObjectRecycler<T>, T> factory) {
+            this.factory = factory;
+        }
+    }
+}
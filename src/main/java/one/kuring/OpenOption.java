@@ -15,7 +15,15 @@ public enum OpenOption {
     EXCL,
     NOATIME,
     SYNC,
-    DIRECT;
+    DIRECT,
+    /**
+     * Registers the file in the executor registered file table after it is opened,
+     * so all operations refer to it through IOSQE_FIXED_FILE. Falls back to the regular fd
+     * if the executor has no registered file table or the table is full.
+     *
+     * @see EventExecutor.Builder#withRegisteredFiles(int)
+     */
+    FIXED_FILE;
 
 
     static int toFlags(OpenOption... options) {
@@ -65,6 +73,9 @@ public enum OpenOption {
                     case DIRECT:
                         flags |= Native.O_DIRECT;
                         break;
+                    case FIXED_FILE:
+                        // not an open(2) flag
+                        break;
                 }
             }
         }
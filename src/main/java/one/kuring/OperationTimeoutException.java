@@ -0,0 +1,19 @@
+package one.kuring;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an operation submitted with a timeout doesn't complete in time and the kernel cancels it.
+ */
+public class OperationTimeoutException extends IOException {
+    private final long timeoutNanos;
+
+    OperationTimeoutException(long timeoutNanos) {
+        super(String.format("Operation timed out after %d ns", timeoutNanos));
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+}
@@ -0,0 +1,129 @@
+package one.kuring;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Result provider of the blocking file API. The submitting thread parks until the completion, handled on
+ * the event loop thread, stores the result and unparks it. A parked virtual thread doesn't hold its carrier.
+ * <p>
+ * Providers are pooled by the executor and returned to the pool by the waiting thread once it has read the result,
+ * so once warmed up an operation allocates nothing.
+ */
+final class ParkingResultProvider implements ResultProvider<Integer> {
+    private static final ObjectRecycler.Kind<ParkingResultProvider> KIND = new ObjectRecycler.Kind<>(ParkingResultProvider::new);
+
+    private final ObjectRecycler<ParkingResultProvider> recycler;
+
+    private EventExecutor executor;
+    private Thread waiter;
+    private int result;
+    private Throwable error;
+    // written last by the event loop thread, publishes result and error
+    private volatile boolean done;
+
+    private ParkingResultProvider(ObjectRecycler<ParkingResultProvider> recycler) {
+        this.recycler = recycler;
+    }
+
+    static ParkingResultProvider newInstance(EventExecutor executor) {
+        if (executor.inEventLoop()) {
+            // the loop would wait for itself
+            throw new IllegalStateException("Blocking operation on the event loop thread");
+        }
+        ParkingResultProvider provider = executor.recycler(KIND).borrow();
+        provider.executor = executor;
+        provider.waiter = Thread.currentThread();
+        return provider;
+    }
+
+    /**
+     * Submits the command, built with this provider, and parks until it completes.
+     * An interrupt asks the kernel to cancel the command, the thread still waits for the completion
+     * as the kernel may be using the buffers of the command, and the interrupt status is restored.
+     * A command still waiting for an in-flight permit stops waiting and fails without being submitted.
+     *
+     * @return the result of the command
+     * @throws InterruptedIOException if the command failed after an interrupt
+     */
+    int await(Command<?> command) throws IOException {
+        EventExecutor executor = this.executor;
+        // read before submitting, the command can complete and be reused right away
+        int epoch = command.getEpoch();
+        AbstractFile.Companion.executeLimited(executor, command);
+        boolean interrupted = false;
+        while (!done) {
+            LockSupport.park(this);
+            if (Thread.interrupted() && !interrupted) {
+                interrupted = true;
+                executor.cancel(command, epoch);
+            }
+        }
+        int result = this.result;
+        Throwable error = this.error;
+        recycle();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            if (error != null) {
+                InterruptedIOException ex = new InterruptedIOException();
+                ex.initCause(error);
+                throw ex;
+            }
+        }
+        if (error == null) {
+            return result;
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        throw new IOException(error);
+    }
+
+    @Override
+    public void onSuccess(int result) {
+        this.result = result;
+        complete();
+    }
+
+    @Override
+    public void onSuccess(Object object) {
+
+    }
+
+    @Override
+    public void onError(Throwable ex) {
+        this.error = ex;
+        complete();
+    }
+
+    private void complete() {
+        Thread waiter = this.waiter;
+        done = true;
+        LockSupport.unpark(waiter);
+    }
+
+    @Override
+    public Integer getInner() {
+        return null;
+    }
+
+    /**
+     * Nothing to do, the waiting thread returns the provider to the pool once it has read the result.
+     */
+    @Override
+    public void release() {
+    }
+
+    private void recycle() {
+        executor = null;
+        waiter = null;
+        result = 0;
+        error = null;
+        done = false;
+        recycler.recycle(this);
+    }
+}
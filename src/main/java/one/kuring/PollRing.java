@@ -1,7 +1,5 @@
 package one.kuring;
 
-import one.kuring.collections.IntObjectMap;
-
 class PollRing extends Ring {
     PollRing(int entries,
              int flags,
@@ -9,12 +7,16 @@ class PollRing extends Ring {
              int sqThreadCpu,
              int cqSize,
              int attachWqRingFd,
-             boolean withBufRing,
-             int bufRingBufSize,
-             int numOfBuffers,
-             IntObjectMap<Command<?>> commands
+             int[] bufRingBufSizes,
+             int[] bufRingSizes,
+             boolean[] bufRingIncremental,
+             int spareBuffers,
+             boolean directSubmission,
+             boolean metrics,
+             long slowOperationThresholdNanos,
+             CommandTable commands
     ) {
-        super(entries, flags, sqThreadIdle, sqThreadCpu, cqSize, attachWqRingFd, withBufRing, bufRingBufSize, numOfBuffers, commands);
+        super(entries, flags, sqThreadIdle, sqThreadCpu, cqSize, attachWqRingFd, bufRingBufSizes, bufRingSizes, bufRingIncremental, spareBuffers, directSubmission, metrics, slowOperationThresholdNanos, commands);
     }
 
     @Override
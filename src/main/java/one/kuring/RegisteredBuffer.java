@@ -0,0 +1,53 @@
+package one.kuring;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffer registered with the rings of an {@link EventExecutor}, borrowed with {@link EventExecutor#borrowRegisteredBuffer()}.
+ * Can only be used with files opened on the same executor, through {@code readFixed} and {@code writeFixed}.
+ * Closing it returns it to the pool, closing it again does nothing until it is borrowed again.
+ */
+public class RegisteredBuffer implements AutoCloseable {
+    private final ByteBuffer buffer;
+    private final long address;
+    private final int index;
+    private final RegisteredBufferPool pool;
+    // the same buffer is handed out again once released, a second close must not release it twice
+    private final AtomicBoolean borrowed = new AtomicBoolean();
+
+    RegisteredBuffer(ByteBuffer buffer, int index, RegisteredBufferPool pool) {
+        this.buffer = buffer;
+        this.address = MemoryUtils.getDirectBufferAddress(buffer);
+        this.index = index;
+        this.pool = pool;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    long getAddress() {
+        return address;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    EventExecutor getExecutor() {
+        return pool.getExecutor();
+    }
+
+    void onBorrow() {
+        borrowed.set(true);
+    }
+
+    @Override
+    public void close() {
+        if (borrowed.compareAndSet(true, false)) {
+            buffer.clear();
+            pool.release(this);
+        }
+    }
+}
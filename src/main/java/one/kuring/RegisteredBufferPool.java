@@ -0,0 +1,53 @@
+package one.kuring;
+
+import org.jctools.queues.MpmcArrayQueue;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+
+/**
+ * Fixed set of equally sized buffers carved out of one page aligned allocation and registered with
+ * IORING_REGISTER_BUFFERS, so READ_FIXED/WRITE_FIXED don't have to pin the pages on every operation.
+ */
+class RegisteredBufferPool {
+    private final EventExecutor executor;
+    private final ByteBuffer memory;
+    private final IovecArray iovecs;
+    private final Queue<RegisteredBuffer> free;
+
+    RegisteredBufferPool(int count, int bufferSize, EventExecutor executor) {
+        this.executor = executor;
+        this.memory = MemoryUtils.allocateAlignedByteBuffer(Math.multiplyExact(count, bufferSize), Native.getPageSize());
+        this.free = new MpmcArrayQueue<>(Math.max(2, count));
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            memory.limit((i + 1) * bufferSize).position(i * bufferSize);
+            buffers[i] = memory.slice();
+            free.offer(new RegisteredBuffer(buffers[i], i, this));
+        }
+        this.iovecs = new IovecArray(buffers);
+    }
+
+    void register(int ringFd) {
+        Native.ioUringRegister(ringFd, Native.IORING_REGISTER_BUFFERS, iovecs.getIovecArrayAddress(), iovecs.getSize());
+    }
+
+    /**
+     * @return free buffer or null if all buffers are in use
+     */
+    RegisteredBuffer borrow() {
+        RegisteredBuffer buffer = free.poll();
+        if (buffer != null) {
+            buffer.onBorrow();
+        }
+        return buffer;
+    }
+
+    void release(RegisteredBuffer buffer) {
+        free.offer(buffer);
+    }
+
+    EventExecutor getExecutor() {
+        return executor;
+    }
+}
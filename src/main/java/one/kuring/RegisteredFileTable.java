@@ -0,0 +1,80 @@
+package one.kuring;
+
+/**
+ * Sparse table of files registered with IORING_REGISTER_FILES, kept identical on every ring of an executor
+ * so a command can refer to a file by its slot whichever ring it is routed to.
+ * Using a slot with IOSQE_FIXED_FILE saves the fdget/fdput and the file refcount atomics on every operation.
+ * <p>
+ * Not thread safe, must only be accessed from the event loop thread.
+ */
+class RegisteredFileTable {
+    // struct io_uring_files_update { __u32 offset; __u32 resv; __aligned_u64 fds; }
+    private static final int UPDATE_OFFSET = 0;
+    private static final int UPDATE_RESV = 4;
+    private static final int UPDATE_FDS = 8;
+    private static final int UPDATE_SIZE = 16;
+
+    private final int[] ringFds;
+    private final int[] freeSlots;
+    private int freeCount;
+    private final long update = MemoryUtils.allocateMemory(UPDATE_SIZE);
+    private final long updateFd = MemoryUtils.allocateMemory(Integer.BYTES);
+
+    RegisteredFileTable(int size, int... ringFds) {
+        this.ringFds = ringFds;
+        this.freeSlots = new int[size];
+        for (int i = 0; i < size; i++) {
+            freeSlots[i] = size - 1 - i;
+        }
+        this.freeCount = size;
+
+        long fds = MemoryUtils.allocateMemory((long) size * Integer.BYTES);
+        try {
+            for (int i = 0; i < size; i++) {
+                MemoryUtils.putInt(fds + (long) i * Integer.BYTES, -1);
+            }
+            for (int ringFd : ringFds) {
+                Native.ioUringRegister(ringFd, Native.IORING_REGISTER_FILES, fds, size);
+            }
+        } finally {
+            MemoryUtils.freeMemory(fds);
+        }
+        MemoryUtils.putInt(update + UPDATE_RESV, 0);
+        MemoryUtils.putLong(update + UPDATE_FDS, updateFd);
+    }
+
+    /**
+     * @return slot the file was registered at or -1 if the table is full
+     */
+    int add(int fd) {
+        if (freeCount == 0) {
+            return -1;
+        }
+        int slot = freeSlots[--freeCount];
+        try {
+            set(slot, fd);
+        } catch (RuntimeException ex) {
+            freeSlots[freeCount++] = slot;
+            throw ex;
+        }
+        return slot;
+    }
+
+    void remove(int slot) {
+        set(slot, -1);
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void set(int slot, int fd) {
+        MemoryUtils.putInt(update + UPDATE_OFFSET, slot);
+        MemoryUtils.putInt(updateFd, fd);
+        for (int ringFd : ringFds) {
+            Native.ioUringRegister(ringFd, Native.IORING_REGISTER_FILES_UPDATE, update, 1);
+        }
+    }
+
+    void close() {
+        MemoryUtils.freeMemory(update);
+        MemoryUtils.freeMemory(updateFd);
+    }
+}
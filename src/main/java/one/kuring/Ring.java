@@ -1,29 +1,93 @@
 package one.kuring;
 
-import one.kuring.collections.IntObjectMap;
+import org.jctools.queues.MpscUnboundedArrayQueue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 abstract class Ring {
+    private static final int TIMESPEC_SIZE = 16;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
     final Uring ring;
     final CompletionQueue completionQueue;
     final SubmissionQueue submissionQueue;
-    private final IntObjectMap<Command<?>> commands;
-    private final CompletionCallback callback = this::handle;
+    private final CommandTable commands;
+    private final CompletionCallback callback = new CompletionCallback() {
+        @Override
+        public void handle(int res, int flags, long userData) {
+            Ring.this.handle(res, flags, userData);
+        }
+
+        @Override
+        public void onBatchEnd() {
+            batchNanos = 0;
+            // the batch may have freed command table slots, don't make pending commands wait for the next drain
+            addPendingCommands();
+        }
+    };
+
+    // provided buffer groups, sorted by buffer size
+    private final IoUringBufRing[] bufRings;
+    // closed provided buffer read results from any thread, given back to their groups by the event loop
+    private final Queue<BufRingResult> recycled = new MpscUnboundedArrayQueue<>(64);
 
-    private final IoUringBufRing bufRing;
+    // __kernel_timespec of each link timeout sqe, indexed by sq slot, the kernel copies it when consuming the sqe
+    private final long timespecs;
 
-    Ring(int entries, int flags, int sqThreadIdle, int sqThreadCpu, int cqSize, int attachWqRingFd, boolean withBufRing, int bufRingBufSize, int numOfBuffers, IntObjectMap<Command<?>> commands) {
+    // commands of the sqes claimed by other threads, indexed by sq slot, null unless direct submission is enabled
+    private final Command<?>[] claimedCommands;
+
+    // latency per opcode, null unless metrics are enabled
+    private final AtomicReferenceArray<LatencyHistogram> latencies;
+    // completion time shared by the whole cqe batch, taken on first use
+    private long batchNanos;
+    // flight recorder events, see FlightRecorderEvents
+    private final boolean flightRecorder;
+    private final long slowOperationThresholdNanos;
+    private final String name = getClass().getSimpleName();
+
+    // false on kernels that drop completions which don't fit into a full cq instead of holding them back
+    private final boolean noDrop;
+    // the kernel flags pending task work, with IORING_SETUP_DEFER_TASKRUN it only posts completions while entered
+    private final boolean taskRunFlag;
+    // set up with IORING_SETUP_R_DISABLED, nothing can be submitted before the event loop enables it
+    private final boolean disabled;
+    // written by the event loop thread only
+    private volatile long cqOverflows;
+
+    // commands waiting for a free command table slot or submission queue entry, in arrival order
+    private final ArrayDeque<Command<?>> pending = new ArrayDeque<>();
+    // cancel requests that didn't fit into the submission queue, sent ahead of the pending commands
+    private final ArrayDeque<PendingCancel> pendingCancels = new ArrayDeque<>();
+
+    Ring(int entries, int flags, int sqThreadIdle, int sqThreadCpu, int cqSize, int attachWqRingFd, int[] bufRingBufSizes, int[] bufRingSizes, boolean[] bufRingIncremental, int spareBuffers, boolean directSubmission, boolean metrics, long slowOperationThresholdNanos, CommandTable commands) {
         this.commands = commands;
+        this.latencies = metrics ? new AtomicReferenceArray<>(256) : null;
+        this.flightRecorder = slowOperationThresholdNanos >= 0;
+        this.slowOperationThresholdNanos = slowOperationThresholdNanos;
         ring = Native.setupIoUring(entries, flags, sqThreadIdle, sqThreadCpu, cqSize, attachWqRingFd);
         submissionQueue = ring.getSubmissionQueue();
         completionQueue = ring.getCompletionQueue();
+        noDrop = ring.hasFeature(Native.IORING_FEAT_NODROP);
+        taskRunFlag = (flags & Native.IORING_SETUP_TASKRUN_FLAG) != 0;
+        disabled = (flags & Native.IORING_SETUP_R_DISABLED) != 0;
 
-        if (withBufRing) {
-            bufRing = new IoUringBufRing(ring.getRingFd(), bufRingBufSize, numOfBuffers);
+        if (directSubmission) {
+            submissionQueue.enableClaims();
+            claimedCommands = new Command<?>[submissionQueue.getRingEntries()];
         } else {
-            bufRing = null;
+            claimedCommands = null;
+        }
+        timespecs = MemoryUtils.allocateMemory((long) submissionQueue.getRingEntries() * TIMESPEC_SIZE);
+
+        bufRings = new IoUringBufRing[bufRingBufSizes.length];
+        for (int i = 0; i < bufRings.length; i++) {
+            bufRings[i] = new IoUringBufRing(ring.getRingFd(), bufRingBufSizes[i], bufRingSizes[i], bufRingIncremental[i], spareBuffers);
         }
     }
 
@@ -32,26 +96,166 @@ abstract class Ring {
     }
 
     private void handle(int res, int flags, long data) {
-        Command<?> command = commands.remove((int) data);
+        Command<?> command = commands.remove(data);
         if (command != null) {
+            IoUringBufRing bufRing = command.getBufRing();
+            if (command.getSubmitNanos() != 0 && !(res == -Native.ENOBUFS && bufRing != null)) {
+                recordLatency(command, res);
+            }
             if (res >= 0) {
                 if (isIoringCqeFBufferSet(flags)) {
                     int bufferId = flags >> 16;
-                    ByteBuffer buffer = bufRing.getBuffer(bufferId);
+                    boolean more = (flags & Native.IORING_CQE_F_BUF_MORE) != 0;
+                    final ByteBuffer buffer;
+                    if (bufRing.isIncremental()) {
+                        buffer = bufRing.consume(bufferId, res, more);
+                    } else {
+                        buffer = bufRing.getBuffer(bufferId);
+                        buffer.position(res);
+                    }
+                    command.complete(BufRingResult.newInstance(buffer, res, bufferId, more, bufRing, this, command.getExecutor()));
+                } else if (command.getFallbackBuffer() != null) {
+                    ByteBuffer buffer = command.getFallbackBuffer();
                     buffer.position(res);
-                    command.complete(new BufRingResult(buffer, res, bufferId, this));
+                    command.complete(BufRingResult.newInstance(buffer, res, -1, false, bufRing, this, command.getExecutor()));
                 } else {
                     command.complete(res);
                 }
+            } else if (res == -Native.ENOBUFS && bufRing != null) {
+                // the group had no buffer left for the read, retry it with a spare buffer or once one is recycled
+                onBufRingExhausted(command);
+                return;
+            } else if (command.getTimeoutNanos() > 0 && (res == -Native.ECANCELED || res == -Native.EINTR)) {
+                // cancelled by the linked timeout, or interrupted in an io worker by it
+                command.error(new OperationTimeoutException(command.getTimeoutNanos()));
+            } else {
+                if (command.getFallbackBuffer() != null) {
+                    bufRing.recycleSpareBuffer(command.getFallbackBuffer());
+                }
+                command.error(new ErrnoException(-res));
+            }
+            if (bufRing != null && bufRing.isIncremental()) {
+                startNextRead(bufRing);
+            }
+        }
+    }
+
+    private void recordLatency(Command<?> command, int res) {
+        if (batchNanos == 0) {
+            batchNanos = System.nanoTime();
+        }
+        long latency = batchNanos - command.getSubmitNanos();
+        byte op = command.getOp();
+        if (latencies != null) {
+            LatencyHistogram histogram = latencies.get(op & 0xFF);
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                latencies.set(op & 0xFF, histogram);
+            }
+            histogram.record(latency);
+        }
+        if (flightRecorder && latency >= slowOperationThresholdNanos) {
+            FlightRecorderEvents.slowOperation(name, op, res, command.getLength(), latency);
+        }
+    }
+
+    LatencyHistogram latency(byte op) {
+        return latencies.get(op & 0xFF);
+    }
+
+    private void startNextRead(IoUringBufRing bufRing) {
+        Command<?> next = bufRing.finishRead();
+        if (next != null) {
+            addCommand(next);
+        }
+    }
+
+    /**
+     * All buffers of the group are checked out, fall back to a spare buffer or wait for one to be recycled.
+     */
+    private void onBufRingExhausted(Command<?> command) {
+        IoUringBufRing bufRing = command.getBufRing();
+        command.setUserData(CommandTable.NO_SLOT);
+        ByteBuffer spare = bufRing.onExhausted();
+        if (spare != null) {
+            command.useFallbackBuffer(spare);
+            addCommand(command);
+        } else {
+            bufRing.addWaiter(command);
+        }
+    }
+
+    /**
+     * Queues the buffer of the result to be given back to its group, can be called from any thread.
+     */
+    void addRecycled(BufRingResult result) {
+        recycled.add(result);
+    }
+
+    boolean hasRecycled() {
+        return !recycled.isEmpty();
+    }
+
+    /**
+     * Gives the queued buffers back to their groups, publishing each group tail once, and lets waiting reads retry.
+     * Event loop thread only.
+     *
+     * @return number of buffers given back
+     */
+    int recycleBuffers() {
+        if (recycled.isEmpty()) {
+            return 0;
+        }
+        int count = 0;
+        BufRingResult result;
+        while ((result = recycled.poll()) != null) {
+            IoUringBufRing bufRing = result.getBufRing();
+            if (result.getBufferId() >= 0) {
+                bufRing.recycleBuffer(result.getBufferId());
             } else {
-                command.error(new IOException(String.format("Error code: %d; message: %s", -res, Native.decodeErrno(res))));
+                bufRing.recycleSpareBuffer(result.getBuffer());
+            }
+            result.release();
+            count++;
+        }
+        for (IoUringBufRing bufRing : bufRings) {
+            // a waiter that still finds the group empty is parked again
+            int returned = bufRing.publishRecycled();
+            for (int i = 0; i < returned; i++) {
+                Command<?> waiter = bufRing.pollWaiter();
+                if (waiter == null) {
+                    break;
+                }
+                addCommand(waiter);
             }
         }
+        return count;
     }
 
     void close() {
+        // buffer groups are unregistered through the ring fd
+        for (IoUringBufRing bufRing : bufRings) {
+            Command<?> waiter;
+            while ((waiter = bufRing.pollWaiter()) != null) {
+                waiter.error(new IOException("Event loop is stopped"));
+            }
+            while ((waiter = bufRing.pollQueuedRead()) != null) {
+                waiter.error(new IOException("Event loop is stopped"));
+            }
+            bufRing.close();
+        }
         ring.close();
-        bufRing.close();
+        MemoryUtils.freeMemory(timespecs);
+    }
+
+    /**
+     * Enables a ring set up disabled, a IORING_SETUP_SINGLE_ISSUER ring then only accepts submissions
+     * and registrations from the calling thread. Event loop thread only, before anything gets submitted.
+     */
+    void enable() {
+        if (disabled) {
+            Native.ioUringRegister(ring.getRingFd(), Native.IORING_REGISTER_ENABLE_RINGS, 0, 0);
+        }
     }
 
     abstract void park();
@@ -59,19 +263,142 @@ abstract class Ring {
     abstract void unpark();
 
     boolean hasCompletions() {
-        return completionQueue.hasCompletions();
+        return completionQueue.hasCompletions() || taskRunFlag && submissionQueue.isTaskRun()
+                || noDrop && submissionQueue.isCqOverflow();
     }
 
     int processCompletedTasks() {
-        return completionQueue.processEvents(callback);
+        int completions = processCompletions();
+        if (taskRunFlag && submissionQueue.isTaskRun()) {
+            // completions are waiting for the loop to run their task work, don't leave them for the next submit
+            submissionQueue.getEvents();
+            completions += processCompletions();
+        }
+        if (noDrop && submissionQueue.isCqOverflow()) {
+            // the cq ran full during a burst, the rest of the completions are held back in the kernel
+            // until it gets entered, don't leave them waiting for the next submit
+            cqOverflows++;
+            int res;
+            int flushed;
+            do {
+                res = submissionQueue.getEvents();
+                flushed = processCompletions();
+                completions += flushed;
+                // if the enter failed (EINTR, EBUSY) or nothing came out of the kernel,
+                // the overflow flag is still set and hasCompletions() brings the loop back here on its next pass
+            } while (res >= 0 && flushed > 0 && submissionQueue.isCqOverflow());
+        }
+        return completions;
+    }
+
+    /**
+     * Number of times the completion queue ran full and the completions held back by the kernel had to be flushed.
+     */
+    long getCqOverflows() {
+        return cqOverflows;
+    }
+
+    /**
+     * Number of completions the kernel dropped, the operations they belong to never complete.
+     */
+    long getCqDropped() {
+        return completionQueue.getDropped() & 0xFFFFFFFFL;
+    }
+
+    private int processCompletions() {
+        if (!flightRecorder) {
+            return completionQueue.processEvents(callback);
+        }
+        if (!completionQueue.hasCompletions()) {
+            return 0;
+        }
+        Object event = FlightRecorderEvents.beginCompletionBatch();
+        int completions = completionQueue.processEvents(callback);
+        FlightRecorderEvents.commitCompletionBatch(event, name, completions);
+        return completions;
+    }
+
+    /**
+     * Registers the command and enqueues its sqe, or parks it in the pending list when the command table
+     * or the submission queue has no room left, to be retried as completions come in. Event loop thread only.
+     */
+    void addCommand(Command<?> command) {
+        IoUringBufRing bufRing = command.getBufRing();
+        if (bufRing != null && bufRing.isIncremental() && !bufRing.startRead(command)) {
+            // queued behind the read in flight of the group
+            return;
+        }
+        // keep the submission order, nothing can overtake an already pending command
+        if (!pending.isEmpty() || !tryAddCommand(command)) {
+            pending.add(command);
+        }
+    }
+
+    /**
+     * Moves pending commands into the submission queue for as long as there is room. Event loop thread only.
+     *
+     * @return number of commands moved
+     */
+    int addPendingCommands() {
+        int added = addPendingCancels();
+        Command<?> command;
+        while ((command = pending.peek()) != null && tryAddCommand(command)) {
+            pending.poll();
+            added++;
+        }
+        return added;
+    }
+
+    boolean hasPendingCommands() {
+        return !pending.isEmpty() || !pendingCancels.isEmpty();
+    }
+
+    /**
+     * @return true if the command was still waiting in the pending list and has been taken out of it
+     */
+    boolean removePendingCommand(Command<?> command) {
+        IoUringBufRing bufRing = command.getBufRing();
+        if (bufRing != null) {
+            if (bufRing.removeQueuedRead(command)) {
+                return true;
+            }
+            if (bufRing.removeWaiter(command)) {
+                if (bufRing.isIncremental()) {
+                    startNextRead(bufRing);
+                }
+                return true;
+            }
+        }
+        if (pending.remove(command)) {
+            if (bufRing != null && bufRing.isIncremental()) {
+                startNextRead(bufRing);
+            }
+            return true;
+        }
+        return false;
     }
 
-    void recycleBuffer(int bufferId) {
-        bufRing.recycleBuffer(bufferId);
+    private boolean tryAddCommand(Command<?> command) {
+        long opId = commands.add(command);
+        if (opId == CommandTable.NO_SLOT) {
+            return false;
+        }
+        if (!addOperation(command, opId)) {
+            commands.remove(opId);
+            command.setUserData(CommandTable.NO_SLOT);
+            return false;
+        }
+        return true;
     }
 
-    <T> void addOperation(Command<T> op, long opId) {
-        submissionQueue.enqueueSqe(
+    /**
+     * @return false if the submission queue stays full even after submitting
+     */
+    <T> boolean addOperation(Command<T> op, long opId) {
+        if (op.getTimeoutNanos() > 0) {
+            return addLinkedOperation(op, opId);
+        }
+        return enqueueSqe(
                 op.getOp(),
                 op.getFlags(),
                 op.getRwFlags(),
@@ -85,27 +412,260 @@ abstract class Ring {
         );
     }
 
+    /**
+     * Enqueues the operation followed by a link timeout, the pair has to be consecutive in the submission
+     * queue and submitted together. The completion of the timeout itself is ignored.
+     */
+    private <T> boolean addLinkedOperation(Command<T> op, long opId) {
+        long position = reserve(2);
+        if (position == -1) {
+            return false;
+        }
+        long timespec = timespecs + ((position + 1) & (submissionQueue.getRingEntries() - 1)) * TIMESPEC_SIZE;
+        MemoryUtils.putLong(timespec, op.getTimeoutNanos() / NANOS_PER_SECOND);
+        MemoryUtils.putLong(timespec + Long.BYTES, op.getTimeoutNanos() % NANOS_PER_SECOND);
+        if (claimedCommands == null) {
+            submissionQueue.enqueueSqe(op.getOp(), op.getFlags() | Native.IOSQE_IO_LINK, op.getRwFlags(), op.getFd(),
+                    op.getBufferAddress(), op.getLength(), op.getOffset(), opId, op.getBufIndex(), op.getFileIndex());
+            submissionQueue.enqueueSqe(Native.IORING_OP_LINK_TIMEOUT, 0, 0, -1,
+                    timespec, 1, 0, CommandTable.NO_SLOT, 0, 0);
+        } else {
+            submissionQueue.writeClaimedSqe(position, op.getOp(), op.getFlags() | Native.IOSQE_IO_LINK, op.getRwFlags(),
+                    op.getFd(), op.getBufferAddress(), op.getLength(), op.getOffset(), opId, op.getBufIndex(), op.getFileIndex());
+            submissionQueue.writeClaimedSqe(position + 1, Native.IORING_OP_LINK_TIMEOUT, 0, 0, -1,
+                    timespec, 1, 0, CommandTable.NO_SLOT, 0, 0);
+            submissionQueue.publishClaim(position);
+            submissionQueue.publishClaim(position + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Asks the kernel to cancel the command, which must have its command table slot, the completion of
+     * the cancel request itself is ignored. Event loop thread only.
+     * If the submission queue stays full the request waits and is sent before the pending commands.
+     */
+    void addCancel(Command<?> command) {
+        if (!pendingCancels.isEmpty() || !enqueueCancel(command.getUserData())) {
+            pendingCancels.add(new PendingCancel(command, command.getEpoch()));
+        }
+    }
+
+    private int addPendingCancels() {
+        int added = 0;
+        PendingCancel cancel;
+        while ((cancel = pendingCancels.peek()) != null) {
+            Command<?> command = cancel.command;
+            // a command that completed meanwhile may have handed its slot to another one
+            if (command.getEpoch() == cancel.epoch && command.getUserData() != CommandTable.NO_SLOT) {
+                if (!enqueueCancel(command.getUserData())) {
+                    break;
+                }
+                added++;
+            }
+            pendingCancels.poll();
+        }
+        return added;
+    }
+
+    private boolean enqueueCancel(long userData) {
+        return enqueueSqe(Native.IORING_OP_ASYNC_CANCEL, 0, 0, -1, userData, 0, 0, CommandTable.NO_SLOT, 0, 0);
+    }
+
+    private boolean enqueueSqe(byte op, int flags, int rwFlags, int fd, long bufferAddress, int length, long offset,
+                               long userData, int bufIndex, int fileIndex) {
+        long position = reserve(1);
+        if (position == -1) {
+            return false;
+        }
+        if (claimedCommands == null) {
+            submissionQueue.enqueueSqe(op, flags, rwFlags, fd, bufferAddress, length, offset, userData, bufIndex, fileIndex);
+        } else {
+            submissionQueue.writeClaimedSqe(position, op, flags, rwFlags, fd, bufferAddress, length, offset, userData, bufIndex, fileIndex);
+            submissionQueue.publishClaim(position);
+        }
+        return true;
+    }
+
+    /**
+     * Makes room for count consecutive sqes, submitting what is already queued if needed.
+     * In direct submission mode the sqes are claimed and have to be published by the caller.
+     *
+     * @return position of the first sqe or -1 if the queue is still full
+     */
+    private long reserve(int count) {
+        if (claimedCommands == null) {
+            if (submissionQueue.remaining() < count) {
+                submitIo();
+                if (submissionQueue.remaining() < count) {
+                    return -1;
+                }
+            }
+            return submissionQueue.getTail();
+        }
+        long position = submissionQueue.claim(count);
+        if (position == -1) {
+            flushClaimedOperations();
+            submitIo();
+            position = submissionQueue.claim(count);
+        }
+        return position;
+    }
+
+    /**
+     * Writes the sqe of the command straight into the submission queue, can be called from any thread
+     * when direct submission is enabled. The command gets its id once the event loop flushes the sqe.
+     *
+     * @return false if the submission queue is full or closed, the command has to go through the task queue then
+     */
+    <T> boolean tryAddOperation(Command<T> op) {
+        long position = submissionQueue.claim();
+        if (position == -1) {
+            return false;
+        }
+        claimedCommands[(int) position & (claimedCommands.length - 1)] = op;
+        submissionQueue.writeClaimedSqe(
+                position,
+                op.getOp(),
+                op.getFlags(),
+                op.getRwFlags(),
+                op.getFd(),
+                op.getBufferAddress(),
+                op.getLength(),
+                op.getOffset(),
+                CommandTable.NO_SLOT,
+                op.getBufIndex(),
+                op.getFileIndex()
+        );
+        submissionQueue.publishClaim(position);
+        return true;
+    }
+
+    /**
+     * Moves the sqes published by producers under the submission queue tail, in claim order,
+     * and registers their commands. Event loop thread only.
+     */
+    int flushClaimedOperations() {
+        if (claimedCommands == null) {
+            return 0;
+        }
+        int flushed = 0;
+        while (submissionQueue.isClaimPublished()) {
+            int slot = submissionQueue.getTail() & (claimedCommands.length - 1);
+            Command<?> command = claimedCommands[slot];
+            flushed++;
+            if (command == null) {
+                // written by the event loop itself, already has its id
+                submissionQueue.advanceTail();
+                continue;
+            }
+            claimedCommands[slot] = null;
+            if (command.isCancelled()) {
+                // the sqe can't be taken back, the kernel completes it as an ignored nop
+                submissionQueue.discardClaim(CommandTable.NO_SLOT);
+                submissionQueue.advanceTail();
+                command.error(new CancellationException("Cancelled before submission"));
+                continue;
+            }
+            // commands already pending came first, the claimed one can't overtake them
+            long opId = pending.isEmpty() ? commands.add(command) : CommandTable.NO_SLOT;
+            if (opId == CommandTable.NO_SLOT) {
+                // the sqe can't be taken back, let the kernel complete it as an ignored nop and retry the command later
+                submissionQueue.discardClaim(CommandTable.NO_SLOT);
+                submissionQueue.advanceTail();
+                pending.add(command);
+            } else {
+                submissionQueue.setClaimUserData(opId);
+                submissionQueue.advanceTail();
+            }
+        }
+        return flushed;
+    }
+
+    boolean hasClaimedOperations() {
+        return submissionQueue.hasClaims();
+    }
+
+    void closeClaims() {
+        submissionQueue.closeClaims();
+    }
+
     void submitIo() {
-        submissionQueue.submit(0);
+        submit(false);
+    }
+
+    /**
+     * Submits and reaps completions of an io poll ring, which only get posted while the kernel is entered.
+     */
+    void submitAndPoll() {
+        submit(true);
+    }
+
+    private void submit(boolean poll) {
+        if (!flightRecorder) {
+            submit(submissionQueue, poll);
+            return;
+        }
+        Object event = FlightRecorderEvents.beginEnter();
+        long enterCalls = submissionQueue.getEnterCalls();
+        int submitted = submit(submissionQueue, poll);
+        FlightRecorderEvents.commitEnter(event, name, submitted, submissionQueue.getEnterCalls() != enterCalls);
+    }
+
+    private static int submit(SubmissionQueue submissionQueue, boolean poll) {
+        return poll ? submissionQueue.submit() : submissionQueue.submit(0);
     }
 
     boolean hasInKernel() {
         return submissionQueue.getTail() != completionQueue.getHead();
     }
 
-    int getBufRingId() {
-        return bufRing.getId();
+    /**
+     * @return the group with the smallest buffers that still fit length bytes, or the group with
+     * the largest buffers if none does
+     */
+    IoUringBufRing selectBufRing(int length) {
+        for (IoUringBufRing bufRing : bufRings) {
+            if (bufRing.getBufferSize() >= length) {
+                return bufRing;
+            }
+        }
+        return bufRings[bufRings.length - 1];
+    }
+
+    long bufRingExhausted(int bufferSize) {
+        for (IoUringBufRing bufRing : bufRings) {
+            if (bufRing.getBufferSize() == bufferSize) {
+                return bufRing.getExhausted();
+            }
+        }
+        return 0;
     }
 
-    int getBufferLength() {
-        return bufRing.getBufferSize();
+    long bufRingFallbacks(int bufferSize) {
+        for (IoUringBufRing bufRing : bufRings) {
+            if (bufRing.getBufferSize() == bufferSize) {
+                return bufRing.getFallbacks();
+            }
+        }
+        return 0;
     }
 
     boolean isBufRingInitialized() {
-        return bufRing != null;
+        return bufRings.length > 0;
     }
 
     boolean hasPending() {
         return submissionQueue.hasPending();
     }
+
+    private static final class PendingCancel {
+        final Command<?> command;
+        final int epoch;
+
+        PendingCancel(Command<?> command, int epoch) {
+            this.command = command;
+            this.epoch = epoch;
+        }
+    }
 }
@@ -1,7 +1,5 @@
 package one.kuring;
 
-import one.kuring.collections.IntObjectMap;
-
 class SleepableRing extends Ring {
     private final int eventFd;
     private final long eventFdBuffer;
@@ -13,15 +11,19 @@ class SleepableRing extends Ring {
                   int sqThreadCpu,
                   int cqSize,
                   int attachWqRingFd,
-                  boolean withBufRing,
-                  int bufRingBufSize,
-                  int numOfBuffers,
+                  int[] bufRingBufSizes,
+                  int[] bufRingSizes,
+                  boolean[] bufRingIncremental,
+                  int spareBuffers,
                   int eventFd,
                   long eventFdBuffer,
                   EventExecutor executor,
-                  IntObjectMap<Command<?>> commands
+                  boolean directSubmission,
+                  boolean metrics,
+                  long slowOperationThresholdNanos,
+                  CommandTable commands
     ) {
-        super(entries, flags, sqThreadIdle, sqThreadCpu, cqSize, attachWqRingFd, withBufRing, bufRingBufSize, numOfBuffers, commands);
+        super(entries, flags, sqThreadIdle, sqThreadCpu, cqSize, attachWqRingFd, bufRingBufSizes, bufRingSizes, bufRingIncremental, spareBuffers, directSubmission, metrics, slowOperationThresholdNanos, commands);
         this.eventFd = eventFd;
         this.eventFdBuffer = eventFdBuffer;
         this.executor = executor;
@@ -0,0 +1,105 @@
+package one.kuring;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BasicFileAttributes} read with IORING_OP_STATX, see {@link KuringFileSystemProvider}.
+ */
+final class StatxFileAttributes implements BasicFileAttributes {
+    static final int MASK = Native.STATX_BASIC_STATS | Native.STATX_BTIME;
+
+    private final int mode;
+    private final long size;
+    private final long accessTimeNanos;
+    private final long modificationTimeNanos;
+    private final long birthTimeNanos;
+    private final Key key;
+
+    StatxFileAttributes(long statxBuffer) {
+        this.mode = StatxUtils.getMode(statxBuffer);
+        this.size = StatxUtils.getSize(statxBuffer);
+        this.accessTimeNanos = StatxUtils.getAccessTimeNanos(statxBuffer);
+        this.modificationTimeNanos = StatxUtils.getModificationTimeNanos(statxBuffer);
+        this.birthTimeNanos = StatxUtils.getBirthTimeNanos(statxBuffer);
+        this.key = new Key(StatxUtils.getDevice(statxBuffer), StatxUtils.getInode(statxBuffer));
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return FileTime.from(modificationTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return FileTime.from(accessTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The birth time if the filesystem records it, the last modified time otherwise.
+     */
+    @Override
+    public FileTime creationTime() {
+        return birthTimeNanos >= 0 ? FileTime.from(birthTimeNanos, TimeUnit.NANOSECONDS) : lastModifiedTime();
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return (mode & Native.S_IFMT) == Native.S_IFREG;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return (mode & Native.S_IFMT) == Native.S_IFDIR;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return (mode & Native.S_IFMT) == Native.S_IFLNK;
+    }
+
+    @Override
+    public boolean isOther() {
+        return !isRegularFile() && !isDirectory() && !isSymbolicLink();
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Object fileKey() {
+        return key;
+    }
+
+    private static final class Key {
+        private final long device;
+        private final long inode;
+
+        Key(long device, long inode) {
+            this.device = device;
+            this.inode = inode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return device == other.device && inode == other.inode;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(device) * 31 + Long.hashCode(inode);
+        }
+
+        @Override
+        public String toString() {
+            return "(dev=" + Long.toHexString(device) + ",ino=" + inode + ")";
+        }
+    }
+}
@@ -16,6 +16,12 @@ class StatxUtils {
     private static final int STX_SIZE = 40; // __u64
     private static final int STX_BLOCKS = 48; // __u64
     private static final int STX_ATTRIBUTES_MASK = 56; // __u64
+    // struct statx_timestamp { __s64 tv_sec; __u32 tv_nsec; __s32 __reserved; }
+    private static final int STX_ATIME = 64;
+    private static final int STX_BTIME = 80;
+    private static final int STX_MTIME = 112;
+    private static final int STX_DEV_MAJOR = 136; // __u32
+    private static final int STX_DEV_MINOR = 140; // __u32
 
 
     public static long getSize(long buf) {
@@ -26,6 +32,44 @@ class StatxUtils {
     }
 
 
+    public static int getMode(long buf) {
+        return MemoryUtils.getShort(buf + STX_MODE) & 0xffff;
+    }
+
+    public static long getInode(long buf) {
+        return MemoryUtils.getLong(buf + STX_INO);
+    }
+
+    /**
+     * @return the device the file is on, as the kernel dev_t encodes it
+     */
+    public static long getDevice(long buf) {
+        long major = MemoryUtils.getInt(buf + STX_DEV_MAJOR) & 0xffffffffL;
+        long minor = MemoryUtils.getInt(buf + STX_DEV_MINOR) & 0xffffffffL;
+        return (major << 32) | minor;
+    }
+
+    public static long getAccessTimeNanos(long buf) {
+        return getTimeNanos(buf, STX_ATIME);
+    }
+
+    public static long getModificationTimeNanos(long buf) {
+        return getTimeNanos(buf, STX_MTIME);
+    }
+
+    /**
+     * @return birth time, or -1 if the filesystem doesn't record it
+     */
+    public static long getBirthTimeNanos(long buf) {
+        return isFlagSet(buf, Native.STATX_BTIME) ? getTimeNanos(buf, STX_BTIME) : -1;
+    }
+
+    private static long getTimeNanos(long buf, int offset) {
+        long seconds = MemoryUtils.getLong(buf + offset);
+        long nanos = MemoryUtils.getInt(buf + offset + 8) & 0xffffffffL;
+        return seconds * 1_000_000_000L + nanos;
+    }
+
     private static boolean isFlagSet(long buf, int flag) {
         return (MemoryUtils.getInt(buf) & flag) == flag;
     }
@@ -0,0 +1,12 @@
+package one.kuring;
+
+/**
+ * Told about operations the kernel hasn't completed within the watchdog threshold,
+ * see {@link EventExecutor.Builder#withStuckOperationWatchdog(long, java.util.concurrent.TimeUnit, boolean, StuckOperationListener)}.
+ * Called on the event loop thread, once per operation, must not block.
+ */
+@FunctionalInterface
+public interface StuckOperationListener {
+
+    void onStuckOperation(InFlightOperation operation);
+}
@@ -1,15 +1,30 @@
 package one.kuring
 
-import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.DelicateCoroutinesApi
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.GlobalScope
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+import kotlin.coroutines.suspendCoroutine
 
+import java.io.IOException
 import java.nio.ByteBuffer
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.RejectedExecutionException
+import kotlin.time.Duration
 
 abstract class AbstractFile internal constructor(
     val path: String,
     private val pathAddress: Long,
     val fd: Int,
     private val pollableStatus: PollableStatus,
-    internal val executor: EventExecutor
+    internal val executor: EventExecutor,
+    internal val fixedFileIndex: Int
 ) {
 
 
@@ -45,17 +60,15 @@ abstract class AbstractFile internal constructor(
      */
     suspend fun read(buffers: Array<ByteBuffer>, position: Long, length: Int): Int {
         val iovecArray = IovecArray(buffers)
-        val bytesRead = suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.readVectored(
-                    fd,
-                    position,
-                    iovecArray.iovecArrayAddress,
-                    length,
-                    executor,
-                    CoroutineResultProvider.newInstance(it)
-                )
-            )
+        val bytesRead = executor.suspendCommand {
+            Command.readVectored(
+                fd,
+                position,
+                iovecArray.iovecArrayAddress,
+                length,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex)
         }
         iovecArray.updatePositions(bytesRead);
         return bytesRead
@@ -110,17 +123,15 @@ abstract class AbstractFile internal constructor(
      */
     suspend fun write(buffers: Array<ByteBuffer>, position: Long, length: Int): Int {
         val iovecArray = IovecArray(buffers)
-        val bytesWritten = suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.writeVectored(
-                    fd,
-                    position,
-                    iovecArray.iovecArrayAddress,
-                    length,
-                    executor,
-                    CoroutineResultProvider.newInstance(it)
-                )
-            )
+        val bytesWritten = executor.suspendCommand {
+            Command.writeVectored(
+                fd,
+                position,
+                iovecArray.iovecArrayAddress,
+                length,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex)
         }
         iovecArray.updatePositions(bytesWritten);
         return bytesWritten
@@ -128,24 +139,25 @@ abstract class AbstractFile internal constructor(
 
     /**
      * Returns the size of a file, in bytes.
+     * The size is that of the open file, even once its path is renamed or removed.
      *
      * @return file size in bytes
      */
     suspend fun size(): Long {
         val statxBuffer = MemoryUtils.allocateMemory(StatxUtils.BUF_SIZE.toLong())
-        suspendCancellableCoroutine {
-            executor.executeCommand(
+        try {
+            executor.suspendCommand {
                 Command.size(
-                    pathAddress,
+                    fd,
                     statxBuffer,
                     executor,
-                    CoroutineResultProvider.newInstance(it)
+                    it
                 )
-            )
+            }
+            return StatxUtils.getSize(statxBuffer)
+        } finally {
+            MemoryUtils.freeMemory(statxBuffer)
         }
-        val fileSize = StatxUtils.getSize(statxBuffer)
-        MemoryUtils.freeMemory(statxBuffer)
-        return fileSize
     }
 
 
@@ -154,14 +166,52 @@ abstract class AbstractFile internal constructor(
      * providing durability even if the system crashes or is rebooted.
      */
     suspend fun dataSync(): Int {
-        return suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.dataSync(
-                    fd,
-                    executor,
-                    CoroutineResultProvider.newInstance(it)
-                )
-            )
+        return executor.suspendCommand {
+            Command.dataSync(
+                fd,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex)
+        }
+    }
+
+
+    /**
+     * Issues fsync for the underlying file. Works in the same manner as [AbstractFile.dataSync],
+     * except that the file metadata is flushed as well.
+     */
+    suspend fun sync(): Int {
+        return executor.suspendCommand {
+            Command.sync(
+                fd,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex)
+        }
+    }
+
+    /**
+     * Truncates or extends the file to the given size.
+     * <p>
+     * Requires kernel 6.9+
+     *
+     * @param size the new file size; must be non-negative
+     */
+    suspend fun truncate(size: Long): Int {
+        checkTruncateSize(size)
+        return executor.suspendCommand {
+            Command.truncate(
+                fd,
+                size,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex)
+        }
+    }
+
+    private fun checkTruncateSize(size: Long) {
+        if (size < 0) {
+            throw IllegalArgumentException("Size must be non-negative")
         }
     }
 
@@ -194,16 +244,138 @@ abstract class AbstractFile internal constructor(
      * @param position The file position at which the transfer is to begin; must be non-negative
      */
     suspend fun readFixedBuffer(position: Long): BufRingResult {
-        return suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.readProvidedBuf(
-                    fd,
-                    position,
-                    pollableStatus,
-                    executor,
-                    CoroutineObjectResultProvider.newInstance(it)
-                )
-            )
+        return readFixedBuffer(position, Int.MAX_VALUE)
+    }
+
+    /**
+     * Reads up to length bytes using ring buffer pool.
+     * The buffer is taken from the buffer group with the smallest buffers that fit length bytes,
+     * see [EventExecutor.Builder.withBufRing]. If none does, the read is limited to the largest buffer size.
+     * After processing the result of reading you must call the [BufRingResult.close] method to return the buffer
+     * ownership to the kernel.
+     * <p>
+     * Requires kernel 5.19+
+     *
+     * @param position The file position at which the transfer is to begin; must be non-negative
+     * @param length   The maximum number of bytes to read; must be positive
+     */
+    suspend fun readFixedBuffer(position: Long, length: Int): BufRingResult {
+        if (length <= 0) {
+            throw IllegalArgumentException("Length must be positive")
+        }
+        val provider = CoroutineResultProvider.newInstance(executor)
+        return provider.awaitBufRingResult(
+            Command.readProvidedBuf(
+                fd,
+                position,
+                length,
+                pollableStatus,
+                executor,
+                provider
+            ).withFixedFile(fixedFileIndex)
+        )
+    }
+
+    /**
+     * Reads into a registered buffer, starting at the given file position and reading up to
+     * the buffer remaining bytes. The buffer position is advanced by the number of bytes read.
+     * The buffer must be borrowed from the executor this file was opened with, see
+     * [EventExecutor.Builder.withRegisteredBuffers].
+     *
+     * @param buffer   The registered buffer into which bytes are to be transferred
+     * @param position The file position at which the transfer is to begin; must be non-negative
+     *
+     * @return the number of bytes read
+     */
+    suspend fun readFixed(buffer: RegisteredBuffer, position: Long): Int {
+        return readFixed(buffer, position, buffer.buffer.remaining())
+    }
+
+    /**
+     * Reads up to length bytes into a registered buffer, starting at the given file position.
+     * The buffer position is advanced by the number of bytes read.
+     *
+     * @param buffer   The registered buffer into which bytes are to be transferred
+     * @param position The file position at which the transfer is to begin; must be non-negative
+     * @param length   The content length; must be non-negative and no larger than the buffer remaining bytes
+     *
+     * @return the number of bytes read
+     */
+    suspend fun readFixed(buffer: RegisteredBuffer, position: Long, length: Int): Int {
+        checkRegisteredBuffer(buffer, length)
+        val byteBuffer = buffer.buffer
+        val bufPosition = byteBuffer.position()
+        val read = executor.suspendCommand {
+            Command.readFixed(
+                fd,
+                position,
+                length,
+                buffer.address + bufPosition,
+                buffer.index,
+                pollableStatus,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex)
+        }
+        if (read > 0) {
+            byteBuffer.position(bufPosition + read)
+        }
+        return read
+    }
+
+    /**
+     * Writes the registered buffer remaining bytes, starting at the given file position.
+     * The buffer position is advanced by the number of bytes written.
+     * The buffer must be borrowed from the executor this file was opened with, see
+     * [EventExecutor.Builder.withRegisteredBuffers].
+     *
+     * @param buffer   The registered buffer from which bytes are to be retrieved
+     * @param position The file position at which the transfer is to begin; must be non-negative
+     *
+     * @return the number of bytes written
+     */
+    suspend fun writeFixed(buffer: RegisteredBuffer, position: Long): Int {
+        return writeFixed(buffer, position, buffer.buffer.remaining())
+    }
+
+    /**
+     * Writes up to length bytes from a registered buffer, starting at the given file position.
+     * The buffer position is advanced by the number of bytes written.
+     *
+     * @param buffer   The registered buffer from which bytes are to be retrieved
+     * @param position The file position at which the transfer is to begin; must be non-negative
+     * @param length   The content length; must be non-negative and no larger than the buffer remaining bytes
+     *
+     * @return the number of bytes written
+     */
+    suspend fun writeFixed(buffer: RegisteredBuffer, position: Long, length: Int): Int {
+        checkRegisteredBuffer(buffer, length)
+        val byteBuffer = buffer.buffer
+        val bufPosition = byteBuffer.position()
+        val written = executor.suspendCommand {
+            Command.writeFixed(
+                fd,
+                position,
+                length,
+                buffer.address + bufPosition,
+                buffer.index,
+                pollableStatus,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex)
+        }
+        if (written > 0) {
+            byteBuffer.position(bufPosition + written)
+        }
+        return written
+    }
+
+    private fun checkRegisteredBuffer(buffer: RegisteredBuffer, length: Int) {
+        if (buffer.executor !== executor) {
+            throw IllegalArgumentException("Buffer is registered with another executor")
+        }
+        if (length < 0 || length > buffer.buffer.remaining()) {
+            throw IllegalArgumentException("Length is negative or greater than buffer remaining bytes")
         }
     }
 
@@ -237,6 +409,21 @@ abstract class AbstractFile internal constructor(
      * @return the number of bytes read
      */
     suspend fun read(buffer: ByteBuffer, position: Long, length: Int): Int {
+        return read(buffer, position, length, 0L)
+    }
+
+    /**
+     * Works in the same manner as [AbstractFile.read(ByteBuffer, Long, Int)], except that the read fails with
+     * [OperationTimeoutException] if it doesn't complete within [timeout]. The timeout is armed by the kernel
+     * together with the read.
+     *
+     * @param timeout time to wait for the read; must be positive
+     */
+    suspend fun read(buffer: ByteBuffer, position: Long, length: Int, timeout: Duration): Int {
+        return read(buffer, position, length, timeoutNanos(timeout))
+    }
+
+    private suspend fun read(buffer: ByteBuffer, position: Long, length: Int, timeoutNanos: Long): Int {
         if (buffer.capacity() < length) {
             throw IllegalArgumentException("Buffer capacity less then length")
         }
@@ -244,18 +431,16 @@ abstract class AbstractFile internal constructor(
             return 0
         }
         val bufPosition = buffer.position()
-        val read = suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.read(
-                    fd,
-                    position,
-                    length,
-                    MemoryUtils.getDirectBufferAddress(buffer) + bufPosition,
-                    pollableStatus,
-                    executor,
-                    CoroutineResultProvider.newInstance(it)
-                )
-            )
+        val read = executor.suspendCommand {
+            Command.read(
+                fd,
+                position,
+                length,
+                MemoryUtils.getDirectBufferAddress(buffer) + bufPosition,
+                pollableStatus,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex).withTimeout(timeoutNanos)
         }
         if (read > 0) {
             buffer.position(bufPosition + read)
@@ -264,18 +449,16 @@ abstract class AbstractFile internal constructor(
     }
 
     suspend fun read(buffer: Long, position: Long, length: Int): Int {
-        val read = suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.read(
-                    fd,
-                    position,
-                    length,
-                    buffer,
-                    pollableStatus,
-                    executor,
-                    CoroutineResultProvider.newInstance(it)
-                )
-            )
+        val read = executor.suspendCommand {
+            Command.read(
+                fd,
+                position,
+                length,
+                buffer,
+                pollableStatus,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex)
         }
         return read
     }
@@ -310,22 +493,35 @@ abstract class AbstractFile internal constructor(
      * @return the number of bytes written
      */
     suspend fun write(buffer: ByteBuffer, position: Long, length: Int): Int {
+        return write(buffer, position, length, 0L)
+    }
+
+    /**
+     * Works in the same manner as [AbstractFile.write(ByteBuffer, Long, Int)], except that the write fails with
+     * [OperationTimeoutException] if it doesn't complete within [timeout]. The timeout is armed by the kernel
+     * together with the write.
+     *
+     * @param timeout time to wait for the write; must be positive
+     */
+    suspend fun write(buffer: ByteBuffer, position: Long, length: Int, timeout: Duration): Int {
+        return write(buffer, position, length, timeoutNanos(timeout))
+    }
+
+    private suspend fun write(buffer: ByteBuffer, position: Long, length: Int, timeoutNanos: Long): Int {
         if (buffer.remaining() == 0) {
             return 0
         }
         val bufPos = buffer.position()
-        val written = suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.write(
-                    fd,
-                    position,
-                    length,
-                    MemoryUtils.getDirectBufferAddress(buffer) + bufPos,
-                    pollableStatus,
-                    executor,
-                    CoroutineResultProvider.newInstance(it)
-                )
-            )
+        val written = executor.suspendCommand {
+            Command.write(
+                fd,
+                position,
+                length,
+                MemoryUtils.getDirectBufferAddress(buffer) + bufPos,
+                pollableStatus,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex).withTimeout(timeoutNanos)
         }
         if (written > 0) {
             buffer.position(bufPos + written)
@@ -392,17 +588,15 @@ abstract class AbstractFile internal constructor(
      * @param offset start offset; must be non-negative
      */
     suspend fun preAllocate(size: Long, offset: Long): Int {
-        return suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.preAllocate(
-                    fd,
-                    size,
-                    0,
-                    offset,
-                    executor,
-                    CoroutineResultProvider.newInstance(it)
-                )
-            )
+        return executor.suspendCommand {
+            Command.preAllocate(
+                fd,
+                size,
+                0,
+                offset,
+                executor,
+                it
+            ).withFixedFile(fixedFileIndex)
         }
     }
 
@@ -412,15 +606,13 @@ abstract class AbstractFile internal constructor(
      * Removing removes the name from the filesystem but the file will still be accessible for as long as it is open.
      */
     suspend fun remove(): Int {
-        return suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.unlink(
-                    -1,
-                    pathAddress,
-                    0,
-                    executor,
-                    CoroutineResultProvider.newInstance(it)
-                )
+        return executor.suspendCommand {
+            Command.unlink(
+                -1,
+                pathAddress,
+                0,
+                executor,
+                it
             )
         }
     }
@@ -430,10 +622,366 @@ abstract class AbstractFile internal constructor(
      */
     suspend fun close() {
         MemoryUtils.freeMemory(pathAddress)
-        suspendCancellableCoroutine {
-            executor.executeCommand(
-                Command.close(fd, executor, CoroutineResultProvider.newInstance(it))
-            )
+        if (fixedFileIndex >= 0) {
+            executor.onEventLoop { executor.unregisterFile(fixedFileIndex) }
+        }
+        // a close cancelled before it reaches the ring would leak the fd
+        withContext(NonCancellable) {
+            executor.suspendCommand { Command.close(fd, executor, it) }
+        }
+    }
+
+    /**
+     * Works in the same manner as [AbstractFile.read(ByteBuffer, Long)], except that it doesn't suspend,
+     * it reads up to the buffer remaining bytes and the future completes on the event loop thread.
+     * Cancelling the future asks the kernel to cancel the read.
+     */
+    fun readAsync(buffer: ByteBuffer, position: Long): CompletableFuture<Int> {
+        val future = CommandFuture(executor)
+        read(buffer, position, null, future, future)
+        return future
+    }
+
+    /**
+     * Works in the same manner as [AbstractFile.write(ByteBuffer, Long)], except that it doesn't suspend,
+     * it writes the buffer remaining bytes and the future completes on the event loop thread.
+     * Cancelling the future asks the kernel to cancel the write.
+     */
+    fun writeAsync(buffer: ByteBuffer, position: Long): CompletableFuture<Int> {
+        val future = CommandFuture(executor)
+        write(buffer, position, null, future, future)
+        return future
+    }
+
+    /**
+     * Non suspending [AbstractFile.dataSync], the future completes on the event loop thread.
+     */
+    fun dataSyncAsync(): CompletableFuture<Int> {
+        val future = CommandFuture(executor)
+        val command = Command.dataSync(
+            fd,
+            executor,
+            HandlerResultProvider.newInstance(executor, null, null, future)
+        ).withFixedFile(fixedFileIndex)
+        future.setCommand(command)
+        executor.executeLimited(command)
+        return future
+    }
+
+    /**
+     * Non suspending [AbstractFile.sync], the future completes on the event loop thread.
+     */
+    fun syncAsync(): CompletableFuture<Int> {
+        val future = CommandFuture(executor)
+        val command = Command.sync(
+            fd,
+            executor,
+            HandlerResultProvider.newInstance(executor, null, null, future)
+        ).withFixedFile(fixedFileIndex)
+        future.setCommand(command)
+        executor.executeLimited(command)
+        return future
+    }
+
+    /**
+     * Non suspending [AbstractFile.truncate], the future completes on the event loop thread.
+     * <p>
+     * Requires kernel 6.9+
+     */
+    fun truncateAsync(size: Long): CompletableFuture<Int> {
+        checkTruncateSize(size)
+        val future = CommandFuture(executor)
+        val command = Command.truncate(
+            fd,
+            size,
+            executor,
+            HandlerResultProvider.newInstance(executor, null, null, future)
+        ).withFixedFile(fixedFileIndex)
+        future.setCommand(command)
+        executor.executeLimited(command)
+        return future
+    }
+
+    /**
+     * Non suspending [AbstractFile.size], the future completes on the event loop thread.
+     */
+    fun sizeAsync(): CompletableFuture<Long> {
+        val future = CompletableFuture<Long>()
+        val statxBuffer = MemoryUtils.allocateMemory(StatxUtils.BUF_SIZE.toLong())
+        val handler = object : IntCompletionHandler<Any?> {
+            override fun completed(result: Int, attachment: Any?) {
+                val fileSize = StatxUtils.getSize(statxBuffer)
+                MemoryUtils.freeMemory(statxBuffer)
+                future.complete(fileSize)
+            }
+
+            override fun failed(ex: Throwable, attachment: Any?) {
+                MemoryUtils.freeMemory(statxBuffer)
+                future.completeExceptionally(ex)
+            }
+        }
+        executor.executeLimited(
+            Command.size(fd, statxBuffer, executor, HandlerResultProvider.newInstance(executor, null, null, handler))
+        )
+        return future
+    }
+
+    /**
+     * Non suspending [AbstractFile.close], the future completes on the event loop thread.
+     */
+    fun closeAsync(): CompletableFuture<Void?> {
+        val future = CompletableFuture<Void?>()
+        MemoryUtils.freeMemory(pathAddress)
+        if (fixedFileIndex >= 0) {
+            executor.execute { executor.unregisterFile(fixedFileIndex) }
+        }
+        val handler = object : IntCompletionHandler<Any?> {
+            override fun completed(result: Int, attachment: Any?) {
+                future.complete(null)
+            }
+
+            override fun failed(ex: Throwable, attachment: Any?) {
+                future.completeExceptionally(ex)
+            }
+        }
+        executor.executeLimited(Command.close(fd, executor, HandlerResultProvider.newInstance(executor, null, null, handler)))
+        return future
+    }
+
+    /**
+     * Works in the same manner as [AbstractFile.read(ByteBuffer, Long)], except that it blocks the calling thread
+     * instead of suspending, it reads up to the buffer remaining bytes. The thread parks while the kernel does the read,
+     * which releases the carrier of a virtual thread, and once warmed up a read allocates nothing.
+     * Must not be called on the event loop thread.
+     *
+     * An interrupt asks the kernel to cancel the read, see [ParkingResultProvider.await].
+     */
+    @Throws(IOException::class)
+    fun readBlocking(buffer: ByteBuffer, position: Long): Int {
+        val provider = ParkingResultProvider.newInstance(executor)
+        val bytesRead = provider.await(
+            Command.read(
+                fd,
+                position,
+                buffer.remaining(),
+                MemoryUtils.getDirectBufferAddress(buffer) + buffer.position(),
+                pollableStatus,
+                executor,
+                provider
+            ).withFixedFile(fixedFileIndex)
+        )
+        if (bytesRead > 0) {
+            buffer.position(buffer.position() + bytesRead)
+        }
+        return bytesRead
+    }
+
+    /**
+     * Blocking [AbstractFile.write(ByteBuffer, Long)], writes the buffer remaining bytes, see [readBlocking].
+     */
+    @Throws(IOException::class)
+    fun writeBlocking(buffer: ByteBuffer, position: Long): Int {
+        val provider = ParkingResultProvider.newInstance(executor)
+        val bytesWritten = provider.await(
+            Command.write(
+                fd,
+                position,
+                buffer.remaining(),
+                MemoryUtils.getDirectBufferAddress(buffer) + buffer.position(),
+                pollableStatus,
+                executor,
+                provider
+            ).withFixedFile(fixedFileIndex)
+        )
+        if (bytesWritten > 0) {
+            buffer.position(buffer.position() + bytesWritten)
+        }
+        return bytesWritten
+    }
+
+    /**
+     * Blocking [AbstractFile.dataSync], see [readBlocking].
+     */
+    @Throws(IOException::class)
+    fun dataSyncBlocking(): Int {
+        val provider = ParkingResultProvider.newInstance(executor)
+        return provider.await(Command.dataSync(fd, executor, provider).withFixedFile(fixedFileIndex))
+    }
+
+    /**
+     * Blocking [AbstractFile.sync], see [readBlocking].
+     */
+    @Throws(IOException::class)
+    fun syncBlocking(): Int {
+        val provider = ParkingResultProvider.newInstance(executor)
+        return provider.await(Command.sync(fd, executor, provider).withFixedFile(fixedFileIndex))
+    }
+
+    /**
+     * Blocking [AbstractFile.truncate], see [readBlocking].
+     * <p>
+     * Requires kernel 6.9+
+     */
+    @Throws(IOException::class)
+    fun truncateBlocking(size: Long): Int {
+        checkTruncateSize(size)
+        val provider = ParkingResultProvider.newInstance(executor)
+        return provider.await(Command.truncate(fd, size, executor, provider).withFixedFile(fixedFileIndex))
+    }
+
+    /**
+     * Blocking [AbstractFile.size], see [readBlocking].
+     */
+    @Throws(IOException::class)
+    fun sizeBlocking(): Long {
+        val statxBuffer = MemoryUtils.allocateMemory(StatxUtils.BUF_SIZE.toLong())
+        try {
+            val provider = ParkingResultProvider.newInstance(executor)
+            provider.await(Command.size(fd, statxBuffer, executor, provider))
+            return StatxUtils.getSize(statxBuffer)
+        } finally {
+            MemoryUtils.freeMemory(statxBuffer)
+        }
+    }
+
+    /**
+     * Reads up to the buffer remaining bytes, starting at the given file position, and hands the number of bytes read
+     * to the handler on the event loop thread. The buffer position is advanced by the number of bytes read
+     * before the handler is called. Nothing is allocated per read, a caller can keep one handler for all its reads.
+     *
+     * @param buffer     The buffer into which bytes are to be transferred. Must be allocated with [ByteBuffer.allocateDirect]
+     * @param position   The file position at which the transfer is to begin; must be non-negative
+     * @param attachment The object to hand to the handler along with the result, can be null
+     */
+    fun <A> read(buffer: ByteBuffer, position: Long, attachment: A, handler: IntCompletionHandler<in A>) {
+        read(buffer, position, attachment, handler, null)
+    }
+
+    /**
+     * Writes the buffer remaining bytes, starting at the given file position, and hands the number of bytes written
+     * to the handler on the event loop thread. The buffer position is advanced by the number of bytes written
+     * before the handler is called. Nothing is allocated per write, a caller can keep one handler for all its writes.
+     *
+     * @param buffer     The buffer from which bytes are to be retrieved. Must be allocated with [ByteBuffer.allocateDirect]
+     * @param position   The file position at which the transfer is to begin; must be non-negative
+     * @param attachment The object to hand to the handler along with the result, can be null
+     */
+    fun <A> write(buffer: ByteBuffer, position: Long, attachment: A, handler: IntCompletionHandler<in A>) {
+        write(buffer, position, attachment, handler, null)
+    }
+
+    private fun <A> read(
+        buffer: ByteBuffer,
+        position: Long,
+        attachment: A,
+        handler: IntCompletionHandler<in A>,
+        future: CommandFuture?
+    ) {
+        val command = Command.read(
+            fd,
+            position,
+            buffer.remaining(),
+            MemoryUtils.getDirectBufferAddress(buffer) + buffer.position(),
+            pollableStatus,
+            executor,
+            HandlerResultProvider.newInstance(executor, buffer, attachment, handler)
+        ).withFixedFile(fixedFileIndex)
+        future?.setCommand(command)
+        executor.executeLimited(command)
+    }
+
+    private fun <A> write(
+        buffer: ByteBuffer,
+        position: Long,
+        attachment: A,
+        handler: IntCompletionHandler<in A>,
+        future: CommandFuture?
+    ) {
+        val command = Command.write(
+            fd,
+            position,
+            buffer.remaining(),
+            MemoryUtils.getDirectBufferAddress(buffer) + buffer.position(),
+            pollableStatus,
+            executor,
+            HandlerResultProvider.newInstance(executor, buffer, attachment, handler)
+        ).withFixedFile(fixedFileIndex)
+        future?.setCommand(command)
+        executor.executeLimited(command)
+    }
+
+    internal companion object {
+        /**
+         * Submits the command built by the block with the given [CoroutineResultProvider] and suspends until
+         * the command completes, see [CoroutineResultProvider.await].
+         */
+        suspend inline fun EventExecutor.suspendCommand(block: (CoroutineResultProvider) -> Command<*>): Int {
+            val provider = CoroutineResultProvider.newInstance(this)
+            return provider.await(block(provider))
+        }
+
+        /**
+         * Submits a command of the non suspending API, taking an in-flight permit first if the executor
+         * limits the number of operations in flight. The command gives the permit back once it completes.
+         * An operation that can't get a permit right away waits for one without blocking the caller,
+         * cancelling the command stops the wait.
+         * Errors, including a closed executor, are reported through the result provider rather than thrown.
+         */
+        @OptIn(DelicateCoroutinesApi::class)
+        fun EventExecutor.executeLimited(command: Command<*>) {
+            val limit = inFlightLimit()
+            if (limit == null) {
+                executeOrFail(command)
+            } else if (limit.tryAcquire()) {
+                command.setPermit()
+                executeOrFail(command)
+            } else {
+                val wait = GlobalScope.launch(Dispatchers.Unconfined, CoroutineStart.LAZY) {
+                    try {
+                        limit.acquire()
+                        command.setPermit()
+                    } catch (ex: CancellationException) {
+                        // cancelled while waiting, the loop fails the command instead of submitting it
+                    }
+                    executeOrFail(command)
+                }
+                // set before the wait starts, the command can complete and be reused as soon as it has a permit
+                command.setPermitWait(wait)
+                wait.start()
+            }
+        }
+
+        fun EventExecutor.executeOrFail(command: Command<*>) {
+            try {
+                executeCommand(command)
+            } catch (ex: RejectedExecutionException) {
+                // gives the permit back and the command back to the pool as well
+                command.error(ex)
+            }
+        }
+
+        fun timeoutNanos(timeout: Duration): Long {
+            if (!timeout.isPositive()) {
+                throw IllegalArgumentException("Timeout must be positive")
+            }
+            // a 0 timeout means no timeout for a command
+            return timeout.inWholeNanoseconds.coerceAtLeast(1)
+        }
+
+        /**
+         * Runs the block on the event loop thread and returns its result.
+         * The coroutine waits for the block even if it is cancelled meanwhile, the block runs anyway.
+         */
+        suspend fun <T> EventExecutor.onEventLoop(block: () -> T): T {
+            return suspendCoroutine {
+                execute {
+                    try {
+                        it.resume(block())
+                    } catch (ex: Throwable) {
+                        it.resumeWithException(ex)
+                    }
+                }
+            }
         }
     }
 }
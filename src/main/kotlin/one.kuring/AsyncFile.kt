@@ -1,15 +1,18 @@
 package one.kuring
 
-import kotlinx.coroutines.suspendCancellableCoroutine
 import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.CompletableFuture
+import kotlin.time.Duration
 
 class AsyncFile private constructor(
     path: String,
     pathPtr: Long,
     fd: Int,
     pollableStatus: PollableStatus,
-    executor: EventExecutor
-) : AbstractFile(path, pathPtr, fd, pollableStatus, executor) {
+    executor: EventExecutor,
+    fixedFileIndex: Int
+) : AbstractFile(path, pathPtr, fd, pollableStatus, executor, fixedFileIndex) {
 
     companion object {
         suspend fun open(
@@ -51,30 +54,202 @@ class AsyncFile private constructor(
             return open(path, 438, executor, *openOption)
         }
 
+        /**
+         * Opens the file on the member of [group] chosen by the group routing policy.
+         * All subsequent operations on the returned file are served by that executor.
+         */
         suspend fun open(
+            path: Path,
+            group: EventExecutorGroup,
+            vararg openOption: OpenOption
+        ): AsyncFile {
+            return open(path.toAbsolutePath().toString(), 438, group, *openOption)
+        }
+
+        suspend fun open(
+            path: String,
+            group: EventExecutorGroup,
+            vararg openOption: OpenOption
+        ): AsyncFile {
+            return open(path, 438, group, *openOption)
+        }
+
+        suspend fun open(
+            path: String,
+            mode: Int,
+            group: EventExecutorGroup,
+            vararg openOption: OpenOption
+        ): AsyncFile {
+            // made absolute as a relative path is not resolved against the working directory by the open command
+            val absolutePath = Paths.get(path).toAbsolutePath()
+            return open(absolutePath.toString(), mode, group.next(routingKey(absolutePath)), *openOption)
+        }
+
+        /**
+         * Opens the file, failing with [OperationTimeoutException] if the open doesn't complete within [timeout].
+         */
+        suspend fun open(
+            path: Path,
+            executor: EventExecutor,
+            timeout: Duration,
+            vararg openOption: OpenOption
+        ): AsyncFile {
+            return open(path.normalize().toAbsolutePath().toString(), 438, executor, timeout, *openOption)
+        }
+
+        /**
+         * Opens the file, failing with [OperationTimeoutException] if the open doesn't complete within [timeout].
+         */
+        suspend fun open(
+            path: String,
+            mode: Int,
+            executor: EventExecutor,
+            timeout: Duration,
+            vararg openOption: OpenOption
+        ): AsyncFile {
+            return open(path, mode, executor, timeoutNanos(timeout), openOption)
+        }
+
+        suspend fun open(
+            path: String,
+            mode: Int,
+            executor: EventExecutor,
+            vararg openOption: OpenOption
+        ): AsyncFile {
+            return open(path, mode, executor, 0L, openOption)
+        }
+
+        /**
+         * Non suspending [open] for callers that can't use coroutines, the future completes on the event loop thread.
+         */
+        @JvmStatic
+        fun openAsync(
+            path: Path,
+            executor: EventExecutor,
+            vararg openOption: OpenOption
+        ): CompletableFuture<AsyncFile> {
+            return openAsync(path.normalize().toAbsolutePath().toString(), 438, executor, *openOption)
+        }
+
+        /**
+         * Non suspending [open] on the member of [group] chosen by the group routing policy.
+         */
+        @JvmStatic
+        fun openAsync(
+            path: Path,
+            group: EventExecutorGroup,
+            vararg openOption: OpenOption
+        ): CompletableFuture<AsyncFile> {
+            return openAsync(path.toAbsolutePath().toString(), 438, group.next(routingKey(path)), *openOption)
+        }
+
+        @JvmStatic
+        fun openAsync(
             path: String,
             mode: Int,
             executor: EventExecutor,
             vararg openOption: OpenOption
+        ): CompletableFuture<AsyncFile> {
+            val future = CompletableFuture<AsyncFile>()
+            val pathPtr = MemoryUtils.getStringPtr(path)
+            val handler = object : IntCompletionHandler<Any?> {
+                override fun completed(result: Int, attachment: Any?) {
+                    try {
+                        // on the event loop thread already
+                        val fixedFileIndex = if (openOption.contains(OpenOption.FIXED_FILE)) executor.registerFile(result) else -1
+                        future.complete(AsyncFile(path, pathPtr, result, pollableStatus(openOption), executor, fixedFileIndex))
+                    } catch (ex: Throwable) {
+                        future.completeExceptionally(ex)
+                    }
+                }
+
+                override fun failed(ex: Throwable, attachment: Any?) {
+                    MemoryUtils.freeMemory(pathPtr)
+                    future.completeExceptionally(ex)
+                }
+            }
+            executor.executeLimited(
+                Command.openAt(
+                    OpenOption.toFlags(*openOption),
+                    pathPtr,
+                    mode,
+                    executor,
+                    HandlerResultProvider.newInstance(executor, null, null, handler)
+                )
+            )
+            return future
+        }
+
+        private fun pollableStatus(openOption: Array<out OpenOption>): PollableStatus {
+            return if (openOption.contains(OpenOption.DIRECT)) {
+                PollableStatus.POLLABLE
+            } else {
+                PollableStatus.NON_POLLABLE
+            }
+        }
+
+        /**
+         * The same file reached through different spellings of its path must get the same executor.
+         * Only the key is normalized, the file is opened with the path as given since the kernel resolves ".."
+         * after a symbolic link to the parent of the link target rather than of the link.
+         */
+        private fun routingKey(path: Path): String {
+            return path.toAbsolutePath().normalize().toString()
+        }
+
+        private suspend fun open(
+            path: String,
+            mode: Int,
+            executor: EventExecutor,
+            timeoutNanos: Long,
+            openOption: Array<out OpenOption>
         ): AsyncFile {
             val pathPtr = MemoryUtils.getStringPtr(path)
-            val fd = suspendCancellableCoroutine {
-                executor.executeCommand(
+            val provider = CoroutineResultProvider.newInstance(executor)
+            val fd = try {
+                provider.await(
                     Command.openAt(
                         OpenOption.toFlags(*openOption),
                         pathPtr,
                         mode,
                         executor,
-                        CoroutineResultProvider.newInstance(it)
-                    )
-                )
+                        provider
+                    ).withTimeout(timeoutNanos)
+                ) { closeQuietly(executor, it) }
+            } catch (ex: Throwable) {
+                MemoryUtils.freeMemory(pathPtr)
+                throw ex
             }
-            val pollableStatus = if (openOption.contains(OpenOption.DIRECT)) {
-                PollableStatus.POLLABLE
+            val pollableStatus = pollableStatus(openOption)
+            val fixedFileIndex = if (openOption.contains(OpenOption.FIXED_FILE)) {
+                try {
+                    executor.onEventLoop { executor.registerFile(fd) }
+                } catch (ex: Throwable) {
+                    closeQuietly(executor, fd)
+                    MemoryUtils.freeMemory(pathPtr)
+                    throw ex
+                }
             } else {
-                PollableStatus.NON_POLLABLE
+                -1
+            }
+            return AsyncFile(path, pathPtr, fd, pollableStatus, executor, fixedFileIndex)
+        }
+
+        /**
+         * Closes an fd nobody is going to use, e.g. one opened although the open was cancelled.
+         */
+        private fun closeQuietly(executor: EventExecutor, fd: Int) {
+            executor.executeLimited(
+                Command.close(fd, executor, HandlerResultProvider.newInstance(executor, null, null, IGNORE_RESULT))
+            )
+        }
+
+        private val IGNORE_RESULT = object : IntCompletionHandler<Any?> {
+            override fun completed(result: Int, attachment: Any?) {
+            }
+
+            override fun failed(ex: Throwable, attachment: Any?) {
             }
-            return AsyncFile(path, pathPtr, fd, pollableStatus, executor)
         }
     }
 
@@ -82,18 +257,16 @@ class AsyncFile private constructor(
      * Requires pipe to be created
      */
     private suspend fun copyTo(srcOffset: Long, dst: AsyncFile, dstOffset: Long, length: Int) {
-        suspendCancellableCoroutine<Int> {
-            executor.executeCommand(
-                Command.splice(
-                    fd,
-                    srcOffset,
-                    dst.fd,
-                    dstOffset,
-                    length,
-                    0,
-                    executor,
-                    CoroutineResultProvider.newInstance(it)
-                )
+        executor.suspendCommand {
+            Command.splice(
+                fd,
+                srcOffset,
+                dst.fd,
+                dstOffset,
+                length,
+                0,
+                executor,
+                it
             )
         }
     }
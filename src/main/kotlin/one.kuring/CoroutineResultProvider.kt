@@ -1,34 +1,134 @@
 package one.kuring
 
-import cn.danielw.fop.DisruptorObjectPool
-import cn.danielw.fop.ObjectPool
-import cn.danielw.fop.PoolConfig
-import cn.danielw.fop.Poolable
-import kotlinx.coroutines.CancellableContinuation
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.suspendCancellableCoroutine
+import one.kuring.AbstractFile.Companion.executeOrFail
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.coroutines.Continuation
 import kotlin.coroutines.resume
-import kotlin.coroutines.resumeWithException
+import kotlin.coroutines.suspendCoroutine
 
-internal class CoroutineResultProvider : ResultProvider<Int> {
-    private var continuation: CancellableContinuation<Int>? = null
-    private var handle: Poolable<CoroutineResultProvider>? = null
+/**
+ * Result provider of the suspending file API. The coroutine suspends until the completion, handled on
+ * the event loop thread, stores the result and resumes it.
+ * <p>
+ * Providers are pooled by the executor and returned to the pool by the coroutine once it has read the result.
+ */
+internal class CoroutineResultProvider private constructor(
+    private val recycler: ObjectRecycler<CoroutineResultProvider>
+) : ResultProvider<Int> {
+    private var result = 0
+    private var value: Any? = null
+    private var error: Throwable? = null
 
-    override fun onSuccess(result: Int) {
+    // null until the command is submitted, then the continuation waiting for it and DONE once it completed,
+    // set last by the event loop thread, publishes the result
+    private val state = AtomicReference<Any?>()
+
+    /**
+     * Submits the command, built with this provider, and suspends until it completes.
+     * Cancelling the coroutine asks the kernel to cancel the command, the coroutine still waits for the completion
+     * as the kernel may be using the buffers of the command, and then throws the [CancellationException].
+     *
+     * @param discard called with the result of a command that succeeded although the coroutine was cancelled,
+     *                gives back what the command acquired, e.g. closes an opened fd
+     * @return the result of the command
+     */
+    suspend fun await(command: Command<*>, discard: ((Int) -> Unit)? = null): Int {
+        val cancellation = submit(command)
+        val result = this.result
+        val error = this.error
+        recycle()
+        if (cancellation != null) {
+            if (error == null && discard != null) {
+                discard(result)
+            }
+            throw cancellation
+        }
+        if (error != null) {
+            throw error
+        }
+        return result
+    }
+
+    /**
+     * Works in the same manner as [await] for a provided buffer read, the buffer of a read that completed
+     * although the coroutine was cancelled goes straight back to its group.
+     */
+    suspend fun awaitBufRingResult(command: Command<*>): BufRingResult {
+        val cancellation = submit(command)
+        val value = this.value as BufRingResult?
+        val error = this.error
+        recycle()
+        if (cancellation != null) {
+            value?.close()
+            throw cancellation
+        }
+        if (error != null) {
+            throw error
+        }
+        return value!!
+    }
+
+    /**
+     * @return the exception the coroutine was cancelled with, null otherwise
+     */
+    private suspend fun submit(command: Command<*>): CancellationException? {
+        val executor = command.executor
+        val limit = executor.inFlightLimit()
+        if (limit != null) {
+            try {
+                limit.acquire()
+            } catch (ex: CancellationException) {
+                command.release()
+                recycle()
+                throw ex
+            }
+            // given back by the command once it completes
+            command.setPermit()
+        }
         try {
-            continuation?.resume(result)
-        } finally {
-            release()
+            // read before submitting, the command can complete and be reused right away
+            val epoch = command.epoch
+            suspendCancellableCoroutine<Unit> {
+                state.set(it)
+                it.invokeOnCancellation { executor.cancel(command, epoch) }
+                executor.executeOrFail(command)
+            }
+            return null
+        } catch (ex: CancellationException) {
+            // the continuation resumes right away on cancellation, wait for the completion in another one
+            suspendCoroutine<Unit> {
+                val waiter = state.get()
+                if (waiter === DONE || !state.compareAndSet(waiter, it)) {
+                    it.resume(Unit)
+                }
+            }
+            return ex
         }
     }
 
-    override fun onSuccess(`object`: Any?) {
+    override fun onSuccess(result: Int) {
+        this.result = result
+        complete()
+    }
 
+    override fun onSuccess(`object`: Any?) {
+        value = `object`
+        complete()
     }
 
     override fun onError(ex: Throwable) {
-        try {
-            continuation?.resumeWithException(ex)
-        } finally {
-            release()
+        error = ex
+        complete()
+    }
+
+    private fun complete() {
+        val waiter = state.getAndSet(DONE)
+        if (waiter != null) {
+            // a cancelled continuation ignores the resume
+            @Suppress("UNCHECKED_CAST")
+            (waiter as Continuation<Unit>).resume(Unit)
         }
     }
 
@@ -36,28 +136,26 @@ internal class CoroutineResultProvider : ResultProvider<Int> {
         return null
     }
 
+    /**
+     * Nothing to do, the coroutine returns the provider to the pool once it has read the result.
+     */
     override fun release() {
-        continuation = null
-        handle?.close()
+    }
+
+    private fun recycle() {
+        result = 0
+        value = null
+        error = null
+        state.set(null)
+        recycler.recycle(this)
     }
 
     companion object {
-        private val allocator = CoroutinesResultProviderAllocator()
-        private val poolConfig = PoolConfig()
-        private val pool: ObjectPool<CoroutineResultProvider>
-
-        init {
-            poolConfig.partitionSize = 100
-            poolConfig.maxSize = 50
-            pool = DisruptorObjectPool(poolConfig, allocator)
-        }
-
-        fun newInstance(continuation: CancellableContinuation<Int>): CoroutineResultProvider {
-            val handle = pool.borrowObject()
-            val result = handle.`object`
-            result.handle = handle
-            result.continuation = continuation
-            return result
+        private val kind = ObjectRecycler.Kind { CoroutineResultProvider(it) }
+        private val DONE = Any()
+
+        fun newInstance(executor: EventExecutor): CoroutineResultProvider {
+            return executor.recycler(kind).borrow()
         }
     }
 }
@@ -0,0 +1,50 @@
+package one.kuring
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import java.util.concurrent.RejectedExecutionException
+import kotlin.coroutines.CoroutineContext
+
+/**
+ * Runs coroutines on the event loop thread of [executor]. A coroutine doing I/O on files of that executor
+ * is resumed by the thread that reaps its completions, so an operation costs no hop to another thread and back.
+ *
+ * Coroutines already on the event loop thread continue right away instead of going through the task queue.
+ * The exception is a coroutine resumed by a completion, it is queued and runs once the loop is done with
+ * the completion batch, so one coroutine can't hold up the completions reaped after its own.
+ * With [resumeInline] such a coroutine runs right away too, from within the completion handler.
+ */
+class EventExecutorDispatcher internal constructor(
+    val executor: EventExecutor,
+    private val resumeInline: Boolean
+) : CoroutineDispatcher() {
+
+    override fun isDispatchNeeded(context: CoroutineContext): Boolean {
+        return !executor.inEventLoop() || !resumeInline && executor.isReaping()
+    }
+
+    override fun dispatch(context: CoroutineContext, block: Runnable) {
+        try {
+            executor.schedule(block)
+        } catch (ex: RejectedExecutionException) {
+            // the same as the executor dispatchers of kotlinx.coroutines do, cancel and let the coroutine finish elsewhere
+            context.cancel(CancellationException("Event executor is closed", ex))
+            Dispatchers.IO.dispatch(context, block)
+        }
+    }
+
+    override fun toString(): String {
+        return if (resumeInline) "EventExecutorDispatcher.inline" else "EventExecutorDispatcher"
+    }
+}
+
+/**
+ * Dispatcher that runs coroutines on the event loop thread of this executor, see [EventExecutorDispatcher].
+ *
+ * @param resumeInline resume coroutines right from the completion handler of their operation
+ */
+fun EventExecutor.asCoroutineDispatcher(resumeInline: Boolean = false): EventExecutorDispatcher {
+    return EventExecutorDispatcher(this, resumeInline)
+}
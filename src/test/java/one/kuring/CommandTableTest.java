@@ -0,0 +1,63 @@
+package one.kuring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CommandTableTest {
+    private final EventExecutor eventExecutor = EventExecutor.initDefault();
+
+    @AfterEach
+    void tearDown() {
+        eventExecutor.close();
+    }
+
+    @Test
+    void addAndRemove() {
+        CommandTable table = new CommandTable(2);
+        Command<Void> nop = Command.nop(eventExecutor, new NoopResultProvider());
+        long first = table.add(nop);
+        long second = table.add(nop);
+        Assertions.assertEquals(CommandTable.NO_SLOT, table.add(nop));
+        Assertions.assertEquals(2, table.size());
+        Assertions.assertSame(nop, table.remove(first));
+        Assertions.assertSame(nop, table.remove(second));
+        Assertions.assertEquals(0, table.size());
+    }
+
+    @Test
+    void staleUserDataIgnored() {
+        CommandTable table = new CommandTable(1);
+        Command<Void> nop = Command.nop(eventExecutor, new NoopResultProvider());
+        long stale = table.add(nop);
+        table.remove(stale);
+        long fresh = table.add(nop);
+        Assertions.assertNotEquals(stale, fresh);
+        Assertions.assertNull(table.remove(stale));
+        Assertions.assertNull(table.remove(42));
+        Assertions.assertSame(nop, table.remove(fresh));
+    }
+
+    private static class NoopResultProvider implements ResultProvider<Void> {
+        @Override
+        public void onSuccess(int result) {
+        }
+
+        @Override
+        public void onSuccess(Object object) {
+        }
+
+        @Override
+        public void onError(Throwable ex) {
+        }
+
+        @Override
+        public Void getInner() {
+            return null;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package one.kuring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class CompletionQueueTest {
+    private final Uring ring = Native.setupIoUring(8, 0, 0, 0, 0, 0);
+
+    @AfterEach
+    void tearDown() {
+        ring.close();
+    }
+
+    @Test
+    void processEventsInBatches() {
+        SubmissionQueue submissionQueue = ring.getSubmissionQueue();
+        CompletionQueue completionQueue = ring.getCompletionQueue();
+        for (int i = 0; i < 3; i++) {
+            submissionQueue.enqueueSqe(Native.IORING_OP_NOP, 0, 0, -1, 0, 0, 0, i, 0, 0);
+        }
+        submissionQueue.submit(3);
+
+        CountingCallback callback = new CountingCallback();
+        assertEquals(3, completionQueue.processEvents(callback));
+        assertEquals(3, callback.completions);
+        assertEquals(1, callback.batches);
+        assertEquals(3, completionQueue.getHead());
+        assertFalse(completionQueue.hasCompletions());
+
+        assertEquals(0, completionQueue.processEvents(callback));
+        assertEquals(1, callback.batches);
+    }
+
+    private static class CountingCallback implements CompletionCallback {
+        int completions;
+        int batches;
+
+        @Override
+        public void handle(int res, int flags, long userData) {
+            assertEquals(completions, userData);
+            completions++;
+        }
+
+        @Override
+        public void onBatchEnd() {
+            batches++;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package one.kuring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FileFutureApiTest {
+
+    @TempDir
+    Path tmpDir;
+
+    private final EventExecutor executor = EventExecutor.initDefault();
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void readWrite() throws Exception {
+        Path path = Files.createTempFile(tmpDir, "test-", " file");
+        AsyncFile file = AsyncFile.openAsync(path, executor, OpenOption.READ_WRITE).join();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+        buffer.putLong(42).flip();
+        Assertions.assertEquals(8, (int) file.writeAsync(buffer, 0).join());
+        Assertions.assertEquals(0, buffer.remaining());
+        Assertions.assertEquals(0, (int) file.dataSyncAsync().join());
+        Assertions.assertEquals(8, (long) file.sizeAsync().join());
+
+        buffer.clear();
+        Assertions.assertEquals(8, (int) file.readAsync(buffer, 0).join());
+        Assertions.assertEquals(8, buffer.position());
+        Assertions.assertEquals(42, buffer.getLong(0));
+        file.closeAsync().join();
+    }
+
+    @Test
+    void openMissingFile() {
+        CompletableFuture<AsyncFile> open = AsyncFile.openAsync(tmpDir.resolve("missing"), executor, OpenOption.READ_ONLY);
+        CompletionException ex = Assertions.assertThrows(CompletionException.class, open::join);
+        Assertions.assertNotNull(ex.getCause());
+    }
+
+    @Test
+    void reusableHandler() throws Exception {
+        Path path = Files.createTempFile(tmpDir, "test-", " file");
+        Files.write(path, new byte[4096]);
+        AsyncFile file = AsyncFile.openAsync(path, executor, OpenOption.READ_ONLY).join();
+
+        int reads = 64;
+        CountDownLatch done = new CountDownLatch(reads);
+        AtomicInteger bytes = new AtomicInteger();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        IntCompletionHandler<ByteBuffer> handler = new IntCompletionHandler<ByteBuffer>() {
+            @Override
+            public void completed(int result, ByteBuffer buffer) {
+                Assertions.assertEquals(result, buffer.position());
+                bytes.addAndGet(result);
+                done.countDown();
+            }
+
+            @Override
+            public void failed(Throwable ex, ByteBuffer buffer) {
+                error.set(ex);
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < reads; i++) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+            file.read(buffer, i * 64L, buffer, handler);
+        }
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assertions.assertNull(error.get());
+        Assertions.assertEquals(4096, bytes.get());
+        file.closeAsync().join();
+    }
+
+    @Test
+    void inFlightLimit() throws Exception {
+        try (EventExecutor limited = EventExecutor.builder().maxInFlight(2).build()) {
+            Path path = Files.createTempFile(tmpDir, "test-", " file");
+            AsyncFile file = AsyncFile.openAsync(path, limited, OpenOption.READ_WRITE).join();
+            CompletableFuture<?>[] writes = new CompletableFuture<?>[32];
+            for (int i = 0; i < writes.length; i++) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+                writes[i] = file.writeAsync(buffer, i * 16L);
+            }
+            CompletableFuture.allOf(writes).get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(512, (long) file.sizeAsync().join());
+            file.closeAsync().join();
+        }
+    }
+
+    @Test
+    void closedExecutor() throws Exception {
+        Path path = Files.createTempFile(tmpDir, "test-", " file");
+        AsyncFile file = AsyncFile.openAsync(path, executor, OpenOption.READ_WRITE).join();
+        executor.close();
+        CompletableFuture<Integer> read = file.readAsync(ByteBuffer.allocateDirect(8), 0);
+        Assertions.assertThrows(CompletionException.class, read::join);
+    }
+}
@@ -3,9 +3,18 @@ package one.kuring;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
+
 public class IoUringProbeTest {
     private final EventExecutor eventExecutor = EventExecutor.initDefault();
-    private final IoUringProbe uringProbeUtils = new IoUringProbe(eventExecutor.sleepableRingFd());
+    private final IoUringProbe uringProbeUtils = probe();
+
+    private IoUringProbe probe() {
+        // a single issuer ring only takes registrations from the event loop thread
+        CompletableFuture<IoUringProbe> probe = new CompletableFuture<>();
+        eventExecutor.execute(() -> probe.complete(new IoUringProbe(eventExecutor.sleepableRingFd())));
+        return probe.join();
+    }
 
 
     @Test
@@ -19,4 +28,10 @@ public class IoUringProbeTest {
         // make sure we don't segfault
         uringProbeUtils.iterateOpArray();
     }
+
+    @Test
+    void setupTest() {
+        Assertions.assertTrue(IoUringProbe.isSetupSupported(0));
+        Assertions.assertFalse(IoUringProbe.isSetupSupported(1 << 31));
+    }
 }
@@ -0,0 +1,172 @@
+package one.kuring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class KuringAsynchronousFileChannelTest {
+
+    @TempDir
+    Path tmpDir;
+
+    private final EventExecutor executor = EventExecutor.initDefault();
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void readWriteFutures() throws Exception {
+        Path path = tmpDir.resolve("file");
+        try (AsynchronousFileChannel channel = KuringAsynchronousFileChannel.open(path, executor,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer src = ByteBuffer.allocateDirect(8);
+            src.putLong(42).flip();
+            Assertions.assertEquals(8, (int) channel.write(src, 0).get(5, TimeUnit.SECONDS));
+            Assertions.assertFalse(src.hasRemaining());
+            channel.force(true);
+            Assertions.assertEquals(8, channel.size());
+
+            ByteBuffer dst = ByteBuffer.allocateDirect(8);
+            Assertions.assertEquals(8, (int) channel.read(dst, 0).get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(42, dst.getLong(0));
+            // at the end of file
+            dst.clear();
+            Assertions.assertEquals(-1, (int) channel.read(dst, 8).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void heapBuffers() throws Exception {
+        Path path = tmpDir.resolve("file");
+        try (AsynchronousFileChannel channel = KuringAsynchronousFileChannel.open(path, executor,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer src = ByteBuffer.wrap("hello world".getBytes(StandardCharsets.US_ASCII));
+            src.position(6);
+            Assertions.assertEquals(5, (int) channel.write(src, 0).get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(11, src.position());
+        }
+        Assertions.assertEquals("world", new String(Files.readAllBytes(path), StandardCharsets.US_ASCII));
+
+        try (AsynchronousFileChannel channel = KuringAsynchronousFileChannel.open(path, executor)) {
+            ByteBuffer dst = ByteBuffer.allocate(16);
+            dst.put((byte) '>');
+            Assertions.assertEquals(4, (int) channel.read(dst, 1).get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(">orld", new String(dst.array(), 0, dst.position(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void completionHandler() throws Exception {
+        Path path = Files.write(tmpDir.resolve("file"), new byte[100]);
+        try (AsynchronousFileChannel channel = KuringAsynchronousFileChannel.open(path, executor)) {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            channel.read(ByteBuffer.allocateDirect(64), 64, "attachment", new CompletionHandler<Integer, String>() {
+                @Override
+                public void completed(Integer read, String attachment) {
+                    Assertions.assertTrue(executor.inEventLoop());
+                    result.complete(attachment + ":" + read);
+                }
+
+                @Override
+                public void failed(Throwable ex, String attachment) {
+                    result.completeExceptionally(ex);
+                }
+            });
+            Assertions.assertEquals("attachment:36", result.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void truncate() throws Exception {
+        Path path = Files.write(tmpDir.resolve("file"), new byte[100]);
+        try (AsynchronousFileChannel channel = KuringAsynchronousFileChannel.open(path, executor, StandardOpenOption.WRITE)) {
+            channel.truncate(200);
+            Assertions.assertEquals(100, channel.size());
+            channel.truncate(10);
+            Assertions.assertEquals(10, channel.size());
+        }
+        Assertions.assertEquals(10, Files.size(path));
+    }
+
+    @Test
+    void sizeOfRemovedFile() throws Exception {
+        Path path = Files.write(tmpDir.resolve("file"), new byte[100]);
+        try (AsynchronousFileChannel channel = KuringAsynchronousFileChannel.open(path, executor, StandardOpenOption.WRITE)) {
+            // a different file takes over the name, the channel still reports the open one
+            Files.move(path, tmpDir.resolve("moved"));
+            Files.write(path, new byte[5]);
+            Assertions.assertEquals(100, channel.size());
+            Files.delete(tmpDir.resolve("moved"));
+            Files.delete(path);
+            Assertions.assertEquals(100, channel.size());
+            channel.truncate(10);
+            Assertions.assertEquals(10, channel.size());
+        }
+    }
+
+    @Test
+    void dotDotAfterSymbolicLink() throws Exception {
+        Files.createDirectories(tmpDir.resolve("real/sub"));
+        Files.createSymbolicLink(tmpDir.resolve("link"), tmpDir.resolve("real/sub"));
+        Files.write(tmpDir.resolve("real/target"), new byte[]{1});
+        Files.write(tmpDir.resolve("target"), new byte[]{2});
+        // link/.. is real, not tmpDir
+        Path path = tmpDir.resolve("link/../target");
+        try (AsynchronousFileChannel channel = KuringAsynchronousFileChannel.open(path, executor)) {
+            ByteBuffer dst = ByteBuffer.allocateDirect(1);
+            Assertions.assertEquals(1, (int) channel.read(dst, 0).get(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, dst.get(0));
+        }
+    }
+
+    @Test
+    void openOptions() throws Exception {
+        Path path = tmpDir.resolve("file");
+        Assertions.assertThrows(java.io.IOException.class, () -> KuringAsynchronousFileChannel.open(path, executor));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> KuringAsynchronousFileChannel.open(path, executor,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+
+        KuringAsynchronousFileChannel.open(path, EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE), executor,
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))).close();
+        Assertions.assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(path)));
+        Assertions.assertThrows(java.io.IOException.class, () -> KuringAsynchronousFileChannel.open(path, executor,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+
+        AsynchronousFileChannel readOnly = KuringAsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.DELETE_ON_CLOSE), executor);
+        Assertions.assertThrows(NonWritableChannelException.class, () -> readOnly.write(ByteBuffer.allocateDirect(1), 0));
+        readOnly.close();
+        Assertions.assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void closedChannel() throws Exception {
+        Path path = Files.createTempFile(tmpDir, "test-", " file");
+        AsynchronousFileChannel channel = KuringAsynchronousFileChannel.open(path, executor);
+        channel.close();
+        Assertions.assertFalse(channel.isOpen());
+        channel.close();
+        ExecutionException ex = Assertions.assertThrows(ExecutionException.class,
+                () -> channel.read(ByteBuffer.allocateDirect(8), 0).get());
+        Assertions.assertTrue(ex.getCause() instanceof ClosedChannelException);
+        Assertions.assertThrows(ClosedChannelException.class, channel::size);
+    }
+}
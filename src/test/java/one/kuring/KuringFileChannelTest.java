@@ -0,0 +1,297 @@
+package one.kuring;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static one.kuring.TestUtils.waitFor;
+
+public class KuringFileChannelTest {
+    private static final int BLOCK_SIZE = 4096;
+    private static final int BLOCKS = 64;
+
+    @TempDir
+    Path tmpDir;
+
+    private EventExecutor executor = EventExecutor.initDefault();
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void concurrentReads() throws Exception {
+        readConcurrently(32, 256);
+    }
+
+    @Test
+    void concurrentReadsWithInFlightLimit() throws Exception {
+        executor.close();
+        executor = EventExecutor.builder().maxInFlight(2).build();
+        readConcurrently(8, 64);
+    }
+
+    @Test
+    void writeThenRead() throws Exception {
+        Path path = tmpDir.resolve("file");
+        try (FileChannel channel = KuringFileChannel.open(path, executor,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer src = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            while (src.hasRemaining()) {
+                src.put((byte) src.position());
+            }
+            src.flip();
+            Assertions.assertEquals(BLOCK_SIZE, channel.write(src, BLOCK_SIZE));
+            channel.force(true);
+            Assertions.assertEquals(2 * BLOCK_SIZE, channel.size());
+
+            ByteBuffer dst = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            Assertions.assertEquals(BLOCK_SIZE, channel.read(dst, BLOCK_SIZE));
+            src.flip();
+            dst.flip();
+            Assertions.assertEquals(src, dst);
+        }
+    }
+
+    @Test
+    void appendToRemovedFile() throws Exception {
+        Path path = Files.write(tmpDir.resolve("file"), new byte[100]);
+        try (FileChannel channel = KuringFileChannel.open(path, executor, StandardOpenOption.APPEND)) {
+            Files.delete(path);
+            Assertions.assertEquals(100, channel.size());
+            Assertions.assertEquals(100, channel.position());
+            Assertions.assertEquals(10, channel.write(ByteBuffer.allocateDirect(10)));
+            Assertions.assertEquals(110, channel.size());
+            Assertions.assertEquals(110, channel.position());
+        }
+    }
+
+    @Test
+    void mapAndLock() throws Exception {
+        Path path = Files.write(tmpDir.resolve("file"), new byte[]{1, 2, 3, 4});
+        try (FileChannel channel = KuringFileChannel.open(path, executor,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, 4);
+            Assertions.assertEquals(3, mapped.get(2));
+            mapped.put(0, (byte) 5);
+            ByteBuffer dst = ByteBuffer.allocateDirect(1);
+            Assertions.assertEquals(1, channel.read(dst, 0));
+            Assertions.assertEquals(5, dst.get(0));
+
+            FileLock lock = channel.lock();
+            Assertions.assertSame(channel, lock.channel());
+            Assertions.assertFalse(lock.isShared());
+            Assertions.assertThrows(OverlappingFileLockException.class, () -> channel.tryLock(0, 1, false));
+            lock.release();
+            Assertions.assertFalse(lock.isValid());
+
+            lock = channel.tryLock(0, 2, true);
+            Assertions.assertNotNull(lock);
+            Assertions.assertTrue(lock.isShared());
+            channel.close();
+            Assertions.assertFalse(lock.isValid());
+        }
+    }
+
+    @Test
+    void mapReadOnlyChannelForWrite() throws Exception {
+        Path path = Files.write(tmpDir.resolve("file"), new byte[4]);
+        try (FileChannel channel = KuringFileChannel.open(path, executor, StandardOpenOption.READ)) {
+            Assertions.assertEquals(4, channel.map(FileChannel.MapMode.READ_ONLY, 0, 4).remaining());
+            Assertions.assertThrows(NonWritableChannelException.class,
+                    () -> channel.map(FileChannel.MapMode.READ_WRITE, 0, 4));
+            Assertions.assertThrows(NonWritableChannelException.class, () -> channel.lock());
+        }
+    }
+
+    @Test
+    void heapBuffersLargerThanTransferBuffer() throws Exception {
+        Path path = tmpDir.resolve("file");
+        byte[] data = new byte[200_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        try (FileChannel channel = KuringFileChannel.open(path, executor,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Assertions.assertEquals(data.length, channel.write(ByteBuffer.wrap(data)));
+            Assertions.assertEquals(data.length, channel.position());
+
+            channel.position(0);
+            ByteBuffer dst = ByteBuffer.allocate(data.length + 1);
+            Assertions.assertEquals(data.length, channel.read(dst));
+            Assertions.assertArrayEquals(data, Arrays.copyOf(dst.array(), data.length));
+            Assertions.assertEquals(-1, channel.read(dst));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Assertions.assertEquals(data.length, channel.transferTo(0, data.length, Channels.newChannel(out)));
+            Assertions.assertArrayEquals(data, out.toByteArray());
+        }
+    }
+
+    @Test
+    void interruptCancelsRead() throws Exception {
+        Path fifo = tmpDir.resolve("fifo");
+        Assertions.assertEquals(0, new ProcessBuilder("mkfifo", fifo.toString()).start().waitFor());
+        // O_RDWR doesn't wait for a writer, the read then blocks until the pipe gets some data
+        FileChannel channel = KuringFileChannel.open(fifo, executor, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // the executor always keeps its eventfd read in flight
+        int idle = 1;
+        waitFor(() -> executor.inFlight() == idle);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                channel.read(ByteBuffer.allocateDirect(1));
+            } catch (Throwable ex) {
+                error.set(ex);
+            }
+        });
+        reader.start();
+        waitFor(() -> executor.inFlight() == idle + 1);
+        reader.interrupt();
+        reader.join(TimeUnit.SECONDS.toMillis(5));
+        Assertions.assertFalse(reader.isAlive());
+        Assertions.assertTrue(error.get() instanceof ClosedByInterruptException, String.valueOf(error.get()));
+        Assertions.assertFalse(channel.isOpen());
+        waitFor(() -> executor.inFlight() == idle);
+    }
+
+    @Test
+    void interruptWhileWaitingForPermit() throws Exception {
+        executor.close();
+        executor = EventExecutor.builder().maxInFlight(1).build();
+        Path fifo = tmpDir.resolve("fifo");
+        Assertions.assertEquals(0, new ProcessBuilder("mkfifo", fifo.toString()).start().waitFor());
+        try (KuringFileChannel channel = KuringFileChannel.open(fifo, executor, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int idle = 1;
+            waitFor(() -> executor.inFlight() == idle);
+            CompletableFuture<Integer> held = readAsync(channel);
+            waitFor(() -> executor.inFlight() == idle + 1);
+
+            // the blocking API the channel reads with, an interrupted channel would also close and
+            // the close has to wait for the permit
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Thread reader = new Thread(() -> {
+                try {
+                    channel.getFile().readBlocking(ByteBuffer.allocateDirect(1), 0);
+                } catch (Throwable ex) {
+                    error.set(ex);
+                }
+            });
+            reader.start();
+            // parked while the read waits for the permit of the first one, it isn't in the kernel
+            waitFor(() -> reader.getState() == Thread.State.WAITING);
+            Assertions.assertEquals(idle + 1, executor.inFlight());
+            reader.interrupt();
+            reader.join(TimeUnit.SECONDS.toMillis(5));
+            boolean cancelledWhileWaiting = !reader.isAlive() && !held.isDone();
+
+            try (FileOutputStream out = new FileOutputStream(fifo.toFile())) {
+                // let the first read complete before asserting, a close would wait for its permit
+                out.write(1);
+                Assertions.assertEquals(1, (int) held.get(5, TimeUnit.SECONDS));
+                reader.join(TimeUnit.SECONDS.toMillis(5));
+                Assertions.assertTrue(cancelledWhileWaiting);
+                Assertions.assertTrue(error.get() instanceof InterruptedIOException, String.valueOf(error.get()));
+                Assertions.assertTrue(error.get().getCause() instanceof CancellationException, String.valueOf(error.get().getCause()));
+
+                // the permit went back exactly once, the limit still lets a single read in
+                CompletableFuture<Integer> first = readAsync(channel);
+                CompletableFuture<Integer> second = readAsync(channel);
+                waitFor(() -> executor.inFlight() == idle + 1);
+                Thread.sleep(50);
+                Assertions.assertEquals(idle + 1, executor.inFlight());
+                out.write(new byte[2]);
+                Assertions.assertEquals(1, (int) first.get(5, TimeUnit.SECONDS));
+                Assertions.assertEquals(1, (int) second.get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    private static CompletableFuture<Integer> readAsync(FileChannel channel) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        new Thread(() -> {
+            try {
+                result.complete(channel.read(ByteBuffer.allocateDirect(1)));
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        }).start();
+        return result;
+    }
+
+    @Test
+    void blockingOnEventLoop() throws Exception {
+        Path path = Files.write(tmpDir.resolve("file"), new byte[8]);
+        AsyncFile file = AsyncFile.openAsync(path, executor, OpenOption.READ_ONLY).get(5, TimeUnit.SECONDS);
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                file.readBlocking(ByteBuffer.allocateDirect(8), 0);
+                error.complete(null);
+            } catch (Throwable ex) {
+                error.complete(ex);
+            }
+        });
+        Assertions.assertTrue(error.get(5, TimeUnit.SECONDS) instanceof IllegalStateException);
+        Assertions.assertEquals(8, file.sizeBlocking());
+        file.closeAsync().get(5, TimeUnit.SECONDS);
+    }
+
+    private void readConcurrently(int threads, int readsPerThread) throws Exception {
+        byte[] content = new byte[BLOCKS * BLOCK_SIZE];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i / BLOCK_SIZE);
+        }
+        Path path = Files.write(tmpDir.resolve("file"), content);
+        try (FileChannel channel = KuringFileChannel.open(path, executor, StandardOpenOption.READ)) {
+            List<CompletableFuture<Void>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                CompletableFuture<Void> result = new CompletableFuture<>();
+                results.add(result);
+                new Thread(() -> {
+                    try {
+                        ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+                        for (int i = 0; i < readsPerThread; i++) {
+                            int block = (seed + i * 7) % BLOCKS;
+                            buffer.clear();
+                            Assertions.assertEquals(BLOCK_SIZE, channel.read(buffer, (long) block * BLOCK_SIZE));
+                            Assertions.assertEquals((byte) block, buffer.get(0));
+                            Assertions.assertEquals((byte) block, buffer.get(BLOCK_SIZE - 1));
+                        }
+                        result.complete(null);
+                    } catch (Throwable ex) {
+                        result.completeExceptionally(ex);
+                    }
+                }).start();
+            }
+            for (CompletableFuture<Void> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package one.kuring;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class KuringFileSystemProviderTest {
+    // one provider for all tests, its executors live as long as the JVM
+    private static final KuringFileSystemProvider PROVIDER = new KuringFileSystemProvider();
+    // what -Djava.nio.file.spi.DefaultFileSystemProvider installs, built without replacing the default
+    private static final KuringFileSystemProvider DEFAULT_REPLACEMENT =
+            new KuringFileSystemProvider(FileSystems.getDefault().provider());
+
+    @TempDir
+    Path tmpDir;
+
+    private final FileSystem fileSystem = PROVIDER.getFileSystem(URI.create("kuring:///"));
+
+    @Test
+    void paths() {
+        Path path = fileSystem.getPath(tmpDir.toString(), "file");
+        Assertions.assertSame(PROVIDER, path.getFileSystem().provider());
+        Assertions.assertEquals("kuring", path.toUri().getScheme());
+        Assertions.assertEquals(path, PROVIDER.getPath(path.toUri()));
+        Assertions.assertSame(fileSystem, path.getParent().getFileSystem());
+        Assertions.assertEquals(tmpDir.resolve("file"), path.toFile().toPath());
+    }
+
+    @Test
+    void readWrite() throws Exception {
+        Path path = fileSystem.getPath(tmpDir.toString(), "file");
+        try (SeekableByteChannel channel = Files.newByteChannel(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            Assertions.assertTrue(channel instanceof KuringFileChannel);
+            channel.write(ByteBuffer.wrap("hello ".getBytes(StandardCharsets.US_ASCII)));
+            channel.write(ByteBuffer.wrap("world".getBytes(StandardCharsets.US_ASCII)));
+            Assertions.assertEquals(11, channel.position());
+        }
+        Assertions.assertEquals("hello world", new String(Files.readAllBytes(path), StandardCharsets.US_ASCII));
+
+        Files.write(path, "!".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+        Assertions.assertEquals("hello world!", new String(Files.readAllBytes(path), StandardCharsets.US_ASCII));
+        Assertions.assertEquals("hello world!", Files.readAllLines(tmpDir.resolve("file")).get(0));
+    }
+
+    @Test
+    void fileChannel() throws Exception {
+        Path path = fileSystem.getPath(tmpDir.toString(), "file");
+        Files.write(tmpDir.resolve("file"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+            channel.position(6);
+            Assertions.assertEquals(2, channel.read(buffer));
+            Assertions.assertEquals(8, channel.position());
+            Assertions.assertEquals(-1, channel.read(buffer));
+
+            buffer.clear();
+            Assertions.assertEquals(4, channel.read(buffer, 2));
+            Assertions.assertEquals(3, buffer.get(0));
+
+            java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+            Assertions.assertEquals(3, channel.transferTo(5, 10, Channels.newChannel(out)));
+            Assertions.assertArrayEquals(new byte[]{6, 7, 8}, out.toByteArray());
+
+            channel.truncate(4);
+            Assertions.assertEquals(4, channel.size());
+            Assertions.assertEquals(4, channel.position());
+            channel.force(false);
+        }
+    }
+
+    @Test
+    void attributes() throws Exception {
+        Path file = Files.write(tmpDir.resolve("file"), new byte[100]);
+        Files.createSymbolicLink(tmpDir.resolve("link"), file);
+        BasicFileAttributes expected = Files.readAttributes(file, BasicFileAttributes.class);
+
+        Path path = fileSystem.getPath(file.toString());
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Assertions.assertTrue(attributes instanceof StatxFileAttributes);
+        Assertions.assertEquals(100, attributes.size());
+        Assertions.assertTrue(attributes.isRegularFile());
+        Assertions.assertFalse(attributes.isDirectory());
+        Assertions.assertEquals(expected.lastModifiedTime(), attributes.lastModifiedTime());
+        Assertions.assertEquals(expected.lastAccessTime(), attributes.lastAccessTime());
+
+        Files.createLink(tmpDir.resolve("hardlink"), file);
+        Object hardLinkKey = Files.readAttributes(fileSystem.getPath(tmpDir.toString(), "hardlink"), BasicFileAttributes.class).fileKey();
+        Assertions.assertEquals(attributes.fileKey(), hardLinkKey);
+        Assertions.assertEquals(attributes.fileKey().hashCode(), hardLinkKey.hashCode());
+        Files.write(tmpDir.resolve("other"), new byte[100]);
+        Object otherKey = Files.readAttributes(fileSystem.getPath(tmpDir.toString(), "other"), BasicFileAttributes.class).fileKey();
+        Assertions.assertNotEquals(attributes.fileKey(), otherKey);
+
+        Path link = fileSystem.getPath(tmpDir.toString(), "link");
+        Assertions.assertTrue(Files.isRegularFile(link));
+        Assertions.assertTrue(Files.isSymbolicLink(link));
+        Assertions.assertTrue(Files.readAttributes(link, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isSymbolicLink());
+        Assertions.assertTrue(Files.isDirectory(fileSystem.getPath(tmpDir.toString())));
+
+        Path missing = fileSystem.getPath(tmpDir.toString(), "missing");
+        Assertions.assertFalse(Files.exists(missing));
+        Assertions.assertThrows(NoSuchFileException.class, () -> Files.readAttributes(missing, BasicFileAttributes.class));
+        Assertions.assertThrows(NoSuchFileException.class, () -> Files.newByteChannel(missing));
+
+        Files.createSymbolicLink(tmpDir.resolve("loop1"), tmpDir.resolve("loop2"));
+        Files.createSymbolicLink(tmpDir.resolve("loop2"), tmpDir.resolve("loop1"));
+        FileSystemException loop = Assertions.assertThrows(FileSystemException.class,
+                () -> Files.readAttributes(fileSystem.getPath(tmpDir.toString(), "loop1"), BasicFileAttributes.class));
+        Assertions.assertTrue(loop.getCause() instanceof ErrnoException);
+        Assertions.assertEquals(Native.ELOOP, ((ErrnoException) loop.getCause()).getErrno());
+    }
+
+    @Test
+    void replacesDefaultProvider() throws Exception {
+        Assertions.assertEquals("file", DEFAULT_REPLACEMENT.getScheme());
+        Path path = DEFAULT_REPLACEMENT.getFileSystem(URI.create("file:///")).getPath(tmpDir.toString(), "file");
+        Assertions.assertEquals("file", path.toUri().getScheme());
+        Assertions.assertSame(DEFAULT_REPLACEMENT, path.getFileSystem().provider());
+        Assertions.assertEquals(path, DEFAULT_REPLACEMENT.getPath(path.toUri()));
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Assertions.assertTrue(channel instanceof KuringAsynchronousFileChannel);
+            Assertions.assertEquals(4, (int) channel.write(ByteBuffer.allocateDirect(4), 0).get(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(Files.readAttributes(path, BasicFileAttributes.class) instanceof StatxFileAttributes);
+
+            // the handler runs on the event loop, waiting there for the loop would deadlock it
+            CompletableFuture<BasicFileAttributes> onLoop = new CompletableFuture<>();
+            channel.read(ByteBuffer.allocateDirect(4), 0, null, new CompletionHandler<Integer, Object>() {
+                @Override
+                public void completed(Integer result, Object attachment) {
+                    try {
+                        onLoop.complete(Files.readAttributes(path, BasicFileAttributes.class));
+                    } catch (Throwable ex) {
+                        onLoop.completeExceptionally(ex);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Object attachment) {
+                    onLoop.completeExceptionally(exc);
+                }
+            });
+            BasicFileAttributes attributes = onLoop.get(5, TimeUnit.SECONDS);
+            Assertions.assertFalse(attributes instanceof StatxFileAttributes);
+            Assertions.assertEquals(4, attributes.size());
+        }
+    }
+
+    @Test
+    void defaultProviderProperty() throws Exception {
+        if (System.getProperty("java.specification.version").startsWith("1.")) {
+            // java.nio.file.spi.DefaultFileSystemProvider is only read from JDK 9 on
+            return;
+        }
+        Path file = tmpDir.resolve("file");
+        // the JDK opens the rest of the class path through the provider before the libraries it needs can be loaded,
+        // older JDKs, e.g. 17, can't open a jar while they load the provider itself, so the provider comes first
+        String provider = Paths.get(KuringFileSystemProvider.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        Process process = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Djava.nio.file.spi.DefaultFileSystemProvider=" + KuringFileSystemProvider.class.getName(),
+                "-cp", provider + File.pathSeparator + System.getProperty("java.class.path"),
+                DefaultProviderMain.class.getName(),
+                file.toString()
+        ).redirectErrorStream(true).start();
+        Assertions.assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        String output = new String(readAll(process.getInputStream()), StandardCharsets.UTF_8);
+        Assertions.assertEquals(0, process.exitValue(), output);
+        Assertions.assertEquals(Arrays.asList(
+                KuringFileSystemProvider.class.getName(),
+                KuringFileChannel.class.getName(),
+                StatxFileAttributes.class.getName()
+        ), Arrays.asList(output.trim().split("\\R")));
+        Assertions.assertEquals(3, Files.size(file));
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Runs in a JVM that has {@link KuringFileSystemProvider} as its default provider.
+     */
+    public static final class DefaultProviderMain {
+        public static void main(String[] args) throws IOException {
+            Path file = Paths.get(args[0]);
+            System.out.println(file.getFileSystem().provider().getClass().getName());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                System.out.println(channel.getClass().getName());
+                channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+            }
+            System.out.println(Files.readAttributes(file, BasicFileAttributes.class).getClass().getName());
+        }
+    }
+
+    @Test
+    void asynchronousFileChannel() throws Exception {
+        Path path = fileSystem.getPath(tmpDir.toString(), "file");
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            Assertions.assertTrue(channel instanceof KuringAsynchronousFileChannel);
+            Assertions.assertEquals(4, (int) channel.write(ByteBuffer.allocateDirect(4), 0).get(5, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(4, Files.size(tmpDir.resolve("file")));
+    }
+
+    @Test
+    void directories() throws IOException {
+        Path dir = fileSystem.getPath(tmpDir.toString(), "dir");
+        Files.createDirectory(dir);
+        Files.write(dir.resolve("a"), new byte[1]);
+        Files.copy(dir.resolve("a"), dir.resolve("b"));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "a*")) {
+            for (Path entry : stream) {
+                Assertions.assertSame(fileSystem, entry.getFileSystem());
+                Assertions.assertEquals(dir.resolve("a"), entry);
+            }
+        }
+        Files.delete(dir.resolve("a"));
+        Files.delete(dir.resolve("b"));
+        Files.delete(dir);
+        Assertions.assertFalse(Files.exists(tmpDir.resolve("dir")));
+    }
+}
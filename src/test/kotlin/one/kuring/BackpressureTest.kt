@@ -0,0 +1,85 @@
+package one.kuring
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import one.kuring.AbstractFile.Companion.suspendCommand
+import org.junit.jupiter.api.io.TempDir
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.nio.file.Path
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class BackpressureTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    @Test
+    fun burstLargerThanRings() = runBlocking(Dispatchers.Default) {
+        // room for a few dozen commands only, the rest has to wait in the executor
+        EventExecutor.builder().entries(2).build().use { executor ->
+            val results = (0 until 8).map {
+                async {
+                    (0 until 500).map {
+                        async {
+                            executor.suspendCommand { Command.nop(executor, it) }
+                        }
+                    }.awaitAll().size
+                }
+            }.awaitAll()
+            assertEquals(List(8) { 500 }, results)
+        }
+    }
+
+    @Test
+    fun maxInFlight() = runBlocking(Dispatchers.Default) {
+        EventExecutor.builder().maxInFlight(2).build().use { executor ->
+            val fifo = tmpDir!!.resolve("fifo")
+            assertEquals(0, ProcessBuilder("mkfifo", fifo.toString()).start().waitFor())
+            // O_RDWR doesn't wait for a writer, reads then block until the pipe gets some data
+            val file = AsyncFile.open(fifo, executor, OpenOption.READ_WRITE)
+            // the executor always keeps its eventfd read in flight, wait for the open to leave the count
+            val idle = 1
+            waitFor { executor.inFlight() == idle }
+            val reads = (0 until 5).map {
+                async {
+                    file.read(ByteBuffer.allocateDirect(1), 0L, 1)
+                }
+            }
+            waitFor { executor.inFlight() == idle + 2 }
+            Thread.sleep(50)
+            assertEquals(idle + 2, executor.inFlight())
+            FileOutputStream(fifo.toFile()).use { it.write(ByteArray(5)) }
+            assertEquals(List(5) { 1 }, reads.awaitAll())
+            file.close()
+        }
+    }
+
+    @Test
+    fun cancelledReadsKeepTheLimit() = runBlocking(Dispatchers.Default) {
+        EventExecutor.builder().maxInFlight(1).build().use { executor ->
+            val fifo = tmpDir!!.resolve("fifo")
+            assertEquals(0, ProcessBuilder("mkfifo", fifo.toString()).start().waitFor())
+            val file = AsyncFile.open(fifo, executor, OpenOption.READ_WRITE)
+            val idle = 1
+            waitFor { executor.inFlight() == idle }
+            var read = launch { file.read(ByteBuffer.allocateDirect(1), 0L, 1) }
+            repeat(20) {
+                waitFor { executor.inFlight() == idle + 1 }
+                read.cancel()
+                // the next read only gets the permit once the kernel has completed the cancelled one
+                read = launch { file.read(ByteBuffer.allocateDirect(1), 0L, 1) }
+                assertTrue(executor.inFlightOperations().get(5, TimeUnit.SECONDS).size <= 1)
+            }
+            read.cancelAndJoin()
+            file.close()
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package one.kuring
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNotEquals
+import kotlin.test.assertNotSame
+import kotlin.test.assertTrue
+
+class BufRingExhaustionTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    @Test
+    fun waitsForRecycledBuffer() = runBlocking {
+        EventExecutor.builder().withBufRing(1, 4096).build().use { executor ->
+            val file = prepareFile(executor)
+            val first = file.readFixedBuffer(0L)
+            val second = async { file.readFixedBuffer(0L) }
+            delay(50)
+            assertFalse(second.isCompleted)
+            assertEquals(1, executor.bufRingExhausted(4096))
+            first.close()
+            second.await().use {
+                assertEquals(4096, it.readBytes)
+            }
+        }
+    }
+
+    @Test
+    fun cancelWaitingRead() = runBlocking {
+        EventExecutor.builder().withBufRing(1, 4096).build().use { executor ->
+            val file = prepareFile(executor)
+            val first = file.readFixedBuffer(0L)
+            val waiting = launch(start = CoroutineStart.UNDISPATCHED) { file.readFixedBuffer(0L) }
+            delay(50)
+            waiting.cancelAndJoin()
+            first.close()
+            // the buffer is not taken by the cancelled read
+            file.readFixedBuffer(0L).close()
+        }
+    }
+
+    @Test
+    fun doubleClose() = runBlocking {
+        EventExecutor.builder().withBufRing(2, 4096).build().use { executor ->
+            val file = prepareFile(executor)
+            val result = file.readFixedBuffer(0L)
+            val bufRing = result.bufRing
+            val tail = bufRing.tail
+            result.close()
+            result.close()
+            val first = file.readFixedBuffer(0L)
+            val second = file.readFixedBuffer(0L)
+            // the buffer went back to the ring once and the handle to the pool once
+            assertEquals((tail + 1) and 0xFFFF, bufRing.tail)
+            assertNotSame(first, second)
+            assertNotEquals(first.bufferId, second.bufferId)
+            val third = async { file.readFixedBuffer(0L) }
+            delay(50)
+            assertFalse(third.isCompleted)
+            first.close()
+            second.close()
+            third.await().close()
+        }
+    }
+
+    @Test
+    fun fallbackToSpareBuffer() = runBlocking {
+        EventExecutor.builder().withBufRing(1, 4096).bufRingSpareBuffers(1).build().use { executor ->
+            val file = prepareFile(executor)
+            val first = file.readFixedBuffer(0L)
+            file.readFixedBuffer(10L).use {
+                assertEquals(4096, it.readBytes)
+                assertEquals(10.toByte(), it.buffer[0])
+            }
+            assertEquals(1, executor.bufRingFallbacks(4096))
+            assertTrue(executor.bufRingExhausted(4096) >= 1)
+            first.close()
+        }
+    }
+
+    @Test
+    fun recycleFromOtherThreads() = runBlocking {
+        EventExecutor.builder().withBufRing(4, 4096).build().use { executor ->
+            val file = prepareFile(executor)
+            repeat(50) { round ->
+                (0 until 4).map { i ->
+                    val position = (round + i) % 200L
+                    val result = file.readFixedBuffer(position)
+                    async(Dispatchers.Default) {
+                        // every buffer id has to come back in its own ring entry
+                        assertEquals(position.toByte(), result.buffer[0])
+                        result.close()
+                    }
+                }.awaitAll()
+            }
+            assertEquals(0, executor.bufRingExhausted(4096))
+        }
+    }
+
+    private suspend fun prepareFile(executor: EventExecutor): AsyncFile {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        Files.write(tempFile, ByteArray(16 * 1024) { it.toByte() })
+        return AsyncFile.open(tempFile, executor, OpenOption.READ_ONLY)
+    }
+}
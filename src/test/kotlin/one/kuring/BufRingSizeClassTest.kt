@@ -0,0 +1,59 @@
+package one.kuring
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class BufRingSizeClassTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    private val executor = EventExecutor.builder()
+        .withBufRing(4, 64 * 1024)
+        .withBufRing(4, 4096)
+        .build()
+
+    @AfterTest
+    fun tearDown() {
+        executor.close()
+    }
+
+    @Test
+    fun smallestGroupThatFits() = runBlocking {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        Files.write(tempFile, ByteArray(100 * 1024) { it.toByte() })
+        val file = AsyncFile.open(tempFile, executor, OpenOption.READ_ONLY)
+
+        file.readFixedBuffer(0L, 1000).use {
+            assertEquals(1000, it.readBytes)
+            assertEquals(4096, it.buffer.capacity())
+        }
+        file.readFixedBuffer(0L, 4096).use {
+            assertEquals(4096, it.readBytes)
+            assertEquals(4096, it.buffer.capacity())
+        }
+        file.readFixedBuffer(10L, 10000).use {
+            assertEquals(10000, it.readBytes)
+            assertEquals(64 * 1024, it.buffer.capacity())
+            assertEquals(10.toByte(), it.buffer[0])
+        }
+        // larger than every group, limited to the largest buffer
+        file.readFixedBuffer(0L).use {
+            assertEquals(64 * 1024, it.readBytes)
+        }
+        file.close()
+    }
+
+    @Test
+    fun sameBufferSizeTwice() {
+        assertFailsWith<IllegalArgumentException> {
+            EventExecutor.builder().withBufRing(4, 4096).withBufRing(8, 4096)
+        }
+    }
+}
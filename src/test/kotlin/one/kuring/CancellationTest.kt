@@ -0,0 +1,108 @@
+package one.kuring
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+import kotlin.time.Duration.Companion.seconds
+
+class CancellationTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    private val executor = EventExecutor.initDefault()
+
+    @AfterTest
+    fun tearDown() {
+        executor.close()
+    }
+
+    @Test
+    fun cancelBlockedRead() = runBlocking {
+        val fifo = tmpDir!!.resolve("fifo")
+        assertEquals(0, ProcessBuilder("mkfifo", fifo.toString()).start().waitFor())
+        // O_RDWR doesn't wait for a writer, the read then blocks until the pipe gets some data
+        val file = AsyncFile.open(fifo, executor, OpenOption.READ_WRITE)
+        val buffer = ByteBuffer.allocateDirect(1)
+        // the executor always keeps its eventfd read in flight, wait for the open to leave the count
+        val idle = 1
+        waitFor { executor.inFlight() == idle }
+        val job = launch(start = CoroutineStart.UNDISPATCHED) {
+            file.read(buffer, 0L)
+        }
+        waitFor { executor.inFlight() == idle + 1 }
+        job.cancelAndJoin()
+        // the coroutine only resumes once the kernel completes the read with -ECANCELED,
+        // the buffer is no longer in use by then
+        assertEquals(emptyList(), executor.inFlightOperations().get(5, TimeUnit.SECONDS))
+        file.close()
+    }
+
+    @Test
+    fun cancelledOpenLeavesNoFd() = runBlocking {
+        val file = Files.write(tmpDir!!.resolve("file"), byteArrayOf(1))
+        // holds the loop, the open and then the cancel request queue up behind it
+        val loop = CountDownLatch(1)
+        executor.execute { loop.await() }
+        val job = launch(start = CoroutineStart.UNDISPATCHED) {
+            AsyncFile.open(file, executor, OpenOption.READ_ONLY)
+        }
+        job.cancel()
+        loop.countDown()
+        job.join()
+        assertTrue(job.isCancelled)
+        // the open completed before the cancel request got to it, the fd is closed on the event loop
+        waitFor { openFds(file) == 0 }
+    }
+
+    private fun openFds(path: Path): Int {
+        return Files.list(Paths.get("/proc/self/fd")).use { fds ->
+            fds.filter {
+                try {
+                    Files.readSymbolicLink(it) == path
+                } catch (ex: IOException) {
+                    false
+                }
+            }.count().toInt()
+        }
+    }
+
+    @Test
+    fun cancelledBeforeSubmission() = runBlocking {
+        val fifo = tmpDir!!.resolve("fifo")
+        assertEquals(0, ProcessBuilder("mkfifo", fifo.toString()).start().waitFor())
+        val file = AsyncFile.open(fifo, executor, OpenOption.READ_WRITE)
+        val idle = 1
+        waitFor { executor.inFlight() == idle }
+        val job = launch(Dispatchers.Default) {
+            // the continuation is cancelled before the read is handed to the executor
+            coroutineContext.cancel()
+            file.read(ByteBuffer.allocateDirect(1), 0L)
+        }
+        job.join()
+        assertTrue(job.isCancelled)
+        // a read that reached the kernel would consume the byte
+        val data = ByteBuffer.allocateDirect(1).put(42).flip()
+        assertEquals(1, file.write(data, 0L))
+        val buffer = ByteBuffer.allocateDirect(1)
+        assertEquals(1, file.read(buffer, 0L, 1, 5.seconds))
+        assertEquals(42, buffer[0])
+        waitFor { executor.inFlight() == idle }
+        file.close()
+    }
+}
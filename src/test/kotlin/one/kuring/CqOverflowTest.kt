@@ -0,0 +1,79 @@
+package one.kuring
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class CqOverflowTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    @Test
+    fun flushHeldBackCompletions() {
+        // 4 sq entries make a cq of 8, the burst completes twice as many reads at once
+        EventExecutor.builder().entries(4).withMetrics().build().use { executor ->
+            burst(executor, 16)
+            val metrics = executor.metrics()
+            val overflows = metrics.cqOverflows(ExecutorMetrics.RingType.SLEEPABLE) +
+                    metrics.cqOverflows(ExecutorMetrics.RingType.POLL)
+            assertTrue(overflows > 0, "overflows = $overflows")
+            assertEquals(0, metrics.cqDropped(ExecutorMetrics.RingType.SLEEPABLE))
+            assertEquals(0, metrics.cqDropped(ExecutorMetrics.RingType.POLL))
+        }
+    }
+
+    @Test
+    fun maxInFlightSizesCq() {
+        EventExecutor.builder().entries(4).maxInFlight(16).withMetrics().build().use { executor ->
+            burst(executor, 16)
+            val metrics = executor.metrics()
+            assertEquals(0, metrics.cqOverflows(ExecutorMetrics.RingType.SLEEPABLE))
+            assertEquals(0, metrics.cqOverflows(ExecutorMetrics.RingType.POLL))
+        }
+    }
+
+    @Test
+    fun maxInFlightSizesCqForTimeouts() {
+        // a read with a timeout also posts the completion of its linked timeout, a cancelled one that of the cancel
+        EventExecutor.builder().entries(4).maxInFlight(16).build().use { executor ->
+            assertEquals(64, cqEntries(executor))
+        }
+    }
+
+    private fun cqEntries(executor: EventExecutor): Int {
+        val mask = Files.readAllLines(Paths.get("/proc/self/fdinfo/${executor.sleepableRingFd()}"))
+            .first { it.startsWith("CqMask:") }
+            .substringAfter("0x")
+        return mask.trim().toInt(16) + 1
+    }
+
+    private fun burst(executor: EventExecutor, reads: Int) = runBlocking {
+        val fifo = tmpDir!!.resolve("fifo")
+        assertEquals(0, ProcessBuilder("mkfifo", fifo.toString()).start().waitFor())
+        // O_RDWR doesn't wait for a writer, the reads then block until the pipe gets some data
+        val file = AsyncFile.open(fifo, executor, OpenOption.READ_WRITE)
+        // the executor always keeps its eventfd read in flight
+        val idle = 1
+        waitFor { executor.inFlight() == idle }
+        val results = (0 until reads).map {
+            async(start = CoroutineStart.UNDISPATCHED) {
+                file.read(ByteBuffer.allocateDirect(1), 0L)
+            }
+        }
+        waitFor { executor.inFlight() == idle + reads }
+        FileOutputStream(fifo.toFile()).use { it.write(ByteArray(reads)) }
+        assertEquals(reads, results.awaitAll().sum())
+        file.close()
+    }
+}
@@ -0,0 +1,104 @@
+package one.kuring
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import one.kuring.AbstractFile.Companion.suspendCommand
+import org.junit.jupiter.api.io.TempDir
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class DirectSubmissionTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    private val eventExecutor = EventExecutor.builder().entries(64).directSubmission().build()
+
+    @AfterTest
+    fun tearDown() {
+        eventExecutor.close()
+    }
+
+    @Test
+    fun concurrentNops() = runBlocking(Dispatchers.Default) {
+        val results = (0 until 8).map {
+            async {
+                var completed = 0
+                repeat(1000) {
+                    completed += 1 + eventExecutor.suspendCommand { Command.nop(eventExecutor, it) }
+                }
+                completed
+            }
+        }.awaitAll()
+        assertEquals(List(8) { 1000 }, results)
+    }
+
+    @Test
+    fun fullSubmissionQueue() {
+        // far more commands in flight than sq entries, producers that find the queue full fall back to the task queue
+        EventExecutor.builder().entries(4).directSubmission().build().use { executor ->
+            val producers = 16
+            val bursts = 64
+            val burstSize = 16
+            val completed = AtomicInteger()
+            val failures = AtomicInteger()
+            // the attachment is the latch of the burst the nop belongs to
+            val handler = object : IntCompletionHandler<CountDownLatch> {
+                override fun completed(result: Int, attachment: CountDownLatch) {
+                    completed.incrementAndGet()
+                    attachment.countDown()
+                }
+
+                override fun failed(ex: Throwable, attachment: CountDownLatch) {
+                    failures.incrementAndGet()
+                    attachment.countDown()
+                }
+            }
+            val threads = (0 until producers).map {
+                thread {
+                    repeat(bursts) {
+                        val burst = CountDownLatch(burstSize)
+                        repeat(burstSize) {
+                            executor.executeCommand(
+                                Command.nop(executor, HandlerResultProvider.newInstance(executor, null, burst, handler))
+                            )
+                        }
+                        assertTrue(burst.await(10, TimeUnit.SECONDS))
+                    }
+                }
+            }
+            threads.forEach { it.join() }
+            assertEquals(producers * bursts * burstSize, completed.get())
+            assertEquals(0, failures.get())
+        }
+    }
+
+    @Test
+    fun concurrentReads() = runBlocking(Dispatchers.Default) {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        Files.write(tempFile, ByteArray(512) { it.toByte() })
+        val file = AsyncFile.open(tempFile, eventExecutor, OpenOption.READ_ONLY)
+        (0 until 8).map { i ->
+            async {
+                val buffer = ByteBuffer.allocateDirect(1)
+                repeat(100) {
+                    buffer.clear()
+                    assertEquals(1, file.read(buffer, i.toLong()))
+                    assertEquals(i.toByte(), buffer[0])
+                }
+            }
+        }.awaitAll()
+        file.close()
+    }
+}
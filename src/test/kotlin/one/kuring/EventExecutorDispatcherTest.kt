@@ -0,0 +1,85 @@
+package one.kuring
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withContext
+import org.junit.jupiter.api.io.TempDir
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class EventExecutorDispatcherTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    private val executor = EventExecutor.initDefault()
+
+    @AfterTest
+    fun tearDown() {
+        executor.close()
+    }
+
+    @Test
+    fun runsOnEventLoop() = runBlocking {
+        val dispatcher = executor.asCoroutineDispatcher()
+        assertTrue(dispatcher.isDispatchNeeded(coroutineContext))
+        withContext(dispatcher) {
+            assertTrue(executor.inEventLoop())
+            // no trip through the task queue for a coroutine already on the loop
+            assertFalse(dispatcher.isDispatchNeeded(coroutineContext))
+        }
+    }
+
+    @Test
+    fun resumeAfterCompletionBatch() = runBlocking {
+        withContext(executor.asCoroutineDispatcher()) {
+            val file = open()
+            file.write(ByteBuffer.allocateDirect(8), 0L)
+            assertTrue(executor.inEventLoop())
+            assertFalse(executor.isReaping())
+            file.close()
+        }
+    }
+
+    @Test
+    fun resumeInline() = runBlocking {
+        withContext(executor.asCoroutineDispatcher(resumeInline = true)) {
+            val file = open()
+            file.write(ByteBuffer.allocateDirect(8), 0L)
+            // resumed from within the completion handler
+            assertTrue(executor.isReaping())
+            val buffer = ByteBuffer.allocateDirect(8)
+            assertEquals(8, file.read(buffer, 0L))
+            assertTrue(executor.isReaping())
+            file.close()
+        }
+    }
+
+    @Test
+    fun closedExecutor() = runBlocking {
+        val dispatcher = executor.asCoroutineDispatcher()
+        executor.close()
+        val job = launch(dispatcher) {
+            throw IllegalStateException("must not run on a closed executor")
+        }
+        job.join()
+        assertTrue(job.isCancelled)
+        assertFailsWith<CancellationException> {
+            withContext(dispatcher) { }
+        }
+        Unit
+    }
+
+    private suspend fun open(): AsyncFile {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        return AsyncFile.open(tempFile, executor, OpenOption.READ_WRITE)
+    }
+}
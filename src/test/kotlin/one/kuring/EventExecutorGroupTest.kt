@@ -0,0 +1,122 @@
+package one.kuring
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotSame
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class EventExecutorGroupTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    @Test
+    fun roundRobin() {
+        EventExecutorGroup.builder().size(2).build().use { group ->
+            val first = group.next("a")
+            val second = group.next("a")
+            assertNotSame(first, second)
+            assertSame(first, group.next("a"))
+        }
+    }
+
+    @Test
+    fun hashed() {
+        EventExecutorGroup.builder().size(3).hashed { it.length }.build().use { group ->
+            assertSame(group.get(1), group.next("abcd"))
+            assertSame(group.get(1), group.next("efgh"))
+            assertSame(group.get(0), group.next("abc"))
+        }
+    }
+
+    @Test
+    fun leastInFlight() = runBlocking {
+        EventExecutorGroup.builder().size(2).leastInFlight().build().use { group ->
+            // once started, the pending eventfd read is the only command an idle executor has in flight
+            waitFor { group.get(0).inFlight() == 1 && group.get(1).inFlight() == 1 }
+            val fifo = tmpDir!!.resolve("fifo")
+            assertEquals(0, ProcessBuilder("mkfifo", fifo.toString()).start().waitFor())
+            // O_RDWR doesn't wait for a writer, the reads then block until the pipe gets some data
+            val file = AsyncFile.open(fifo, group.get(0), OpenOption.READ_WRITE)
+            val reads = (0 until 2).map {
+                launch(start = CoroutineStart.UNDISPATCHED) { file.read(ByteBuffer.allocateDirect(1), 0L) }
+            }
+            waitFor { group.get(0).inFlight() == 3 }
+            repeat(4) {
+                assertSame(group.get(1), group.next("file$it"))
+            }
+            reads.forEach { it.cancelAndJoin() }
+            file.close()
+        }
+    }
+
+    @Test
+    fun sameFileSameExecutor() = runBlocking {
+        EventExecutorGroup.builder().size(4).hashed { it.hashCode() }.build().use { group ->
+            val tempFile = Files.write(tmpDir!!.resolve("file"), byteArrayOf(1))
+            Files.createDirectory(tmpDir!!.resolve("dir"))
+            val relative = Paths.get("").toAbsolutePath().relativize(tmpDir!!.resolve("dir/../file"))
+            val files = listOf(
+                AsyncFile.open(tempFile.toString(), group, OpenOption.READ_ONLY),
+                AsyncFile.open(tmpDir!!.resolve("dir/../file").toString(), group, OpenOption.READ_ONLY),
+                AsyncFile.open(relative.toString(), group, OpenOption.READ_ONLY)
+            )
+            files.forEach { assertSame(files[0].executor, it.executor) }
+            files.forEach { it.close() }
+        }
+    }
+
+    @Test
+    fun dotDotAfterSymbolicLink() = runBlocking {
+        EventExecutorGroup.builder().size(2).hashed { it.hashCode() }.build().use { group ->
+            val sub = Files.createDirectories(tmpDir!!.resolve("real/sub"))
+            Files.write(tmpDir!!.resolve("real/target"), byteArrayOf(1))
+            Files.write(tmpDir!!.resolve("target"), byteArrayOf(2))
+            Files.createSymbolicLink(tmpDir!!.resolve("link"), sub)
+            // the kernel resolves ".." from real/sub, normalizing the path would read the other file
+            val file = AsyncFile.open(tmpDir!!.resolve("link/../target").toString(), group, OpenOption.READ_ONLY)
+            val buffer = ByteBuffer.allocateDirect(1)
+            assertEquals(1, file.read(buffer, 0L))
+            assertEquals(1.toByte(), buffer[0])
+            file.close()
+        }
+    }
+
+    @Test
+    fun threadNames() {
+        EventExecutorGroup.builder().size(2).build().use { group ->
+            val names = (0 until group.size()).map {
+                val name = CompletableFuture<String>()
+                group.get(it).execute { name.complete(Thread.currentThread().name) }
+                name.get(5, TimeUnit.SECONDS)
+            }
+            assertTrue(names[0].startsWith("EventExecutorGroup-") && names[0].endsWith("-0"), names[0])
+            assertEquals(names[0].dropLast(1) + "1", names[1])
+        }
+    }
+
+    @Test
+    fun openAndRead() = runBlocking {
+        EventExecutorGroup.builder().size(2).build().use { group ->
+            val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+            Files.write(tempFile, byteArrayOf(1, 2, 3))
+            val file = AsyncFile.open(tempFile, group, OpenOption.READ_ONLY)
+            val buffer = ByteBuffer.allocateDirect(3)
+            assertEquals(3, file.read(buffer, 0L))
+            assertEquals(3.toByte(), buffer[2])
+            file.close()
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package one.kuring
+
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class FlightRecorderEventsTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    @Test
+    fun eventsRecorded() {
+        val events = record(EventExecutor.builder().withFlightRecorderEvents(0, TimeUnit.NANOSECONDS))
+        val names = events.map { it.eventType.name }.toSet()
+        assertTrue("one.kuring.Enter" in names, names.toString())
+        assertTrue("one.kuring.CompletionBatch" in names, names.toString())
+        assertTrue("one.kuring.Park" in names, names.toString())
+        assertTrue("one.kuring.Wakeup" in names, names.toString())
+        val writes = events.filter {
+            it.eventType.name == "one.kuring.SlowOperation" && it.getInt("op") == Native.IORING_OP_WRITE.toInt()
+        }
+        assertEquals(3, writes.size)
+        assertTrue(writes.all { it.getInt("result") == 16 && it.getInt("length") == 16 })
+    }
+
+    @Test
+    fun slowOperationThreshold() {
+        val events = record(EventExecutor.builder().withFlightRecorderEvents(1, TimeUnit.HOURS))
+        assertTrue(events.none { it.eventType.name == "one.kuring.SlowOperation" })
+    }
+
+    @Test
+    fun disabledByDefault() {
+        val events = record(EventExecutor.builder())
+        assertTrue(events.none { it.eventType.name.startsWith("one.kuring.") })
+    }
+
+    private fun record(builder: EventExecutor.Builder): List<jdk.jfr.consumer.RecordedEvent> {
+        val dump = tmpDir!!.resolve("recording.jfr")
+        Recording().use { recording ->
+            recording.start()
+            builder.idleStrategy { BackoffIdleStrategy(0, 0) }.build().use { executor ->
+                runBlocking {
+                    val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+                    val file = AsyncFile.open(tempFile, executor, OpenOption.READ_WRITE)
+                    repeat(3) {
+                        // let the loop park, so the next write has to wake it up
+                        Thread.sleep(10)
+                        file.write(ByteBuffer.allocateDirect(16), 0L)
+                    }
+                    file.close()
+                }
+            }
+            recording.stop()
+            recording.dump(dump)
+        }
+        return RecordingFile.readAllEvents(dump)
+    }
+}
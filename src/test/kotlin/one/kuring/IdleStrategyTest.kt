@@ -0,0 +1,53 @@
+package one.kuring
+
+import kotlinx.coroutines.runBlocking
+import one.kuring.AbstractFile.Companion.suspendCommand
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class IdleStrategyTest {
+
+    @Test
+    fun backoff() {
+        val strategy = BackoffIdleStrategy(2, 1)
+        assertEquals(IdleStrategy.Action.SPIN, strategy.onIdle(1))
+        assertEquals(IdleStrategy.Action.SPIN, strategy.onIdle(2))
+        assertEquals(IdleStrategy.Action.YIELD, strategy.onIdle(3))
+        assertEquals(IdleStrategy.Action.PARK, strategy.onIdle(4))
+    }
+
+    @Test
+    fun adaptiveParksOnSparseWork() {
+        val strategy = AdaptiveIdleStrategy(0, TimeUnit.NANOSECONDS)
+        strategy.onIdle(1)
+        Thread.sleep(1)
+        strategy.onWork(1)
+        assertTrue(strategy.averageGapNanos() > 0)
+        assertEquals(IdleStrategy.Action.PARK, strategy.onIdle(1))
+    }
+
+    @Test
+    fun busySpinNeverParks() = runBlocking {
+        EventExecutor.builder().idleStrategy { BusySpinIdleStrategy() }.build().use { executor ->
+            nop(executor)
+            waitFor { executor.spins() > 0 }
+            assertEquals(0, executor.parks())
+        }
+    }
+
+    @Test
+    fun parkAndWakeup() = runBlocking {
+        EventExecutor.builder().idleStrategy { BackoffIdleStrategy(0, 0) }.build().use { executor ->
+            waitFor { executor.parks() > 0 }
+            val wakeups = executor.wakeups()
+            nop(executor)
+            assertTrue(executor.wakeups() > wakeups)
+        }
+    }
+
+    private suspend fun nop(executor: EventExecutor) {
+        executor.suspendCommand { Command.nop(executor, it) }
+    }
+}
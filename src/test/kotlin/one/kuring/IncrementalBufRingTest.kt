@@ -0,0 +1,95 @@
+package one.kuring
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class IncrementalBufRingTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    private val executor = EventExecutor.builder().withBufRing(1, 4096, true).build()
+
+    @AfterTest
+    fun tearDown() {
+        executor.close()
+    }
+
+    @Test
+    fun readsShareBuffer() = runBlocking {
+        val file = prepareFile()
+        val first = file.readFixedBuffer(0L, 100)
+        val second = file.readFixedBuffer(100L, 100)
+        assertEquals(100, first.readBytes)
+        assertEquals(100, second.readBytes)
+        assertTrue(first.hasMore())
+        assertTrue(second.hasMore())
+        assertEquals(0.toByte(), first.buffer[0])
+        assertEquals(100.toByte(), second.buffer[0])
+        assertEquals(100, second.buffer.capacity())
+        first.close()
+        second.close()
+    }
+
+    @Test
+    fun bufferReusedOnceConsumed() = runBlocking {
+        val file = prepareFile()
+        repeat(8) { round ->
+            // 4 reads of 1024 bytes use up the single buffer of the group
+            val results = (0 until 4).map { file.readFixedBuffer(round * 4096L + it * 1024L, 1024) }
+            assertFalse(results.last().hasMore())
+            results.forEachIndexed { i, result ->
+                assertEquals(1024, result.readBytes)
+                assertEquals((round * 4096 + i * 1024).toByte(), result.buffer[0])
+                result.close()
+            }
+        }
+        assertEquals(0, executor.bufRingExhausted(4096))
+    }
+
+    @Test
+    fun readsAtEndOfFile() = runBlocking {
+        val file = prepareFile(100)
+        // a file read takes as much of the buffer as it asked for, even when it reads less
+        for (position in listOf(0L, 100L, 20L, 90L, 100L, 30L)) {
+            file.readFixedBuffer(position, 50).use {
+                assertEquals(minOf(50, 100 - position.toInt()), it.readBytes)
+                if (it.readBytes > 0) {
+                    assertEquals(position.toByte(), it.buffer[0])
+                }
+            }
+        }
+    }
+
+    @Test
+    fun concurrentReads() = runBlocking {
+        val file = prepareFile()
+        (0 until 64).map { i ->
+            async {
+                file.readFixedBuffer(i * 300L, 300).use {
+                    // the read is cut short at the end of the buffer
+                    assertTrue(it.readBytes in 1..300)
+                    for (j in 0 until it.readBytes) {
+                        assertEquals((i * 300 + j).toByte(), it.buffer[j])
+                    }
+                }
+            }
+        }.awaitAll()
+        Unit
+    }
+
+    private suspend fun prepareFile(size: Int = 64 * 1024): AsyncFile {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        Files.write(tempFile, ByteArray(size) { it.toByte() })
+        return AsyncFile.open(tempFile, executor, OpenOption.READ_ONLY)
+    }
+}
@@ -0,0 +1,80 @@
+package one.kuring
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class MetricsTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    @Test
+    fun histogramPrecision() {
+        val histogram = LatencyHistogram()
+        for (value in 1L..10_000L) {
+            histogram.record(value * 1000)
+        }
+        assertEquals(10_000, histogram.getTotalCount())
+        assertEquals(10_000_000, histogram.getMaxValue())
+        assertEquals(5_000_500.0, histogram.getMean())
+        for (percentile in listOf(1.0, 50.0, 90.0, 99.0, 99.9)) {
+            val expected = percentile * 100_000
+            val actual = histogram.getValueAtPercentile(percentile)
+            assertTrue(actual >= expected && actual <= expected * 1.016, "p$percentile = $actual")
+        }
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100.0))
+    }
+
+    @Test
+    fun histogramBuckets() {
+        var previous = -1L
+        for (index in 0 until LatencyHistogram.index(Long.MAX_VALUE) + 1) {
+            val highest = LatencyHistogram.highestEquivalentValue(index)
+            assertEquals(index, LatencyHistogram.index(previous + 1))
+            assertEquals(index, LatencyHistogram.index(highest))
+            previous = highest
+        }
+        assertEquals(Long.MAX_VALUE, previous)
+    }
+
+    @Test
+    fun operationLatencies() = runBlocking {
+        EventExecutor.builder().withMetrics().build().use { executor ->
+            val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+            val file = AsyncFile.open(tempFile, executor, OpenOption.READ_WRITE)
+            val buffer = ByteBuffer.allocateDirect(16)
+            repeat(10) {
+                buffer.clear()
+                file.write(buffer, 0L)
+            }
+            file.close()
+            val metrics = executor.metrics()
+            val ring = ExecutorMetrics.RingType.SLEEPABLE
+            val writes = assertNotNull(metrics.latency(ring, Native.IORING_OP_WRITE))
+            assertEquals(10, writes.getTotalCount())
+            assertTrue(writes.getValueAtPercentile(50.0) > 0)
+            assertEquals(1, assertNotNull(metrics.latency(ring, Native.IORING_OP_OPENAT)).getTotalCount())
+            assertNull(metrics.latency(ExecutorMetrics.RingType.POLL, Native.IORING_OP_WRITE))
+            assertTrue(metrics.enterCalls(ring) > 0)
+            assertTrue(metrics.submitted(ring) >= 12)
+            assertTrue(metrics.enterCallsPerOp(ring) > 0)
+            assertEquals(0, metrics.sqPending(ring))
+        }
+    }
+
+    @Test
+    fun notEnabled() {
+        EventExecutor.initDefault().use {
+            assertFailsWith<IllegalStateException> { it.metrics() }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package one.kuring
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNotNull
+import kotlin.test.assertNotSame
+import kotlin.test.assertNull
+
+class RegisteredBufferTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    private val executor = EventExecutor.builder().withRegisteredBuffers(2, 4096).build()
+
+    @AfterTest
+    fun tearDown() {
+        executor.close()
+    }
+
+    @Test
+    fun writeAndReadFixed() = runBlocking {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        val file = AsyncFile.open(tempFile, executor, OpenOption.READ_WRITE)
+        executor.borrowRegisteredBuffer()!!.use { buffer ->
+            buffer.buffer.put(byteArrayOf(1, 2, 3)).flip()
+            assertEquals(3, file.writeFixed(buffer, 0L))
+            assertEquals(3, buffer.buffer.position())
+        }
+        executor.borrowRegisteredBuffer()!!.use { buffer ->
+            assertEquals(3, file.readFixed(buffer, 0L))
+            assertContentEquals(byteArrayOf(1, 2, 3), ByteArray(3) { buffer.buffer[it] })
+        }
+        assertContentEquals(byteArrayOf(1, 2, 3), Files.readAllBytes(tempFile))
+        file.close()
+    }
+
+    @Test
+    fun exhaustedPool() {
+        val first = assertNotNull(executor.borrowRegisteredBuffer())
+        val second = assertNotNull(executor.borrowRegisteredBuffer())
+        assertNull(executor.borrowRegisteredBuffer())
+        first.close()
+        assertNotNull(executor.borrowRegisteredBuffer()).close()
+        second.close()
+    }
+
+    @Test
+    fun doubleClose() {
+        val first = assertNotNull(executor.borrowRegisteredBuffer())
+        first.close()
+        first.close()
+        val second = assertNotNull(executor.borrowRegisteredBuffer())
+        val third = assertNotNull(executor.borrowRegisteredBuffer())
+        assertNotSame(second, third)
+        assertNull(executor.borrowRegisteredBuffer())
+        second.close()
+        third.close()
+    }
+
+    @Test
+    fun bufferFromAnotherExecutor() = runBlocking {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        EventExecutor.initDefault().use { other ->
+            val file = AsyncFile.open(tempFile, other, OpenOption.READ_WRITE)
+            executor.borrowRegisteredBuffer()!!.use { buffer ->
+                assertFailsWith<IllegalArgumentException> { file.readFixed(buffer, 0L) }
+            }
+            file.close()
+        }
+    }
+
+    @Test
+    fun notConfigured() {
+        EventExecutor.initDefault().use {
+            assertFailsWith<IllegalStateException> { it.borrowRegisteredBuffer() }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package one.kuring
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class RegisteredFileTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    private val executor = EventExecutor.builder().withRegisteredFiles(1).build()
+
+    @AfterTest
+    fun tearDown() {
+        executor.close()
+    }
+
+    @Test
+    fun writeAndRead() = runBlocking {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        val file = AsyncFile.open(tempFile, executor, OpenOption.READ_WRITE, OpenOption.FIXED_FILE)
+        val buffer = ByteBuffer.allocateDirect(3)
+        buffer.put(byteArrayOf(1, 2, 3)).flip()
+        assertEquals(3, file.write(buffer, 0L))
+        assertEquals(0, file.dataSync())
+        buffer.clear()
+        assertEquals(3, file.read(buffer, 0L))
+        assertContentEquals(byteArrayOf(1, 2, 3), Files.readAllBytes(tempFile))
+        file.close()
+    }
+
+    @Test
+    fun slotReusedAfterClose() = runBlocking {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        Files.write(tempFile, byteArrayOf(7))
+        repeat(3) {
+            val file = AsyncFile.open(tempFile, executor, OpenOption.READ_ONLY, OpenOption.FIXED_FILE)
+            val buffer = ByteBuffer.allocateDirect(1)
+            assertEquals(1, file.read(buffer, 0L))
+            assertEquals(7, buffer[0])
+            file.close()
+        }
+    }
+
+    @Test
+    fun fallbackWhenTableIsFull() = runBlocking {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        Files.write(tempFile, byteArrayOf(7))
+        val first = AsyncFile.open(tempFile, executor, OpenOption.READ_ONLY, OpenOption.FIXED_FILE)
+        val second = AsyncFile.open(tempFile, executor, OpenOption.READ_ONLY, OpenOption.FIXED_FILE)
+        assertEquals(0, first.fixedFileIndex)
+        // the table has a single slot, the second file keeps using its plain fd
+        assertEquals(-1, second.fixedFileIndex)
+        assertTrue(second.fd >= 0)
+        val buffer = ByteBuffer.allocateDirect(1)
+        assertEquals(1, second.read(buffer, 0L))
+        assertEquals(7, buffer[0])
+        buffer.clear()
+        assertEquals(1, first.read(buffer, 0L))
+        assertEquals(7, buffer[0])
+        first.close()
+        second.close()
+    }
+}
@@ -0,0 +1,87 @@
+package one.kuring
+
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.async
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.jupiter.api.io.TempDir
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class RingSetupFlagsTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    @Test
+    fun readWrite() {
+        val builders = listOf(
+            EventExecutor.builder(),
+            EventExecutor.builder().ioRingSetupDeferTaskrun(false),
+            EventExecutor.builder().ioRingSetupSingleIssuer(false).ioRingSetupDeferTaskrun(false),
+            EventExecutor.builder().ioRingSetupSingleIssuer(false).ioRingSetupDeferTaskrun(false)
+                .ioRingSetupCoopTaskrun(false).ioRingSetupTaskrunFlag(false),
+        )
+        for (builder in builders) {
+            builder.build().use { executor -> readWrite(executor) }
+        }
+    }
+
+    @Test
+    fun busySpinRunsDeferredTaskWork() {
+        // a loop that never parks only enters the kernel to submit, the flag tells it to enter for the task work
+        val executor = EventExecutor.builder()
+            .ioRingSetupSingleIssuer(true)
+            .ioRingSetupDeferTaskrun(true)
+            .ioRingSetupTaskrunFlag(true)
+            .idleStrategy { BusySpinIdleStrategy() }
+            .build()
+        executor.use {
+            runBlocking {
+                val fifo = tmpDir!!.resolve("fifo")
+                assertEquals(0, ProcessBuilder("mkfifo", fifo.toString()).start().waitFor())
+                val file = AsyncFile.open(fifo, executor, OpenOption.READ_WRITE)
+                val idle = 1
+                waitFor { executor.inFlight() == idle }
+                val read = async(start = CoroutineStart.UNDISPATCHED) {
+                    file.read(ByteBuffer.allocateDirect(1), 0L)
+                }
+                waitFor { executor.inFlight() == idle + 1 }
+                FileOutputStream(fifo.toFile()).use { it.write(1) }
+                assertEquals(1, withTimeout(5000) { read.await() })
+                file.close()
+            }
+        }
+    }
+
+    @Test
+    fun invalidCombinations() {
+        assertFailsWith<IllegalArgumentException> {
+            EventExecutor.builder().ioRingSetupSingleIssuer(false).ioRingSetupDeferTaskrun(true).build()
+        }
+        assertFailsWith<IllegalArgumentException> {
+            EventExecutor.builder().ioRingSetupCoopTaskrun(false).ioRingSetupDeferTaskrun(false)
+                .ioRingSetupTaskrunFlag(true).build()
+        }
+        assertFailsWith<IllegalArgumentException> {
+            EventExecutor.builder().ioRingSetupSqPoll(10).ioRingSetupCoopTaskrun(true).build()
+        }
+    }
+
+    private fun readWrite(executor: EventExecutor) = runBlocking {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        val file = AsyncFile.open(tempFile, executor, OpenOption.READ_WRITE)
+        val buffer = ByteBuffer.allocateDirect(4)
+        buffer.putInt(42).flip()
+        assertEquals(4, file.write(buffer, 0L))
+        buffer.clear()
+        assertEquals(4, file.read(buffer, 0L))
+        assertEquals(42, buffer.getInt(0))
+        file.close()
+    }
+}
@@ -0,0 +1,112 @@
+package one.kuring
+
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.async
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.cancelAndJoin
+import org.junit.jupiter.api.io.TempDir
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.file.Path
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class StuckOperationWatchdogTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    @Test
+    fun reportStuckRead() = runBlocking {
+        val stuck = CopyOnWriteArrayList<InFlightOperation>()
+        EventExecutor.builder()
+            .withStuckOperationWatchdog(20, TimeUnit.MILLISECONDS, false) { stuck.add(it) }
+            .build().use { executor ->
+                val file = openFifo(executor)
+                val job = launch(start = CoroutineStart.UNDISPATCHED) {
+                    file.read(ByteBuffer.allocateDirect(1), 0L)
+                }
+                waitFor { stuck.isNotEmpty() }
+                // reported once
+                Thread.sleep(50)
+                assertEquals(1, stuck.size)
+                val operation = stuck[0]
+                assertEquals(Native.IORING_OP_READ, operation.op)
+                assertEquals(file.fd, operation.fd)
+                assertEquals(1, operation.length)
+                assertTrue(operation.ageNanos >= TimeUnit.MILLISECONDS.toNanos(20))
+                job.cancelAndJoin()
+                file.close()
+            }
+    }
+
+    @Test
+    fun cancelStuckRead() = runBlocking {
+        EventExecutor.builder()
+            .withStuckOperationWatchdog(20, TimeUnit.MILLISECONDS, true) { }
+            .build().use { executor ->
+                val file = openFifo(executor)
+                assertFailsWith<IOException> { file.read(ByteBuffer.allocateDirect(1), 0L) }
+                file.close()
+            }
+    }
+
+    @Test
+    fun defaultListenerRecordsEvent() = runBlocking {
+        val dump = tmpDir!!.resolve("recording.jfr")
+        Recording().use { recording ->
+            recording.start()
+            EventExecutor.builder()
+                .withStuckOperationWatchdog(20, TimeUnit.MILLISECONDS)
+                .withFlightRecorderEvents(1, TimeUnit.HOURS)
+                .build().use { executor ->
+                    val file = openFifo(executor)
+                    val job = launch(start = CoroutineStart.UNDISPATCHED) {
+                        file.read(ByteBuffer.allocateDirect(1), 0L)
+                    }
+                    waitFor { executor.inFlightOperations().get().any { it.ageNanos >= TimeUnit.MILLISECONDS.toNanos(100) } }
+                    job.cancelAndJoin()
+                    file.close()
+                }
+            recording.stop()
+            recording.dump(dump)
+        }
+        val stuck = RecordingFile.readAllEvents(dump).filter { it.eventType.name == "one.kuring.StuckOperation" }
+        assertEquals(1, stuck.size)
+        assertEquals(Native.IORING_OP_READ.toInt(), stuck[0].getInt("op"))
+        assertEquals(1, stuck[0].getInt("length"))
+    }
+
+    @Test
+    fun inFlightOperations() = runBlocking {
+        EventExecutor.initDefault().use { executor ->
+            assertTrue(executor.inFlightOperations().get().isEmpty())
+            val file = openFifo(executor)
+            val read = async(start = CoroutineStart.UNDISPATCHED) {
+                file.read(ByteBuffer.allocateDirect(1), 0L)
+            }
+            waitFor { executor.inFlightOperations().get().isNotEmpty() }
+            val operation = executor.inFlightOperations().get().single()
+            assertEquals(Native.IORING_OP_READ, operation.op)
+            assertEquals(ExecutorMetrics.RingType.SLEEPABLE, operation.ring)
+            // not timed without metrics, flight recorder events or the watchdog
+            assertEquals(-1, operation.ageNanos)
+            read.cancelAndJoin()
+            file.close()
+        }
+    }
+
+    private suspend fun openFifo(executor: EventExecutor): AsyncFile {
+        val fifo = tmpDir!!.resolve("fifo")
+        assertEquals(0, ProcessBuilder("mkfifo", fifo.toString()).start().waitFor())
+        // O_RDWR doesn't wait for a writer, a read then blocks until the pipe gets some data
+        return AsyncFile.open(fifo, executor, OpenOption.READ_WRITE)
+    }
+}
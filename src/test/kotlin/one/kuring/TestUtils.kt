@@ -0,0 +1,17 @@
+@file:JvmName("TestUtils")
+
+package one.kuring
+
+import java.util.concurrent.TimeUnit
+import kotlin.test.assertTrue
+
+/**
+ * Polls the condition until it holds, fails if it still doesn't after 5 seconds.
+ */
+fun waitFor(condition: () -> Boolean) {
+    val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+    while (!condition() && System.nanoTime() < deadline) {
+        Thread.sleep(1)
+    }
+    assertTrue(condition())
+}
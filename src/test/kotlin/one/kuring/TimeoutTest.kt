@@ -0,0 +1,67 @@
+package one.kuring
+
+import kotlinx.coroutines.runBlocking
+import org.junit.jupiter.api.io.TempDir
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.test.AfterTest
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
+
+class TimeoutTest {
+
+    @TempDir
+    var tmpDir: Path? = null
+
+    private val executor = EventExecutor.initDefault()
+
+    @AfterTest
+    fun tearDown() {
+        executor.close()
+    }
+
+    @Test
+    fun readTimesOut() = runBlocking {
+        val fifo = tmpDir!!.resolve("fifo")
+        assertEquals(0, ProcessBuilder("mkfifo", fifo.toString()).start().waitFor())
+        // O_RDWR doesn't wait for a writer, the read then blocks until the pipe gets some data
+        val file = AsyncFile.open(fifo, executor, OpenOption.READ_WRITE)
+        val buffer = ByteBuffer.allocateDirect(1)
+        // the executor always keeps its eventfd read in flight, wait for the open to leave the count
+        val idle = 1
+        waitFor { executor.inFlight() == idle }
+        val ex = assertFailsWith<OperationTimeoutException> { file.read(buffer, 0L, 1, 50.milliseconds) }
+        assertEquals(50_000_000, ex.timeoutNanos)
+        waitFor { executor.inFlight() == idle }
+        // the pipe works as usual afterwards
+        buffer.put(1).flip()
+        assertEquals(1, file.write(buffer, 0L, 1, 1.seconds))
+        buffer.clear()
+        assertEquals(1, file.read(buffer, 0L, 1, 1.seconds))
+        file.close()
+    }
+
+    @Test
+    fun completesInTime() = runBlocking {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        val file = AsyncFile.open(tempFile, executor, 1.seconds, OpenOption.READ_WRITE)
+        val buffer = ByteBuffer.allocateDirect(3)
+        buffer.put(byteArrayOf(1, 2, 3)).flip()
+        assertEquals(3, file.write(buffer, 0L, 3, 1.seconds))
+        buffer.clear()
+        assertEquals(3, file.read(buffer, 0L, 3, 1.seconds))
+        file.close()
+    }
+
+    @Test
+    fun nonPositiveTimeout() = runBlocking {
+        val tempFile = Files.createTempFile(tmpDir, "test-", " file")
+        val file = AsyncFile.open(tempFile, executor, OpenOption.READ_ONLY)
+        assertFailsWith<IllegalArgumentException> { file.read(ByteBuffer.allocateDirect(1), 0L, 1, 0.seconds) }
+        file.close()
+    }
+}